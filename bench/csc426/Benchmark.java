@@ -0,0 +1,254 @@
+package csc426;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import csc426.AST.Program;
+
+/**
+ * Front-end benchmarks over a corpus of synthetic YASL programs of increasing
+ * size. For each program it measures the scanner in tokens per second, the
+ * parser (over a pre-lexed TokenBuffer, sequentially and in parallel) and the
+ * loading of a serialized AST in nodes per second, and a whole
+ * Project5-style compile, from the mapped file to the generated code, in
+ * characters per second.
+ *
+ * Run with the scale factors to use as arguments (default 1 4 16). Each
+ * measurement is the median of several timed runs after some warm-up runs,
+ * in this JVM; for baselines to compare changes against, use the JMH
+ * version of these measurements, FrontEndBenchmark in the jmh module.
+ */
+public class Benchmark {
+	public static final int WARMUP = 5;
+	public static final int RUNS = 10;
+
+	/**
+	 * The kinds of synthetic programs in the corpus.
+	 */
+	public enum Shape {
+		/**
+		 * Statements nested inside if, while and begin.
+		 */
+		NESTING {
+			String generate(int scale) {
+				int depth = 100 * scale;
+				StringBuilder result = new StringBuilder("program nesting;\n");
+				result.append("var x: int;\nvar b: bool;\nbegin\nx = 0;\nb = true;\n");
+				for (int i = 0; i < depth; ++i) {
+					switch (i % 3) {
+					case 0:
+						result.append("if x < 1000 then begin\n");
+						break;
+					case 1:
+						result.append("while b do begin\nb = false;\n");
+						break;
+					default:
+						result.append("begin\n");
+						break;
+					}
+				}
+				result.append("x = x + 1;\n");
+				for (int i = 0; i < depth; ++i) {
+					result.append("end;\n");
+				}
+				return result.append("end.\n").toString();
+			}
+		},
+
+		/**
+		 * Many procedures with parameters, constants and local variables.
+		 */
+		PROCS {
+			String generate(int scale) {
+				int procs = 200 * scale;
+				StringBuilder result = new StringBuilder("program procs;\nvar s: int;\n");
+				for (int i = 0; i < procs; ++i) {
+					result.append("proc p").append(i).append("(a: int, var r: int, c: bool);\n");
+					result.append("const k = ").append(i).append(";\nvar t: int;\nbegin\n");
+					result.append("t = a * k + 1;\n");
+					result.append("if c and (t > 10) then r = r + t; else r = r - t;\n");
+					result.append("end;\n");
+				}
+				result.append("begin\ns = 0;\n");
+				for (int i = 0; i < procs; ++i) {
+					result.append("p").append(i).append("(").append(i).append(", s, true);\n");
+				}
+				return result.append("print \"sum \", s;\nend.\n").toString();
+			}
+		},
+
+		/**
+		 * Long arithmetic and boolean expressions.
+		 */
+		EXPRESSIONS {
+			String generate(int scale) {
+				int stmts = 50 * scale;
+				String[] ops = { " + ", " - ", " * ", " div ", " mod " };
+				StringBuilder result = new StringBuilder("program expressions;\n");
+				result.append("var x: int;\nvar y: int;\nvar b: bool;\nbegin\nx = 7;\nb = true;\n");
+				for (int i = 0; i < stmts; ++i) {
+					result.append("y = x");
+					for (int j = 0; j < 200; ++j) {
+						result.append(ops[(i + j) % ops.length]);
+						if (j % 7 == 0) {
+							result.append("(x").append(ops[j % 2]).append(j + 1).append(")");
+						} else if (j % 5 == 0) {
+							result.append("-x");
+						} else {
+							result.append(j + 1);
+						}
+					}
+					result.append(";\n");
+					result.append("b = (x < y) and not b or (x <> ").append(i).append(") and (y >= x);\n");
+				}
+				return result.append("end.\n").toString();
+			}
+		},
+
+		/**
+		 * Long string literals in print and prompt statements.
+		 */
+		STRINGS {
+			String generate(int scale) {
+				int stmts = 100 * scale;
+				StringBuilder literal = new StringBuilder();
+				while (literal.length() < 500) {
+					literal.append("the quick brown fox \"\"jumps\"\" over the lazy dog; ");
+				}
+				StringBuilder result = new StringBuilder("program strings;\nvar x: int;\nbegin\nx = 0;\n");
+				for (int i = 0; i < stmts; ++i) {
+					result.append("print \"").append(literal).append("\", x, \"").append(i).append("\";\n");
+				}
+				return result.append("end.\n").toString();
+			}
+		},
+
+		/**
+		 * Random programs using every construct, from ProgramGenerator.
+		 */
+		GENERATED {
+			String generate(int scale) {
+				return new ProgramGenerator(scale, 500 * scale, 4, 6).generate();
+			}
+		};
+
+		/**
+		 * @param scale
+		 * @return the text of a program, roughly proportional in size to scale
+		 */
+		abstract String generate(int scale);
+	}
+
+	/**
+	 * One operation to be timed.
+	 */
+	interface Task {
+		/**
+		 * @return the number of units (tokens, nodes, ...) processed
+		 */
+		long run() throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int[] scales = { 1, 4, 16 };
+		if (args.length > 0) {
+			scales = new int[args.length];
+			for (int i = 0; i < args.length; ++i) {
+				scales[i] = Integer.parseInt(args[i]);
+			}
+		}
+
+		System.out.printf("%-12s %6s %10s %-8s %10s %14s%n", "shape", "scale", "chars", "measure", "ms/op",
+				"units/s");
+		for (Shape shape : Shape.values()) {
+			for (int scale : scales) {
+				String text = shape.generate(scale);
+				Path file = Files.createTempFile("bench-" + shape, ".yasl");
+				file.toFile().deleteOnExit();
+				Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+
+				report(shape, scale, text, "scan", "tokens", () -> scan(text));
+
+				TokenBuffer tokens = TokenBuffer.scan(new Source(new StringReader(text)));
+				report(shape, scale, text, "parse", "nodes", () -> parse(tokens));
+				report(shape, scale, text, "pparse", "nodes", () -> parallelParse(tokens));
+
+				Program program = new Parser(new TokenBufferLookahead(tokens)).parseProgram();
+				byte[] serialized = ASTSerializer.toBytes(program, true);
+				report(shape, scale, text, "load", "nodes", () -> load(serialized));
+
+				report(shape, scale, text, "compile", "chars", () -> compile(file, text.length()));
+			}
+		}
+	}
+
+	static long scan(String text) throws IOException {
+		Source source = new Source(new StringReader(text), Source.DEFAULT_BUFFER_SIZE);
+		Scanner scanner = new Scanner(source, Scanner.Mode.TABLE);
+		long count = 1;
+		while (scanner.next().type != TokenType.EOF) {
+			++count;
+		}
+		return count;
+	}
+
+	static long parse(TokenBuffer tokens) throws ParseError {
+		Program program = new Parser(new TokenBufferLookahead(tokens)).parseProgram();
+		return NodeCounter.count(program);
+	}
+
+	static long parallelParse(TokenBuffer tokens) throws ParseError {
+		return NodeCounter.count(ParallelParser.parse(tokens));
+	}
+
+	static long load(byte[] serialized) throws IOException {
+		return NodeCounter.count(ASTSerializer.fromBytes(serialized));
+	}
+
+	/**
+	 * Compile a file the way Project5 does, discarding the generated code.
+	 */
+	static long compile(Path file, long chars) throws IOException, ParseError {
+		Source source = new MappedSource(file);
+		try {
+			Program program = new Parser(new Lookahead(new Scanner(source, Scanner.Mode.TABLE))).parseProgram();
+			PrintStream output = new PrintStream(OutputStream.nullOutputStream());
+			PrintWriter fileout = new PrintWriter(Writer.nullWriter());
+			new TypeChecker().check(program);
+			new CodeGenerator(null, output, fileout).generate(program);
+			return chars;
+		} finally {
+			source.close();
+		}
+	}
+
+	/**
+	 * Time a task and print a line of results.
+	 */
+	static void report(Shape shape, int scale, String text, String measure, String units, Task task)
+			throws Exception {
+		long[] times = new long[RUNS];
+		long count = 0;
+		for (int i = 0; i < WARMUP; ++i) {
+			count = task.run();
+		}
+		for (int i = 0; i < RUNS; ++i) {
+			long start = System.nanoTime();
+			count = task.run();
+			times[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(times);
+		double median = times[RUNS / 2] / 1e9;
+		System.out.printf("%-12s %6d %10d %-8s %10.3f %14.0f %s%n", shape, scale, text.length(), measure,
+				median * 1e3, count / median, units);
+	}
+}
@@ -0,0 +1,146 @@
+package csc426;
+
+/**
+ * Counts the nodes of a FlatAST by walking it, the counterpart of
+ * NodeCounter. It is driven by a FlatTraversal, so trees of any depth are
+ * counted without recursion.
+ */
+public class FlatNodeCounter implements FlatVisitor<Void> {
+	private final FlatTraversal traversal;
+	private int count;
+
+	private FlatNodeCounter(FlatAST ast) {
+		this.traversal = new FlatTraversal(ast, this);
+		this.count = 0;
+	}
+
+	/**
+	 * @param ast
+	 * @return the number of nodes reached from the root of ast
+	 */
+	public static int count(FlatAST ast) {
+		FlatNodeCounter counter = new FlatNodeCounter(ast);
+		counter.traversal.run(ast.root());
+		return counter.count;
+	}
+
+	/**
+	 * Count a node, and schedule its children.
+	 */
+	private Void node(int... children) {
+		++count;
+		for (int child : children) {
+			traversal.visit(child);
+		}
+		return null;
+	}
+
+	/**
+	 * Count a node, and schedule the children in its lists.
+	 */
+	private Void lists(int... lists) {
+		++count;
+		for (int list : lists) {
+			traversal.visitAll(list);
+		}
+		return null;
+	}
+
+	public Void visitProgram(FlatAST ast, int program) {
+		return node(ast.block(program));
+	}
+
+	public Void visitBlock(FlatAST ast, int block) {
+		return lists(ast.consts(block), ast.vars(block), ast.procs(block), ast.stmts(block));
+	}
+
+	public Void visitConstDecl(FlatAST ast, int decl) {
+		return node();
+	}
+
+	public Void visitVarDecl(FlatAST ast, int decl) {
+		return node();
+	}
+
+	public Void visitProcDecl(FlatAST ast, int decl) {
+		lists(ast.params(decl));
+		traversal.visit(ast.block(decl));
+		return null;
+	}
+
+	public Void visitVal(FlatAST ast, int param) {
+		return node();
+	}
+
+	public Void visitVar(FlatAST ast, int param) {
+		return node();
+	}
+
+	public Void visitAssign(FlatAST ast, int stmt) {
+		return node(ast.expr(stmt));
+	}
+
+	public Void visitCall(FlatAST ast, int stmt) {
+		return lists(ast.args(stmt));
+	}
+
+	public Void visitSequence(FlatAST ast, int stmt) {
+		return lists(ast.stmts(stmt));
+	}
+
+	public Void visitIfThen(FlatAST ast, int stmt) {
+		return node(ast.test(stmt), ast.trueClause(stmt));
+	}
+
+	public Void visitIfThenElse(FlatAST ast, int stmt) {
+		return node(ast.test(stmt), ast.trueClause(stmt), ast.falseClause(stmt));
+	}
+
+	public Void visitWhile(FlatAST ast, int stmt) {
+		return node(ast.test(stmt), ast.body(stmt));
+	}
+
+	public Void visitPrompt(FlatAST ast, int stmt) {
+		return node();
+	}
+
+	public Void visitPrompt2(FlatAST ast, int stmt) {
+		return node();
+	}
+
+	public Void visitPrint(FlatAST ast, int stmt) {
+		return lists(ast.items(stmt));
+	}
+
+	public Void visitExprItem(FlatAST ast, int item) {
+		return node(ast.expr(item));
+	}
+
+	public Void visitStringItem(FlatAST ast, int item) {
+		return node();
+	}
+
+	public Void visitBinOp(FlatAST ast, int expr) {
+		return node(ast.left(expr), ast.right(expr));
+	}
+
+	public Void visitUnOp(FlatAST ast, int expr) {
+		return node(ast.expr(expr));
+	}
+
+	public Void visitNum(FlatAST ast, int expr) {
+		return node();
+	}
+
+	public Void visitId(FlatAST ast, int expr) {
+		return node();
+	}
+
+	public Void visitTrue(FlatAST ast, int expr) {
+		return node();
+	}
+
+	public Void visitFalse(FlatAST ast, int expr) {
+		return node();
+	}
+}
@@ -0,0 +1,115 @@
+package csc426;
+
+import java.io.StringReader;
+
+import csc426.AST.Program;
+
+/**
+ * Compares the object AST with the FlatAST on generated programs: heap bytes
+ * retained per node, and the time of a full traversal (counting nodes). Also
+ * checks that toProgram() gives back the same tree. The "shared" form is the
+ * object AST parsed with shared expressions (AST.share).
+ *
+ * Run with the program sizes to use as arguments (default 1000 10000).
+ */
+public class Footprint {
+	public static final int COPIES = 20;
+
+	public static void main(String[] args) throws Exception {
+		int[] sizes = { 1000, 10000 };
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; ++i) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+
+		System.out.printf("%8s %8s %-6s %12s %12s%n", "size", "nodes", "form", "bytes/node", "walk ms");
+		for (int size : sizes) {
+			String text = new ProgramGenerator(size, size, 4, 6).generate();
+			Program program = parse(text);
+			FlatAST flat = FlatAST.of(program);
+			int nodes = NodeCounter.count(program);
+			if (nodes != flat.size() || FlatNodeCounter.count(flat) != nodes) {
+				throw new IllegalStateException("node counts differ");
+			}
+			if (!program.accept(new ASTRenderVisitor()).equals(flat.toProgram().accept(new ASTRenderVisitor()))) {
+				throw new IllegalStateException("toProgram() differs from the original");
+			}
+
+			Object[] copies = new Object[COPIES];
+			long before = used();
+			for (int i = 0; i < COPIES; ++i) {
+				copies[i] = parse(text);
+			}
+			long objects = used() - before;
+			copies = new Object[COPIES];
+			before = used();
+			for (int i = 0; i < COPIES; ++i) {
+				copies[i] = FlatAST.of(program);
+			}
+			long arrays = used() - before;
+			copies = new Object[COPIES];
+			before = used();
+			for (int i = 0; i < COPIES; ++i) {
+				copies[i] = parse(text, true);
+			}
+			long shared = used() - before;
+			ASTRenderVisitor render = new ASTRenderVisitor();
+			if (!program.accept(render).equals(((Program) copies[0]).accept(render))) {
+				throw new IllegalStateException("sharing expressions changes the tree");
+			}
+
+			long objectTime = time(() -> NodeCounter.count(program));
+			long flatTime = time(() -> FlatNodeCounter.count(flat));
+
+			System.out.printf("%8d %8d %-6s %12.1f %12.3f%n", size, nodes, "object",
+					(double) objects / COPIES / nodes, objectTime / 1e6);
+			System.out.printf("%8d %8d %-6s %12.1f %12.3f%n", size, nodes, "flat", (double) arrays / COPIES / nodes,
+					flatTime / 1e6);
+			System.out.printf("%8d %8d %-6s %12.1f%n", size, nodes, "shared", (double) shared / COPIES / nodes);
+			copies[0] = null;
+		}
+	}
+
+	static Program parse(String text) throws java.io.IOException, ParseError {
+		return parse(text, false);
+	}
+
+	static Program parse(String text, boolean share) throws java.io.IOException, ParseError {
+		HashCons previous = AST.share(share ? new HashCons() : null);
+		try {
+			return new Parser(new Lookahead(new Scanner(new StringReader(text)))).parseProgram();
+		} finally {
+			AST.share(previous);
+		}
+	}
+
+	/**
+	 * @return the bytes of heap in use after a collection
+	 */
+	static long used() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; ++i) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * @return the median time of a task in nanoseconds
+	 */
+	static long time(Runnable task) {
+		long[] times = new long[Benchmark.RUNS];
+		for (int i = 0; i < Benchmark.WARMUP; ++i) {
+			task.run();
+		}
+		for (int i = 0; i < times.length; ++i) {
+			long start = System.nanoTime();
+			task.run();
+			times[i] = System.nanoTime() - start;
+		}
+		java.util.Arrays.sort(times);
+		return times[times.length / 2];
+	}
+}
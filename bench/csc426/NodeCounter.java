@@ -0,0 +1,146 @@
+package csc426;
+
+import csc426.AST.*;
+
+/**
+ * Counts the nodes of an AST, for reporting parser throughput in nodes per
+ * second. The children of each node are scheduled on a Traversal, so trees
+ * of any depth are counted without recursion.
+ */
+public class NodeCounter implements ASTVisitor<Void> {
+	private final Traversal traversal;
+	private int count;
+
+	private NodeCounter() {
+		this.traversal = new Traversal(this);
+		this.count = 0;
+	}
+
+	/**
+	 * @param root
+	 * @return the number of nodes in the tree
+	 */
+	public static int count(AST root) {
+		NodeCounter counter = new NodeCounter();
+		counter.traversal.run(root);
+		return counter.count;
+	}
+
+	private Void node(AST... children) {
+		++count;
+		for (AST child : children) {
+			traversal.visit(child);
+		}
+		return null;
+	}
+
+	private void all(java.util.List<? extends AST> children) {
+		for (AST child : children) {
+			traversal.visit(child);
+		}
+	}
+
+	public Void visit(Program program) {
+		return node(program.block);
+	}
+
+	public Void visit(Block block) {
+		all(block.consts);
+		all(block.vars);
+		all(block.procs);
+		all(block.stmts);
+		return node();
+	}
+
+	public Void visit(ConstDecl decl) {
+		return node();
+	}
+
+	public Void visit(VarDecl decl) {
+		return node();
+	}
+
+	public Void visit(ProcDecl decl) {
+		all(decl.params);
+		return node(decl.block);
+	}
+
+	public Void visit(Param.Val param) {
+		return node();
+	}
+
+	public Void visit(Param.Var param) {
+		return node();
+	}
+
+	public Void visit(Stmt.Assign stmt) {
+		return node(stmt.expr);
+	}
+
+	public Void visit(Stmt.Call stmt) {
+		all(stmt.args);
+		return node();
+	}
+
+	public Void visit(Stmt.Sequence stmt) {
+		all(stmt.body);
+		return node();
+	}
+
+	public Void visit(Stmt.IfThen stmt) {
+		return node(stmt.test, stmt.trueClause);
+	}
+
+	public Void visit(Stmt.IfThenElse stmt) {
+		return node(stmt.test, stmt.trueClause, stmt.falseClause);
+	}
+
+	public Void visit(Stmt.While stmt) {
+		return node(stmt.test, stmt.body);
+	}
+
+	public Void visit(Stmt.Prompt stmt) {
+		return node();
+	}
+
+	public Void visit(Stmt.Prompt2 stmt) {
+		return node();
+	}
+
+	public Void visit(Stmt.Print stmt) {
+		all(stmt.items);
+		return node();
+	}
+
+	public Void visit(Item.ExprItem item) {
+		return node(item.expr);
+	}
+
+	public Void visit(Item.StringItem item) {
+		return node();
+	}
+
+	public Void visit(Expr.BinOp expr) {
+		return node(expr.left, expr.right);
+	}
+
+	public Void visit(Expr.UnOp expr) {
+		return node(expr.expr);
+	}
+
+	public Void visit(Expr.Num expr) {
+		return node();
+	}
+
+	public Void visit(Expr.Id expr) {
+		return node();
+	}
+
+	public Void visit(Expr.True expr) {
+		return node();
+	}
+
+	public Void visit(Expr.False expr) {
+		return node();
+	}
+}
@@ -0,0 +1,473 @@
+package csc426;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates random but valid YASL programs for load and stress testing. The
+ * output depends only on the seed and the settings, so a failing program can
+ * always be regenerated.
+ *
+ * Every construct of the language is used: constants, int and bool
+ * variables, nested procedures with value and var parameters, assignment,
+ * calls, begin, if, if/else, while, print and (optionally) prompt. The
+ * programs also run to completion:
+ * <ul>
+ * <li>every declared name is unique, so static and dynamic scoping agree;</li>
+ * <li>locals are initialized before anything else in their block;</li>
+ * <li>loops run a bounded number of times on a counter nobody else writes;</li>
+ * <li>procedures only call procedures declared before them, so there is no
+ * recursion, and a call is only made if the estimated number of steps of
+ * the whole program stays under STEP_LIMIT;</li>
+ * <li>var arguments are always variables of the right type;</li>
+ * <li>div and mod only divide by nonzero literals.</li>
+ * </ul>
+ */
+public class ProgramGenerator {
+	/**
+	 * Bound on the estimated number of statements executed through calls.
+	 */
+	public static final long STEP_LIMIT = 100000;
+
+	/**
+	 * Maximum depth of a generated expression.
+	 */
+	public static final int EXPR_DEPTH = 3;
+
+	/**
+	 * Maximum number of iterations of a generated loop.
+	 */
+	public static final int MAX_ITERATIONS = 3;
+
+	private static final String[] WORDS = { "alpha", "beta", "gamma", "delta", "value", "sum", "is", "the",
+			"\"\"quoted\"\"", "=", ":" };
+
+	private final long seed;
+	private final int size;
+	private final int depth;
+	private final int identifiers;
+	private boolean prompts;
+
+	private Random random;
+	private int nextName;
+	private List<Scope> scopes;
+	private long steps;
+	private long multiplier;
+
+	/**
+	 * @param seed
+	 *            seed for the random choices
+	 * @param size
+	 *            approximate total number of statements
+	 * @param depth
+	 *            maximum nesting depth of statements, and of procedures
+	 * @param identifiers
+	 *            number of variables declared in each block (at least 2)
+	 */
+	public ProgramGenerator(long seed, int size, int depth, int identifiers) {
+		this.seed = seed;
+		this.size = size;
+		this.depth = depth;
+		this.identifiers = Math.max(2, identifiers);
+		this.prompts = false;
+	}
+
+	/**
+	 * Allow prompt statements. They are off by default, since a program that
+	 * prompts reads its input from the user.
+	 *
+	 * @param prompts
+	 */
+	public void setPrompts(boolean prompts) {
+		this.prompts = prompts;
+	}
+
+	/**
+	 * @return the text of a new program; the same for every call
+	 */
+	public String generate() {
+		random = new Random(seed);
+		nextName = 0;
+		scopes = new ArrayList<>();
+		StringBuilder out = new StringBuilder("program generated;\n");
+		block(out, 0, size, new ArrayList<>());
+		return out.append(".\n").toString();
+	}
+
+	/**
+	 * Write a block, without its terminating semicolon or period.
+	 *
+	 * @return the estimated number of steps to execute the block
+	 */
+	private long block(StringBuilder out, int level, int budget, List<Symbol> params) {
+		Scope scope = new Scope();
+		scope.symbols.addAll(params);
+		scopes.add(scope);
+		String indent = indent(level);
+
+		int consts = random.nextInt(3);
+		for (int i = 0; i < consts; ++i) {
+			Symbol k = new Symbol(name("k"), true, false);
+			out.append(indent).append("const ").append(k.name).append(" = ").append(random.nextInt(41) - 20)
+					.append(";\n");
+			scope.symbols.add(k);
+		}
+
+		List<Symbol> locals = new ArrayList<>();
+		for (int i = 0; i < identifiers; ++i) {
+			boolean isInt = (i == 0) || (i != 1 && random.nextInt(3) > 0);
+			locals.add(new Symbol(name(isInt ? "x" : "b"), isInt, true));
+		}
+		scope.symbols.addAll(locals);
+
+		StringBuilder procs = new StringBuilder();
+		int procCount = 0;
+		if (level < depth && budget >= 8) {
+			procCount = 1 + random.nextInt(Math.min(4, budget / 8));
+		}
+		int share = budget / (procCount + 1);
+		for (int i = 0; i < procCount; ++i) {
+			proc(procs, level, share);
+		}
+
+		long savedSteps = steps;
+		long savedMultiplier = multiplier;
+		steps = 0;
+		multiplier = 1;
+		StringBuilder body = new StringBuilder();
+		for (Symbol local : locals) {
+			body.append(indent).append(indent(1)).append(local.name).append(" = ")
+					.append(local.isInt ? Integer.toString(random.nextInt(100)) : Boolean.toString(random.nextBoolean()))
+					.append(";\n");
+			steps += 1;
+		}
+		stmts(body, level + 1, Math.max(1, budget - procCount * share), 0);
+		long result = steps;
+		steps = savedSteps;
+		multiplier = savedMultiplier;
+
+		locals.addAll(scope.counters);
+		for (Symbol local : locals) {
+			out.append(indent).append("var ").append(local.name).append(": ").append(local.isInt ? "int" : "bool")
+					.append(";\n");
+		}
+		out.append(procs);
+		out.append(indent).append("begin\n").append(body).append(indent).append("end");
+		scopes.remove(scopes.size() - 1);
+		return result;
+	}
+
+	private void proc(StringBuilder out, int level, int budget) {
+		String indent = indent(level);
+		Procedure proc = new Procedure(name("p"));
+		int count = random.nextInt(4);
+		out.append(indent).append("proc ").append(proc.name);
+		for (int i = 0; i < count; ++i) {
+			boolean isInt = random.nextBoolean();
+			Symbol param = new Symbol(name(isInt ? "x" : "b"), isInt, true);
+			boolean isVar = random.nextBoolean();
+			proc.params.add(param);
+			proc.isVar.add(isVar);
+			out.append(i == 0 ? "(" : ", ").append(isVar ? "var " : "").append(param.name).append(": ")
+					.append(isInt ? "int" : "bool");
+		}
+		out.append(count > 0 ? ");\n" : ";\n");
+		proc.cost = block(out, level + 1, budget, proc.params);
+		out.append(";\n");
+		scopes.get(scopes.size() - 1).procs.add(proc);
+	}
+
+	/**
+	 * Write statements until count of them have been generated.
+	 */
+	private void stmts(StringBuilder out, int level, int count, int nesting) {
+		while (count > 0) {
+			count -= stmt(out, level, count, nesting);
+		}
+	}
+
+	/**
+	 * Write a begin ... end around count statements.
+	 *
+	 * @return the number of statements written
+	 */
+	private int sequence(StringBuilder out, int level, int count, int nesting) {
+		String indent = indent(level);
+		out.append(indent).append("begin\n");
+		stmts(out, level + 1, count, nesting + 1);
+		out.append(indent).append("end;\n");
+		steps += multiplier;
+		return count + 1;
+	}
+
+	/**
+	 * Write one statement, which may contain up to count - 1 others.
+	 *
+	 * @return the number of statements written
+	 */
+	private int stmt(StringBuilder out, int level, int count, int nesting) {
+		String indent = indent(level);
+		if (nesting < depth && count >= 3 && random.nextInt(3) == 0) {
+			int inner = 1 + random.nextInt(Math.min(count - 1, 6));
+			switch (random.nextInt(4)) {
+			case 0:
+				out.append(indent).append("if ").append(boolExpr(EXPR_DEPTH)).append(" then\n");
+				clause(out, level, inner, nesting, false);
+				return inner + 1;
+			case 1: {
+				int trueCount = (inner + 1) / 2;
+				out.append(indent).append("if ").append(boolExpr(EXPR_DEPTH)).append(" then\n");
+				clause(out, level, trueCount, nesting, true);
+				out.append(indent).append("else\n");
+				clause(out, level, Math.max(1, inner - trueCount), nesting, true);
+				return inner + 1;
+			}
+			case 2:
+				if (multiplier * MAX_ITERATIONS <= STEP_LIMIT) {
+					return loop(out, level, inner, nesting);
+				}
+				return sequence(out, level, inner, nesting);
+			default:
+				return sequence(out, level, inner, nesting);
+			}
+		}
+
+		steps += multiplier;
+		int choice = random.nextInt(prompts ? 10 : 9);
+		if (choice < 3 && call(out, indent)) {
+			return 1;
+		} else if (choice < 7) {
+			Symbol target = pick(random.nextBoolean(), true);
+			out.append(indent).append(target.name).append(" = ")
+					.append(target.isInt ? intExpr(EXPR_DEPTH) : boolExpr(EXPR_DEPTH)).append(";\n");
+		} else if (choice < 9) {
+			out.append(indent).append("print ");
+			int items = 1 + random.nextInt(4);
+			for (int i = 0; i < items; ++i) {
+				out.append(i == 0 ? "" : ", ").append(random.nextBoolean() ? string() : intExpr(EXPR_DEPTH));
+			}
+			out.append(";\n");
+		} else if (random.nextBoolean()) {
+			out.append(indent).append("prompt ").append(string()).append(";\n");
+		} else {
+			out.append(indent).append("prompt ").append(string()).append(", ").append(pick(true, true).name)
+					.append(";\n");
+		}
+		return 1;
+	}
+
+	/**
+	 * Write the body of an if statement; a single statement may only be used
+	 * when there is no else to attach to it.
+	 */
+	private void clause(StringBuilder out, int level, int count, int nesting, boolean sequence) {
+		if (count == 1 && !sequence) {
+			stmt(out, level + 1, 1, nesting + 1);
+		} else {
+			out.append(indent(level)).append("begin\n");
+			stmts(out, level + 1, count, nesting + 1);
+			out.append(indent(level)).append("end;\n");
+		}
+	}
+
+	private int loop(StringBuilder out, int level, int inner, int nesting) {
+		String indent = indent(level);
+		Symbol counter = new Symbol(name("c"), true, false);
+		scopes.get(scopes.size() - 1).counters.add(counter);
+		int iterations = 1 + random.nextInt(MAX_ITERATIONS);
+
+		out.append(indent).append(counter.name).append(" = 0;\n");
+		out.append(indent).append("while ").append(counter.name).append(" < ").append(iterations)
+				.append(" do begin\n");
+		steps += multiplier;
+		long savedMultiplier = multiplier;
+		multiplier *= iterations;
+		stmts(out, level + 1, inner, nesting + 1);
+		out.append(indent(level + 1)).append(counter.name).append(" = ").append(counter.name).append(" + 1;\n");
+		steps += multiplier;
+		multiplier = savedMultiplier;
+		out.append(indent).append("end;\n");
+		return inner + 1;
+	}
+
+	/**
+	 * Write a call to a visible procedure, if one fits in STEP_LIMIT.
+	 *
+	 * @return true if a call was written
+	 */
+	private boolean call(StringBuilder out, String indent) {
+		List<Procedure> candidates = new ArrayList<>();
+		for (Scope scope : scopes) {
+			for (Procedure proc : scope.procs) {
+				if (steps + multiplier * (proc.cost + 1) <= STEP_LIMIT) {
+					candidates.add(proc);
+				}
+			}
+		}
+		if (candidates.isEmpty()) {
+			return false;
+		}
+		Procedure proc = candidates.get(random.nextInt(candidates.size()));
+		steps += multiplier * proc.cost;
+		out.append(indent).append(proc.name);
+		for (int i = 0; i < proc.params.size(); ++i) {
+			Symbol param = proc.params.get(i);
+			out.append(i == 0 ? "(" : ", ");
+			if (proc.isVar.get(i)) {
+				out.append(pick(param.isInt, true).name);
+			} else {
+				out.append(param.isInt ? intExpr(EXPR_DEPTH) : boolExpr(EXPR_DEPTH));
+			}
+		}
+		out.append(proc.params.isEmpty() ? ";\n" : ");\n");
+		return true;
+	}
+
+	private String intExpr(int d) {
+		if (d == 0 || random.nextInt(4) == 0) {
+			return intAtom();
+		}
+		switch (random.nextInt(6)) {
+		case 0:
+			return intTerm(d - 1) + " + " + intTerm(d - 1);
+		case 1:
+			return intTerm(d - 1) + " - " + intTerm(d - 1);
+		case 2:
+			return intTerm(d - 1) + " * " + intTerm(d - 1);
+		case 3:
+			return intTerm(d - 1) + " div " + (1 + random.nextInt(9));
+		case 4:
+			return intTerm(d - 1) + " mod " + (1 + random.nextInt(9));
+		default:
+			return "-" + intTerm(d - 1);
+		}
+	}
+
+	private String intTerm(int d) {
+		String expr = intExpr(d);
+		return isAtom(expr) ? expr : "(" + expr + ")";
+	}
+
+	private String intAtom() {
+		return random.nextBoolean() ? Integer.toString(random.nextInt(100)) : pick(true, false).name;
+	}
+
+	private String boolExpr(int d) {
+		if (d == 0 || random.nextInt(4) == 0) {
+			switch (random.nextInt(4)) {
+			case 0:
+				return "true";
+			case 1:
+				return "false";
+			default:
+				return pick(false, false).name;
+			}
+		}
+		switch (random.nextInt(4)) {
+		case 0: {
+			String[] ops = { " == ", " <> ", " < ", " <= ", " > ", " >= " };
+			return intTerm(d - 1) + ops[random.nextInt(ops.length)] + intTerm(d - 1);
+		}
+		case 1:
+			return boolTerm(d - 1) + " and " + boolTerm(d - 1);
+		case 2:
+			return boolTerm(d - 1) + " or " + boolTerm(d - 1);
+		default:
+			return "not " + boolTerm(d - 1);
+		}
+	}
+
+	private String boolTerm(int d) {
+		String expr = boolExpr(d);
+		return isAtom(expr) ? expr : "(" + expr + ")";
+	}
+
+	private static boolean isAtom(String expr) {
+		return expr.indexOf(' ') < 0 && !expr.startsWith("-");
+	}
+
+	private String string() {
+		StringBuilder result = new StringBuilder("\"");
+		int words = random.nextInt(5);
+		for (int i = 0; i < words; ++i) {
+			result.append(i == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return result.append("\"").toString();
+	}
+
+	/**
+	 * Choose a visible symbol of the given type. Every block declares at
+	 * least one int and one bool variable, so there always is one.
+	 *
+	 * @param isInt
+	 * @param assignable
+	 *            whether the symbol must be a variable rather than a constant
+	 */
+	private Symbol pick(boolean isInt, boolean assignable) {
+		List<Symbol> candidates = new ArrayList<>();
+		for (Scope scope : scopes) {
+			for (Symbol symbol : scope.symbols) {
+				if (symbol.isInt == isInt && (symbol.assignable || !assignable)) {
+					candidates.add(symbol);
+				}
+			}
+		}
+		return candidates.get(random.nextInt(candidates.size()));
+	}
+
+	private String name(String prefix) {
+		return prefix + (nextName++);
+	}
+
+	private static String indent(int level) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < level; ++i) {
+			result.append("  ");
+		}
+		return result.toString();
+	}
+
+	private static class Symbol {
+		final String name;
+		final boolean isInt;
+		final boolean assignable;
+
+		Symbol(String name, boolean isInt, boolean assignable) {
+			this.name = name;
+			this.isInt = isInt;
+			this.assignable = assignable;
+		}
+	}
+
+	private static class Procedure {
+		final String name;
+		final List<Symbol> params = new ArrayList<>();
+		final List<Boolean> isVar = new ArrayList<>();
+		long cost;
+
+		Procedure(String name) {
+			this.name = name;
+		}
+	}
+
+	private static class Scope {
+		final List<Symbol> symbols = new ArrayList<>();
+		final List<Procedure> procs = new ArrayList<>();
+		final List<Symbol> counters = new ArrayList<>();
+	}
+
+	/**
+	 * Print a generated program. Arguments: seed, size, depth, identifiers
+	 * and "prompts" to allow prompt statements.
+	 */
+	public static void main(String[] args) {
+		long seed = args.length > 0 ? Long.parseLong(args[0]) : 0;
+		int size = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int depth = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		int identifiers = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+		ProgramGenerator generator = new ProgramGenerator(seed, size, depth, identifiers);
+		generator.setPrompts(args.length > 4 && args[4].equals("prompts"));
+		System.out.print(generator.generate());
+	}
+}
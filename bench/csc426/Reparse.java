@@ -0,0 +1,77 @@
+package csc426;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+
+/**
+ * Compares reparsing a program from scratch with IncrementalParser.edit, for
+ * small edits in the middle of PROCS-shaped programs of increasing size. Each
+ * edit is made and then undone, so every timed run starts from the same text;
+ * the times are per edit.
+ *
+ * Run with the scale factors to use as arguments (default 1 4 16).
+ */
+public class Reparse {
+	/**
+	 * Each edit replaces the first occurrence of a string after the middle of
+	 * the program with another.
+	 */
+	static final String[][] EDITS = { { "+ 1;", "+ 2;" }, { "t = a", "t  = a" }, { "t = a", "t =\na" } };
+
+	static final Diagnostics QUIET = (code, position, c) -> {
+	};
+
+	public static void main(String[] args) throws Exception {
+		int[] scales = { 1, 4, 16 };
+		if (args.length > 0) {
+			scales = new int[args.length];
+			for (int i = 0; i < args.length; ++i) {
+				scales[i] = Integer.parseInt(args[i]);
+			}
+		}
+
+		System.out.printf("%6s %10s %-16s %10s %10s %8s %8s%n", "scale", "chars", "edit", "full ms", "edit ms",
+				"relexed", "reused");
+		for (int scale : scales) {
+			String text = Benchmark.Shape.PROCS.generate(scale);
+			IncrementalParser parser = new IncrementalParser(text, QUIET);
+			for (String[] edit : EDITS) {
+				int offset = text.indexOf(edit[0], text.length() / 2);
+				String edited = text.substring(0, offset) + edit[1] + text.substring(offset + edit[0].length());
+				long full = Footprint.time(() -> full(edited));
+				long incremental = Footprint.time(() -> {
+					try {
+						parser.edit(offset, edit[0].length(), edit[1]);
+						parser.edit(offset, edit[1].length(), edit[0]);
+					} catch (ParseError e) {
+						throw new IllegalStateException(e);
+					}
+				}) / 2;
+				parser.edit(offset, edit[0].length(), edit[1]);
+				ASTRenderVisitor render = new ASTRenderVisitor();
+				if (!parser.program().accept(render).equals(full(edited).accept(render))) {
+					throw new IllegalStateException("incremental parse differs from the full parse");
+				}
+				System.out.printf("%6d %10d %-16s %10.3f %10.3f %8d %8d%n", scale, text.length(),
+						edit[0].replace("\n", "\\n") + " -> " + edit[1].replace("\n", "\\n"), full / 1e6,
+						incremental / 1e6, parser.relexed(), parser.reused());
+				parser.edit(offset, edit[1].length(), edit[0]);
+			}
+		}
+	}
+
+	/**
+	 * Scan and parse a text from scratch.
+	 *
+	 * @return the program
+	 */
+	static AST.Program full(String text) {
+		try {
+			TokenBuffer tokens = TokenBuffer.scan(new Source(new StringReader(text), Source.DEFAULT_BUFFER_SIZE),
+					QUIET);
+			return new Parser(new TokenBufferLookahead(tokens), new ArrayList<>()).parseProgram();
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
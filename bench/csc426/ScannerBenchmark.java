@@ -0,0 +1,125 @@
+package csc426;
+
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Compare the throughput of the State-object scanner with the table-driven
+ * scanner, each reading from an unbuffered and a block-buffered Source, and
+ * of scanning a whole source into a TokenBuffer. Run
+ * with a YASL source file as the argument, or with no argument to scan a
+ * synthetic program. The two token streams are checked for equality before
+ * anything is timed.
+ */
+public class ScannerBenchmark {
+	public static void main(String[] args) throws IOException {
+		String text;
+		if (args.length > 0) {
+			text = new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8);
+		} else {
+			text = synthetic(20000);
+		}
+
+		int count = compare(text);
+		System.out.println(count + " tokens, " + text.length() + " characters");
+
+		for (int round = 0; round < 5; ++round) {
+			for (Scanner.Mode mode : Scanner.Mode.values()) {
+				for (int bufferSize : new int[] { 0, Source.DEFAULT_BUFFER_SIZE }) {
+					long start = System.nanoTime();
+					scan(text, mode, bufferSize);
+					long elapsed = System.nanoTime() - start;
+					System.out.printf("%-7s %-9s %8.1f ms %12.0f tokens/s%n", mode,
+							bufferSize == 0 ? "unbuffered" : "buffered", elapsed / 1e6,
+							count / (elapsed / 1e9));
+				}
+			}
+
+			long start = System.nanoTime();
+			TokenBuffer.scan(new Source(new StringReader(text), Source.DEFAULT_BUFFER_SIZE));
+			long elapsed = System.nanoTime() - start;
+			System.out.printf("%-17s %8.1f ms %12.0f tokens/s%n", "TokenBuffer", elapsed / 1e6,
+					count / (elapsed / 1e9));
+		}
+	}
+
+	/**
+	 * Build a program by repeating a procedure that uses every kind of token.
+	 * 
+	 * @param procs the number of procedures
+	 * @return the source text
+	 */
+	static String synthetic(int procs) {
+		StringBuilder result = new StringBuilder("program bench;\n");
+		for (int i = 0; i < procs; ++i) {
+			result.append("proc p").append(i).append("(var x: int, b: bool);\n");
+			result.append("  const k = -").append(i).append(";\n");
+			result.append("  var y: int; // a comment\n");
+			result.append("begin { another\n comment }\n");
+			result.append("  y = (x * 10 div 3 mod 7) + k - 0;\n");
+			result.append("  if x <= y and not b or x <> 0 then print \"say \"\"hi\"\"\", y;\n");
+			result.append("  while x >= 0 do x = x - 1;\n");
+			result.append("  prompt \"value?\", y;\n");
+			result.append("  b = x == y or x < y or x > y;\n");
+			result.append("end;\n");
+		}
+		result.append("begin\nend.\n");
+		return result.toString();
+	}
+
+	/**
+	 * Scan the text with both recognizers, and into a TokenBuffer, and check
+	 * that the tokens agree.
+	 * 
+	 * @param text
+	 * @return the number of tokens, including EOF
+	 * @throws IOException
+	 */
+	static int compare(String text) throws IOException {
+		Scanner states = new Scanner(new StringReader(text), Scanner.Mode.STATES);
+		Scanner table = new Scanner(new StringReader(text), Scanner.Mode.TABLE);
+		int count = 0;
+		for (;;) {
+			Token expected = states.next();
+			Token actual = table.next();
+			++count;
+			if (expected.type != actual.type || !expected.lexeme.equals(actual.lexeme)
+					|| expected.pos != actual.pos) {
+				throw new IllegalStateException("Token " + count + ": expected " + expected
+						+ " but found " + actual);
+			}
+			if (expected.type == TokenType.EOF) {
+				break;
+			}
+		}
+
+		TokenBuffer tokens = TokenBuffer.scan(new Source(new StringReader(text)));
+		Scanner states2 = new Scanner(new StringReader(text), Scanner.Mode.STATES);
+		for (int i = 0; i < tokens.size(); ++i) {
+			Token expected = states2.next();
+			if (expected.type != tokens.type(i) || !expected.lexeme.equals(tokens.lexeme(i))
+					|| expected.pos != tokens.position(i)) {
+				throw new IllegalStateException("Buffered token " + i + ": expected " + expected
+						+ " but found " + tokens.token(i));
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Scan the whole text, reading it one character at a time if bufferSize is
+	 * 0 and in blocks of bufferSize otherwise.
+	 */
+	static void scan(String text, Scanner.Mode mode, int bufferSize) throws IOException {
+		Reader in = new StringReader(text);
+		Source source = (bufferSize == 0) ? new Source(in) : new Source(in, bufferSize);
+		Scanner scanner = new Scanner(source, mode);
+		while (scanner.next().type != TokenType.EOF) {
+		}
+	}
+}
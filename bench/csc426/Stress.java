@@ -0,0 +1,163 @@
+package csc426;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import csc426.AST.Program;
+
+/**
+ * Runs the Parser, TypeChecker, InterpreterVisitor and CodeGenerator, and
+ * the FlatTypeChecker, FlatInterpreter and FlatCodeGenerator over the
+ * FlatAST, over many generated programs and reports, per stage, how many
+ * programs failed and the seed and message of the first failure. The
+ * FlatCodeGenerator stage also fails unless its code is the same as the
+ * CodeGenerator's. One more stage scans each
+ * program, with an unexpected character after every space, both
+ * sequentially and with the ParallelLexer, and fails unless both report the
+ * same errors.
+ *
+ * Arguments: number of programs, size, depth and identifiers (see
+ * ProgramGenerator). Each stage gets TIMEOUT seconds per program; a stage
+ * that times out is not run again, since its thread cannot be stopped.
+ */
+public class Stress {
+	public static final long TIMEOUT = 10;
+
+	/**
+	 * One stage of the compiler, run on a freshly parsed program.
+	 */
+	interface Stage {
+		void run(String text, Program program) throws Exception;
+	}
+
+	private static final String[] NAMES = { "Parser", "TypeChecker", "InterpreterVisitor", "CodeGenerator",
+			"FlatTypeChecker", "FlatInterpreter", "FlatCodeGenerator", "ParallelLexer" };
+
+	/**
+	 * Small enough chunks that generated programs are split among several.
+	 */
+	private static final int CHUNK_SIZE = 1024;
+
+	private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+	public static void main(String[] args) throws Exception {
+		int programs = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int size = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int depth = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		int identifiers = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+
+		Stage[] stages = { (text, program) -> {
+		}, (text, program) -> {
+			new TypeChecker().check(program);
+		}, (text, program) -> {
+			new InterpreterVisitor(new java.util.Scanner(""), nullStream()).run(program);
+		}, (text, program) -> {
+			new TypeChecker().check(program);
+			new CodeGenerator(null, nullStream(), new PrintWriter(Writer.nullWriter())).generate(program);
+		}, (text, program) -> {
+			new FlatTypeChecker(FlatAST.of(program)).check();
+		}, (text, program) -> {
+			new FlatInterpreter(FlatAST.of(program), new java.util.Scanner(""), nullStream()).run();
+		}, (text, program) -> {
+			compareCode(program);
+		}, (text, program) -> {
+			compareScans(text.replace(" ", " @"));
+		} };
+		int[] failures = new int[stages.length];
+		String[] first = new String[stages.length];
+		boolean[] stopped = new boolean[stages.length];
+
+		ExecutorService executor = Executors.newCachedThreadPool(task -> {
+			Thread thread = new Thread(task, "stress");
+			thread.setDaemon(true);
+			return thread;
+		});
+		for (int seed = 0; seed < programs; ++seed) {
+			String text = new ProgramGenerator(seed, size, depth, identifiers).generate();
+			for (int i = 0; i < stages.length; ++i) {
+				if (stopped[i]) {
+					continue;
+				}
+				Stage stage = stages[i];
+				Future<?> result = executor.submit(() -> {
+					Program program = new Parser(new Lookahead(new Scanner(new StringReader(text)))).parseProgram();
+					stage.run(text, program);
+					return null;
+				});
+				String message = null;
+				try {
+					result.get(TIMEOUT, TimeUnit.SECONDS);
+				} catch (TimeoutException e) {
+					result.cancel(true);
+					stopped[i] = true;
+					message = "timed out";
+				} catch (java.util.concurrent.ExecutionException e) {
+					message = e.getCause().toString();
+				}
+				if (message != null) {
+					if (failures[i]++ == 0) {
+						first[i] = "seed " + seed + ": " + message;
+					}
+				}
+			}
+		}
+
+		for (int i = 0; i < stages.length; ++i) {
+			System.out.printf("%-20s %6d failed%s%n", NAMES[i], failures[i],
+					first[i] == null ? "" : ", first at " + first[i]);
+		}
+	}
+
+	/**
+	 * Scan a text sequentially and in parallel, and check that the errors
+	 * reported are the same.
+	 */
+	private static void compareScans(String text) throws Exception {
+		List<String> sequential = new ArrayList<>();
+		List<String> parallel = new ArrayList<>();
+		TokenBuffer.scan(new Source(new StringReader(text), Source.DEFAULT_BUFFER_SIZE),
+				(code, position, c) -> sequential.add(Diagnostics.message(code, position, c)));
+		char[] chars = text.toCharArray();
+		ParallelLexer.scan(chars, chars.length, POOL, CHUNK_SIZE,
+				(code, position, c) -> parallel.add(Diagnostics.message(code, position, c)));
+		if (!sequential.equals(parallel)) {
+			throw new IllegalStateException(
+					sequential.size() + " errors scanning sequentially, " + parallel.size() + " in parallel");
+		}
+	}
+
+	/**
+	 * Generate code for a program from the object tree and from the flat
+	 * form, and check that it is the same.
+	 */
+	private static void compareCode(Program program) {
+		FlatAST flat = FlatAST.of(program);
+		FlatTypeChecker types = new FlatTypeChecker(flat);
+		types.check();
+		StringWriter flatCode = new StringWriter();
+		new FlatCodeGenerator(flat, types, new PrintWriter(flatCode)).generate();
+
+		new TypeChecker().check(program);
+		StringWriter code = new StringWriter();
+		new CodeGenerator(null, nullStream(), new PrintWriter(code)).generate(program);
+		if (!code.toString().equals(flatCode.toString())) {
+			throw new IllegalStateException("FlatCodeGenerator and CodeGenerator differ");
+		}
+	}
+
+	private static PrintStream nullStream() {
+		return new PrintStream(OutputStream.nullOutputStream());
+	}
+}
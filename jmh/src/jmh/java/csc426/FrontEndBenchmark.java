@@ -0,0 +1,91 @@
+package csc426;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import csc426.AST.Program;
+
+/**
+ * The measurements of Benchmark, run by JMH: the scanner, the parser over a
+ * pre-lexed TokenBuffer (sequentially and in parallel), the loading of a
+ * serialized AST, and a whole compile from the mapped file, for each shape
+ * and scale of program. Each result is the average time of one operation,
+ * in forked JVMs after warm-up iterations. (Benchmark here is the JMH
+ * annotation, so the corpus class is named in full.)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class FrontEndBenchmark {
+	@Param({ "NESTING", "PROCS", "EXPRESSIONS", "STRINGS", "GENERATED" })
+	public csc426.Benchmark.Shape shape;
+
+	@Param({ "1", "4", "16" })
+	public int scale;
+
+	private String text;
+	private Path file;
+	private TokenBuffer tokens;
+	private byte[] serialized;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, ParseError {
+		text = shape.generate(scale);
+		file = Files.createTempFile("jmh-" + shape, ".yasl");
+		Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+		tokens = TokenBuffer.scan(new Source(new StringReader(text)));
+		Program program = new Parser(new TokenBufferLookahead(tokens)).parseProgram();
+		serialized = ASTSerializer.toBytes(program, true);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public long scan() throws IOException {
+		return csc426.Benchmark.scan(text);
+	}
+
+	@Benchmark
+	public long parse() throws ParseError {
+		return csc426.Benchmark.parse(tokens);
+	}
+
+	@Benchmark
+	public long parallelParse() throws ParseError {
+		return csc426.Benchmark.parallelParse(tokens);
+	}
+
+	@Benchmark
+	public long load() throws IOException {
+		return csc426.Benchmark.load(serialized);
+	}
+
+	@Benchmark
+	public long compile() throws IOException, ParseError {
+		return csc426.Benchmark.compile(file, text.length());
+	}
+}
@@ -3,110 +3,165 @@ package csc426;
 import java.util.List;
 
 public abstract class AST {
-	public Position position;
+	/**
+	 * The packed position where the node started when it was parsed (see start)
+	 */
+	public final long pos;
+
+	/**
+	 * How the node has moved since, if it was kept by an IncrementalParser
+	 */
+	Origin origin;
 	
-	AST(Position position) {
-		this.position = position;
+	AST(long pos) {
+		this.pos = pos;
+	}
+
+	/**
+	 * @return the packed position where the node starts in the source now
+	 */
+	public long start() {
+		return (origin == null) ? pos : origin.move(pos);
+	}
+
+	/**
+	 * @return a Position object for where the node starts in the source
+	 */
+	public Position position() {
+		return Position.unpack(start());
 	}
 	
 	public abstract <T> T accept(ASTVisitor<T> visitor);
 	
 	// Factory methods for creating Abstract Syntax Tree nodes
 
-	public static Program program(String name, Block block, Position position) {
+	public static Program program(String name, Block block, long position) {
 		return new Program(name, block, position);
 	}
 
-	public static Block block(List<ConstDecl> consts, List<VarDecl> vars, List<ProcDecl> procs, List<Stmt> stmts, Position position) {
+	public static Block block(List<ConstDecl> consts, List<VarDecl> vars, List<ProcDecl> procs, List<Stmt> stmts, long position) {
 		return new Block(consts, vars, procs, stmts, position);
 	}
 
-	public static ConstDecl constDecl(String id, int value, Position position) {
+	public static ConstDecl constDecl(String id, int value, long position) {
 		return new ConstDecl(id, value, position);
 	}
 
-	public static VarDecl varDecl(String id, Type type, Position position) {
+	public static VarDecl varDecl(String id, Type type, long position) {
 		return new VarDecl(id, type, position);
 	}
 
-	public static ProcDecl procDecl(String id, List<Param> params, Block block, Position position) {
+	public static ProcDecl procDecl(String id, List<Param> params, Block block, long position) {
 		return new ProcDecl(id, params, block, position);
 	}
 
-	public static Param valParam(String id, Type type, Position position) {
+	public static Param valParam(String id, Type type, long position) {
 		return new Param.Val(id, type, position);
 	}
 
-	public static Param varParam(String id, Type type, Position position) {
+	public static Param varParam(String id, Type type, long position) {
 		return new Param.Var(id, type, position);
 	}
 
-	public static Stmt assignStmt(String id, Expr expr, Position position) {
+	public static Stmt assignStmt(String id, Expr expr, long position) {
 		return new Stmt.Assign(id, expr, position);
 	}
 
-	public static Stmt callStmt(String id, List<Expr> args, Position position) {
+	public static Stmt callStmt(String id, List<Expr> args, long position) {
 		return new Stmt.Call(id, args, position);
 	}
 
-	public static Stmt sequenceStmt(List<Stmt> body, Position position) {
+	public static Stmt sequenceStmt(List<Stmt> body, long position) {
 		return new Stmt.Sequence(body, position);
 	}
 
-	public static Stmt ifThenStmt(Expr test, Stmt trueClause, Position position) {
+	public static Stmt ifThenStmt(Expr test, Stmt trueClause, long position) {
 		return new Stmt.IfThen(test, trueClause, position);
 	}
 
-	public static Stmt ifThenElseStmt(Expr test, Stmt trueClause, Stmt falseClause, Position position) {
+	public static Stmt ifThenElseStmt(Expr test, Stmt trueClause, Stmt falseClause, long position) {
 		return new Stmt.IfThenElse(test, trueClause, falseClause, position);
 	}
 
-	public static Stmt whileStmt(Expr test, Stmt body, Position position) {
+	public static Stmt whileStmt(Expr test, Stmt body, long position) {
 		return new Stmt.While(test, body, position);
 	}
 
-	public static Stmt promptStmt(String message, Position position) {
+	public static Stmt promptStmt(String message, long position) {
 		return new Stmt.Prompt(message, position);
 	}
 
-	public static Stmt prompt2Stmt(String message, String id, Position position) {
+	public static Stmt prompt2Stmt(String message, String id, long position) {
 		return new Stmt.Prompt2(message, id, position);
 	}
 
-	public static Stmt printStmt(List<Item> items, Position position) {
+	public static Stmt printStmt(List<Item> items, long position) {
 		return new Stmt.Print(items, position);
 	}
 
-	public static Item exprItem(Expr expr, Position position) {
+	public static Item exprItem(Expr expr, long position) {
 		return new Item.ExprItem(expr, position);
 	}
 
-	public static Item stringItem(String message, Position position) {
+	public static Item stringItem(String message, long position) {
 		return new Item.StringItem(message, position);
 	}
 
-	public static Expr binOpExpr(Expr left, Op2 op, Expr right, Position position) {
-		return new Expr.BinOp(left, op, right, position);
+	// The expression factories go through the thread's HashCons, if any
+
+	private static final ThreadLocal<HashCons> SHARED = new ThreadLocal<>();
+
+	/**
+	 * Make the expression factory methods, on this thread, return the shared
+	 * nodes of the given HashCons, or new nodes again if it is null. Shared
+	 * nodes keep the position of their first occurrence, so this is only for
+	 * trees whose later passes do not need the positions of expressions.
+	 * 
+	 * @param pool
+	 * @return the HashCons used before, to be restored afterwards
+	 */
+	public static HashCons share(HashCons pool) {
+		HashCons previous = SHARED.get();
+		SHARED.set(pool);
+		return previous;
+	}
+
+	/**
+	 * @return the HashCons used by the expression factory methods on this
+	 *         thread, or null if they make new nodes
+	 */
+	public static HashCons sharing() {
+		return SHARED.get();
 	}
 
-	public static Expr unOpExpr(Op1 op, Expr expr, Position position) {
-		return new Expr.UnOp(op, expr, position);
+	public static Expr binOpExpr(Expr left, Op2 op, Expr right, long position) {
+		HashCons pool = SHARED.get();
+		return (pool == null) ? new Expr.BinOp(left, op, right, position) : pool.binOpExpr(left, op, right, position);
 	}
 
-	public static Expr numExpr(int value, Position position) {
-		return new Expr.Num(value, position);
+	public static Expr unOpExpr(Op1 op, Expr expr, long position) {
+		HashCons pool = SHARED.get();
+		return (pool == null) ? new Expr.UnOp(op, expr, position) : pool.unOpExpr(op, expr, position);
 	}
 
-	public static Expr idExpr(String id, Position position) {
-		return new Expr.Id(id, position);
+	public static Expr numExpr(int value, long position) {
+		HashCons pool = SHARED.get();
+		return (pool == null) ? new Expr.Num(value, position) : pool.numExpr(value, position);
 	}
 
-	public static Expr trueExpr(Position position) {
-		return new Expr.True(position);
+	public static Expr idExpr(String id, long position) {
+		HashCons pool = SHARED.get();
+		return (pool == null) ? new Expr.Id(id, position) : pool.idExpr(id, position);
 	}
 
-	public static Expr falseExpr(Position position) {
-		return new Expr.False(position);
+	public static Expr trueExpr(long position) {
+		HashCons pool = SHARED.get();
+		return (pool == null) ? new Expr.True(position) : pool.trueExpr(position);
+	}
+
+	public static Expr falseExpr(long position) {
+		HashCons pool = SHARED.get();
+		return (pool == null) ? new Expr.False(position) : pool.falseExpr(position);
 	}
 
 	// Abstract Syntax Tree node classes
@@ -115,7 +170,7 @@ public abstract class AST {
 		public final String name;
 		public final Block block;
 
-		Program(String name, Block block, Position position) {
+		Program(String name, Block block, long position) {
 			super(position);
 			this.name = name;
 			this.block = block;
@@ -127,7 +182,7 @@ public abstract class AST {
 		
 		@Override
 		public String toString() {
-			return "Program " + name + " at " + position;
+			return "Program " + name + " at " + position();
 		}
 	}
 
@@ -137,7 +192,7 @@ public abstract class AST {
 		public final List<ProcDecl> procs;
 		public final List<Stmt> stmts;
 
-		Block(List<ConstDecl> consts, List<VarDecl> vars, List<ProcDecl> procs, List<Stmt> stmts, Position position) {
+		Block(List<ConstDecl> consts, List<VarDecl> vars, List<ProcDecl> procs, List<Stmt> stmts, long position) {
 			super(position);
 			this.consts = consts;
 			this.vars = vars;
@@ -151,7 +206,7 @@ public abstract class AST {
 		
 		@Override
 		public String toString() {
-			return "Block at " + position;
+			return "Block at " + position();
 		}
 
 	}
@@ -160,7 +215,7 @@ public abstract class AST {
 		public final String id;
 		public final int value;
 
-		ConstDecl(String id, int value, Position position) {
+		ConstDecl(String id, int value, long position) {
 			super(position);
 			this.id = id;
 			this.value = value;
@@ -172,7 +227,7 @@ public abstract class AST {
 		
 		@Override
 		public String toString() {
-			return "Constant declaration " + id + " at " + position;
+			return "Constant declaration " + id + " at " + position();
 		}
 	}
 
@@ -180,7 +235,7 @@ public abstract class AST {
 		public final String id;
 		public final Type type;
 
-		VarDecl(String id, Type type, Position position) {
+		VarDecl(String id, Type type, long position) {
 			super(position);
 			this.id = id;
 			this.type = type;
@@ -192,7 +247,7 @@ public abstract class AST {
 		
 		@Override
 		public String toString() {
-			return "Variable declaration " + id + " at " + position;
+			return "Variable declaration " + id + " at " + position();
 		}
 	}
 
@@ -201,7 +256,7 @@ public abstract class AST {
 		public final List<Param> params;
 		public final Block block;
 
-		ProcDecl(String id, List<Param> params, Block block, Position position) {
+		ProcDecl(String id, List<Param> params, Block block, long position) {
 			super(position);
 			this.id = id;
 			this.params = params;
@@ -214,7 +269,7 @@ public abstract class AST {
 		
 		@Override
 		public String toString() {
-			return "Procedure declaration " + id + " at " + position;
+			return "Procedure declaration " + id + " at " + position();
 		}
 	}
 
@@ -222,14 +277,14 @@ public abstract class AST {
 		public final String id;
 		public final Type type;
 
-		Param(String id, Type type, Position position) {
+		Param(String id, Type type, long position) {
 			super(position);
 			this.id = id;
 			this.type = type;
 		}
 
 		public static final class Val extends Param {
-			Val(String id, Type type, Position position) {
+			Val(String id, Type type, long position) {
 				super(id, type, position);
 			}
 
@@ -239,12 +294,12 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "Value parameter " + id + " at " + position;
+				return "Value parameter " + id + " at " + position();
 			}
 		}
 
 		public static final class Var extends Param {
-			Var(String id, Type type, Position position) {
+			Var(String id, Type type, long position) {
 				super(id, type, position);
 			}
 
@@ -254,13 +309,13 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "Variable parameter " + id + " at " + position;
+				return "Variable parameter " + id + " at " + position();
 			}
 		}
 	}
 
 	public static abstract class Stmt extends AST {
-		Stmt(Position position) {
+		Stmt(long position) {
 			super(position);
 		}
 		
@@ -268,10 +323,19 @@ public abstract class AST {
 			public final String id;
 			public final Expr expr;
 
-			Assign(String id, Expr expr, Position position) {
+			/**
+			 * Where id is declared, as set by Resolver: the number of static
+			 * links to follow from the current frame, and the slot in that
+			 * frame (both -1 until resolved).
+			 */
+			public int depth, slot;
+
+			Assign(String id, Expr expr, long position) {
 				super(position);
 				this.id = id;
 				this.expr = expr;
+				this.depth = -1;
+				this.slot = -1;
 			}
 
 			public <T> T accept(ASTVisitor<T> visitor) {
@@ -280,7 +344,7 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "Assignment to " + id + " at " + position;
+				return "Assignment to " + id + " at " + position();
 			}
 		}
 
@@ -288,10 +352,17 @@ public abstract class AST {
 			public final String id;
 			public final List<Expr> args;
 
-			Call(String id, List<Expr> args, Position position) {
+			/**
+			 * Where id is declared (see Assign.depth).
+			 */
+			public int depth, slot;
+
+			Call(String id, List<Expr> args, long position) {
 				super(position);
 				this.id = id;
 				this.args = args;
+				this.depth = -1;
+				this.slot = -1;
 			}
 
 			public <T> T accept(ASTVisitor<T> visitor) {
@@ -300,14 +371,14 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "Call to " + id + " at " + position;
+				return "Call to " + id + " at " + position();
 			}
 		}
 
 		public static final class Sequence extends Stmt {
 			public final List<Stmt> body;
 
-			Sequence(List<Stmt> body, Position position) {
+			Sequence(List<Stmt> body, long position) {
 				super(position);
 				this.body = body;
 			}
@@ -318,7 +389,7 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "Sequence at " + position;
+				return "Sequence at " + position();
 			}
 		}
 
@@ -326,7 +397,7 @@ public abstract class AST {
 			public final Expr test;
 			public final Stmt trueClause;
 
-			IfThen(Expr test, Stmt trueClause, Position position) {
+			IfThen(Expr test, Stmt trueClause, long position) {
 				super(position);
 				this.test = test;
 				this.trueClause = trueClause;
@@ -338,7 +409,7 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "If-then statement at " + position;
+				return "If-then statement at " + position();
 			}
 		}
 
@@ -347,7 +418,7 @@ public abstract class AST {
 			public final Stmt trueClause;
 			public final Stmt falseClause;
 
-			IfThenElse(Expr test, Stmt trueClause, Stmt falseClause, Position position) {
+			IfThenElse(Expr test, Stmt trueClause, Stmt falseClause, long position) {
 				super(position);
 				this.test = test;
 				this.trueClause = trueClause;
@@ -360,7 +431,7 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "If-Then-Else statement at " + position;
+				return "If-Then-Else statement at " + position();
 			}
 		}
 
@@ -368,7 +439,7 @@ public abstract class AST {
 			public final Expr test;
 			public final Stmt body;
 
-			While(Expr test, Stmt body, Position position) {
+			While(Expr test, Stmt body, long position) {
 				super(position);
 				this.test = test;
 				this.body = body;
@@ -380,14 +451,14 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "While statement at " + position;
+				return "While statement at " + position();
 			}
 		}
 
 		public static final class Prompt extends Stmt {
 			public final String message;
 
-			Prompt(String message, Position position) {
+			Prompt(String message, long position) {
 				super(position);
 				this.message = message;
 			}
@@ -398,7 +469,7 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "Prompt statement at " + position;
+				return "Prompt statement at " + position();
 			}
 		}
 
@@ -406,10 +477,17 @@ public abstract class AST {
 			public final String message;
 			public final String id;
 
-			Prompt2(String message, String id, Position position) {
+			/**
+			 * Where id is declared (see Assign.depth).
+			 */
+			public int depth, slot;
+
+			Prompt2(String message, String id, long position) {
 				super(position);
 				this.message = message;
 				this.id = id;
+				this.depth = -1;
+				this.slot = -1;
 			}
 
 			public <T> T accept(ASTVisitor<T> visitor) {
@@ -418,14 +496,14 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "Prompt of " + id + " at " + position;
+				return "Prompt of " + id + " at " + position();
 			}
 		}
 
 		public static final class Print extends Stmt {
 			public final List<Item> items;
 
-			Print(List<Item> items, Position position) {
+			Print(List<Item> items, long position) {
 				super(position);
 				this.items = items;
 			}
@@ -436,7 +514,7 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "Print statement at " + position;
+				return "Print statement at " + position();
 			}
 		}
 	}
@@ -445,14 +523,14 @@ public abstract class AST {
 		public Expr expr;
 		public String message;
 
-		Item(Position position) {
+		Item(long position) {
 			super(position);
 		}
 
 		public static final class ExprItem extends Item {
 			public final Expr expr;
 
-			ExprItem(Expr expr, Position position) {
+			ExprItem(Expr expr, long position) {
 				super(position);
 				this.expr = expr;
 			}
@@ -463,14 +541,14 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "Print expression item at " + position;
+				return "Print expression item at " + position();
 			}
 		}
 
 		public static final class StringItem extends Item {
 			public final String message;
 
-			StringItem(String message, Position position) {
+			StringItem(String message, long position) {
 				super(position);
 				this.message = message;
 			}
@@ -481,14 +559,21 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "Print string item at " + position;
+				return "Print string item at " + position();
 			}
 		}
 	}
 
 	public static abstract class Expr extends AST {
-
-		Expr(Position position) {
+		/**
+		 * The type of the expression, as set by TypeChecker (null until
+		 * checked). A node shared by several uses (see HashCons) has the same
+		 * type at each of them, since it is only shared within the statements
+		 * of one block.
+		 */
+		public Type type;
+
+		Expr(long position) {
 			super(position);
 		}
 		
@@ -497,7 +582,7 @@ public abstract class AST {
 			public final Op2 op;
 			public final Expr right;
 
-			BinOp(Expr left, Op2 op, Expr right, Position position) {
+			BinOp(Expr left, Op2 op, Expr right, long position) {
 				super(position);
 				this.left = left;
 				this.op = op;
@@ -510,7 +595,7 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "Binary operation " + op + " at " + position;
+				return "Binary operation " + op + " at " + position();
 			}
 		}
 
@@ -518,7 +603,7 @@ public abstract class AST {
 			public final Op1 op;
 			public final Expr expr;
 
-			UnOp(Op1 op, Expr expr, Position position) {
+			UnOp(Op1 op, Expr expr, long position) {
 				super(position);
 				this.op = op;
 				this.expr = expr;
@@ -530,14 +615,14 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "Unary operation " + op + " at " + position;
+				return "Unary operation " + op + " at " + position();
 			}
 		}
 
 		public static final class Num extends Expr {
 			public final int value;
 
-			Num(int value, Position position) {
+			Num(int value, long position) {
 				super(position);
 				this.value = value;
 			}
@@ -548,16 +633,26 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "Integer literal " + value + " at " + position;
+				return "Integer literal " + value + " at " + position();
 			}
 		}
 
 		public static final class Id extends Expr {
 			public final String id;
 
-			Id(String id, Position position) {
+			/**
+			 * Where id is declared (see Assign.depth). A shared node (see
+			 * HashCons) is only used within the statements of one block, where
+			 * id always names the same declaration, so these hold for every
+			 * use.
+			 */
+			public int depth, slot;
+
+			Id(String id, long position) {
 				super(position);
 				this.id = id;
+				this.depth = -1;
+				this.slot = -1;
 			}
 
 			public <T> T accept(ASTVisitor<T> visitor) {
@@ -566,12 +661,12 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "Variable " + id + " at " + position;
+				return "Variable " + id + " at " + position();
 			}
 		}
 
 		public static final class True extends Expr {
-			True(Position position) {
+			True(long position) {
 				super(position);
 			}
 			
@@ -581,12 +676,12 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "Boolean literal true at " + position;
+				return "Boolean literal true at " + position();
 			}
 		}
 
 		public static final class False extends Expr {
-			False(Position position) {
+			False(long position) {
 				super(position);
 			}
 			
@@ -596,7 +691,7 @@ public abstract class AST {
 			
 			@Override
 			public String toString() {
-				return "Boolean literal false at " + position;
+				return "Boolean literal false at " + position();
 			}
 		}
 	}
@@ -0,0 +1,109 @@
+package csc426;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import csc426.AST.Program;
+
+/**
+ * A directory of serialized ASTs (see ASTSerializer), each in a file named by
+ * the SHA-256 hash of the source it was parsed from. A source that has been
+ * parsed before can then be loaded without scanning or parsing it again.
+ *
+ * Failures to read or write the cache are not errors: a missing, unreadable
+ * or malformed entry is a miss, and an entry that cannot be written is
+ * skipped.
+ */
+public class ASTCache {
+	/**
+	 * The directory used by Project5, unless the yasl.cache system property
+	 * names another.
+	 */
+	public static final String DEFAULT_DIRECTORY = ".yasl-cache";
+
+	/**
+	 * @param directory
+	 *            where the entries are kept; created when first needed
+	 */
+	public ASTCache(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * @param source
+	 *            the bytes of a source file
+	 * @return the program cached for the source, or null if there is none
+	 */
+	public Program load(byte[] source) {
+		Path entry = entry(source);
+		if (!Files.isRegularFile(entry)) {
+			return null;
+		}
+		try {
+			return ASTSerializer.fromBytes(Files.readAllBytes(entry));
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Cache the program parsed from a source. The entry is written to a
+	 * temporary file and then moved into place, so a concurrent load never
+	 * sees part of it.
+	 *
+	 * @param source
+	 *            the bytes of a source file
+	 * @param program
+	 *            the program parsed from it, without errors
+	 * @return true if the entry was written
+	 */
+	public boolean store(byte[] source, Program program) {
+		try {
+			Files.createDirectories(directory);
+			Path temporary = Files.createTempFile(directory, "entry", ".tmp");
+			try {
+				Files.write(temporary, ASTSerializer.toBytes(program, true));
+				Files.move(temporary, entry(source), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temporary);
+			}
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param source
+	 * @return the path of the entry for a source
+	 */
+	public Path entry(byte[] source) {
+		return directory.resolve(hash(source) + ".ast");
+	}
+
+	/**
+	 * @param source
+	 * @return the SHA-256 hash of source, in hexadecimal
+	 */
+	public static String hash(byte[] source) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(source);
+			StringBuilder result = new StringBuilder(2 * digest.length);
+			for (byte b : digest) {
+				result.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+			}
+			return result.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // every Java platform has SHA-256
+		}
+	}
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final Path directory;
+}
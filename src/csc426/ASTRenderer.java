@@ -0,0 +1,511 @@
+package csc426;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+import csc426.AST.*;
+import csc426.AST.Expr.*;
+import csc426.AST.Item.*;
+import csc426.AST.Param.*;
+import csc426.AST.Stmt.*;
+
+/**
+ * Writes a tree straight to an Appendable, in time linear in its size, in one
+ * of three formats:
+ * <ul>
+ * <li>TEXT, the indented outline of ASTRenderVisitor, one line per node;</li>
+ * <li>JSON_LINES, one JSON object per node, in preorder, with its number, the
+ * number of its parent (-1 for the root), its FlatAST.Kind, its line and
+ * column, and its fields;</li>
+ * <li>SEXPR, a single S-expression, each node a list of its kind, its fields
+ * and its children.</li>
+ * </ul>
+ * Each visit writes the start of its node and its fields, schedules its
+ * children on a Traversal, and then ends the node in a second state, so
+ * nothing is built up in memory and trees of any depth are written without
+ * recursion; indentation comes from a shared string of spaces.
+ */
+public class ASTRenderer implements ASTVisitor<Void> {
+	public static enum Format {
+		TEXT, JSON_LINES, SEXPR
+	}
+
+	/**
+	 * The state in which a node with children is visited again, to end it.
+	 */
+	private static final int END = 1;
+
+	/**
+	 * Render a tree of any depth (see Traversal).
+	 *
+	 * @param root
+	 * @param out
+	 * @param format
+	 * @throws IOException
+	 *             if out throws one
+	 */
+	public static void render(AST root, Appendable out, Format format) throws IOException {
+		try {
+			new ASTRenderer(out, format).traversal.run(root);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * @param root
+	 * @param format
+	 * @return the rendering of a tree
+	 */
+	public static String render(AST root, Format format) {
+		StringBuilder result = new StringBuilder();
+		new ASTRenderer(result, format).traversal.run(root);
+		return result.toString();
+	}
+
+	/**
+	 * A renderer that writes to out. It may be used for only one tree;
+	 * IOExceptions from out are thrown as UncheckedIOExceptions.
+	 *
+	 * @param out
+	 * @param format
+	 */
+	public ASTRenderer(Appendable out, Format format) {
+		this.out = out;
+		this.format = format;
+		this.depth = 0;
+		this.pending = false;
+		this.count = 0;
+		this.parents = new int[64];
+		this.traversal = new Traversal(this);
+	}
+
+	/**
+	 * Start a node: write everything up to its fields.
+	 */
+	private void start(FlatAST.Kind kind, String label, long position) {
+		try {
+			finish();
+			switch (format) {
+			case TEXT:
+				out.append(spaces(2 * depth), 0, 2 * depth).append(label);
+				break;
+			case JSON_LINES:
+				out.append("{\"node\":").append(Integer.toString(count));
+				out.append(",\"parent\":").append(Integer.toString(depth == 0 ? -1 : parents[depth - 1]));
+				out.append(",\"kind\":\"").append(kind.name());
+				out.append("\",\"line\":").append(Integer.toString(Position.line(position)));
+				out.append(",\"column\":").append(Integer.toString(Position.column(position)));
+				break;
+			case SEXPR:
+				if (depth > 0) {
+					out.append(' ');
+				}
+				out.append('(').append(kind.name());
+				break;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (depth == parents.length) {
+			parents = Arrays.copyOf(parents, 2 * depth);
+		}
+		parents[depth++] = count++;
+		pending = true;
+	}
+
+	/**
+	 * End the node most recently started and not yet ended.
+	 */
+	private void end() {
+		try {
+			finish();
+			if (format == Format.SEXPR) {
+				out.append(')');
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		--depth;
+	}
+
+	/**
+	 * Finish the line of a node whose fields have all been written.
+	 */
+	private void finish() throws IOException {
+		if (pending) {
+			out.append(format == Format.JSON_LINES ? "}\n" : format == Format.TEXT ? "\n" : "");
+			pending = false;
+		}
+	}
+
+	/**
+	 * Write a field whose value is already in its final form: a name, a
+	 * number or an enum constant.
+	 */
+	private void field(String name, String value) {
+		try {
+			switch (format) {
+			case TEXT:
+			case SEXPR:
+				out.append(' ').append(value);
+				break;
+			case JSON_LINES:
+				out.append(",\"").append(name).append("\":\"").append(value).append('"');
+				break;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void field(String name, int value) {
+		try {
+			if (format == Format.JSON_LINES) {
+				out.append(",\"").append(name).append("\":").append(Integer.toString(value));
+			} else {
+				out.append(' ').append(Integer.toString(value));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Write a field holding a string literal. TEXT shows it in quotes as it
+	 * is; the other formats escape it.
+	 */
+	private void message(String value) {
+		try {
+			if (format == Format.JSON_LINES) {
+				out.append(",\"message\":");
+			} else {
+				out.append(' ');
+			}
+			out.append('"');
+			if (format == Format.TEXT) {
+				out.append(value);
+			} else {
+				escape(value);
+			}
+			out.append('"');
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Write punctuation that only appears in the TEXT format.
+	 */
+	private void text(String punctuation) {
+		if (format == Format.TEXT) {
+			try {
+				out.append(punctuation);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private void escape(String value) throws IOException {
+		int start = 0;
+		for (int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\' || c < ' ') {
+				out.append(value, start, i);
+				switch (c) {
+				case '"':
+					out.append("\\\"");
+					break;
+				case '\\':
+					out.append("\\\\");
+					break;
+				case '\n':
+					out.append("\\n");
+					break;
+				case '\t':
+					out.append("\\t");
+					break;
+				default:
+					out.append(String.format("\\u%04x", (int) c));
+					break;
+				}
+				start = i + 1;
+			}
+		}
+		out.append(value, start, value.length());
+	}
+
+	/**
+	 * @return a string of at least n spaces
+	 */
+	private static String spaces(int n) {
+		String result = spaces;
+		if (result.length() < n) {
+			char[] more = new char[Math.max(n, 2 * result.length())];
+			Arrays.fill(more, ' ');
+			spaces = result = new String(more);
+		}
+		return result;
+	}
+
+	private void all(java.util.List<? extends AST> nodes) {
+		for (AST node : nodes) {
+			traversal.visit(node);
+		}
+	}
+
+	public Void visit(Program program) {
+		if (traversal.state() == END) {
+			end();
+			return null;
+		}
+		start(FlatAST.Kind.Program, "Program", program.start());
+		field("name", program.name);
+		traversal.visit(program.block);
+		traversal.resume(END);
+		return null;
+	}
+
+	public Void visit(Block block) {
+		if (traversal.state() == END) {
+			end();
+			return null;
+		}
+		start(FlatAST.Kind.Block, "Block", block.start());
+		all(block.consts);
+		all(block.vars);
+		all(block.procs);
+		all(block.stmts);
+		traversal.resume(END);
+		return null;
+	}
+
+	public Void visit(ConstDecl decl) {
+		start(FlatAST.Kind.ConstDecl, "Const", decl.start());
+		field("name", decl.id);
+		text(" =");
+		field("value", decl.value);
+		end();
+		return null;
+	}
+
+	public Void visit(VarDecl decl) {
+		start(FlatAST.Kind.VarDecl, "Var", decl.start());
+		field("name", decl.id);
+		text(" :");
+		field("type", decl.type.name());
+		end();
+		return null;
+	}
+
+	public Void visit(ProcDecl decl) {
+		if (traversal.state() == END) {
+			end();
+			return null;
+		}
+		start(FlatAST.Kind.ProcDecl, "Proc", decl.start());
+		field("name", decl.id);
+		all(decl.params);
+		traversal.visit(decl.block);
+		traversal.resume(END);
+		return null;
+	}
+
+	public Void visit(Val param) {
+		start(FlatAST.Kind.Val, "Val", param.start());
+		field("name", param.id);
+		text(" :");
+		field("type", param.type.name());
+		end();
+		return null;
+	}
+
+	public Void visit(Var param) {
+		start(FlatAST.Kind.Var, "Var", param.start());
+		field("name", param.id);
+		text(" :");
+		field("type", param.type.name());
+		end();
+		return null;
+	}
+
+	public Void visit(Assign stmt) {
+		if (traversal.state() == END) {
+			end();
+			return null;
+		}
+		start(FlatAST.Kind.Assign, "Assign", stmt.start());
+		field("name", stmt.id);
+		traversal.visit(stmt.expr);
+		traversal.resume(END);
+		return null;
+	}
+
+	public Void visit(Call stmt) {
+		if (traversal.state() == END) {
+			end();
+			return null;
+		}
+		start(FlatAST.Kind.Call, "Call", stmt.start());
+		field("name", stmt.id);
+		all(stmt.args);
+		traversal.resume(END);
+		return null;
+	}
+
+	public Void visit(Sequence stmt) {
+		if (traversal.state() == END) {
+			end();
+			return null;
+		}
+		start(FlatAST.Kind.Sequence, "Sequence", stmt.start());
+		all(stmt.body);
+		traversal.resume(END);
+		return null;
+	}
+
+	public Void visit(IfThen stmt) {
+		if (traversal.state() == END) {
+			end();
+			return null;
+		}
+		start(FlatAST.Kind.IfThen, "IfThen", stmt.start());
+		traversal.visit(stmt.test);
+		traversal.visit(stmt.trueClause);
+		traversal.resume(END);
+		return null;
+	}
+
+	public Void visit(IfThenElse stmt) {
+		if (traversal.state() == END) {
+			end();
+			return null;
+		}
+		start(FlatAST.Kind.IfThenElse, "IfThenElse", stmt.start());
+		traversal.visit(stmt.test);
+		traversal.visit(stmt.trueClause);
+		traversal.visit(stmt.falseClause);
+		traversal.resume(END);
+		return null;
+	}
+
+	public Void visit(While stmt) {
+		if (traversal.state() == END) {
+			end();
+			return null;
+		}
+		start(FlatAST.Kind.While, "While", stmt.start());
+		traversal.visit(stmt.test);
+		traversal.visit(stmt.body);
+		traversal.resume(END);
+		return null;
+	}
+
+	public Void visit(Prompt stmt) {
+		start(FlatAST.Kind.Prompt, "Prompt", stmt.start());
+		message(stmt.message);
+		end();
+		return null;
+	}
+
+	public Void visit(Prompt2 stmt) {
+		start(FlatAST.Kind.Prompt2, "Prompt2", stmt.start());
+		message(stmt.message);
+		text(",");
+		field("name", stmt.id);
+		end();
+		return null;
+	}
+
+	public Void visit(Print stmt) {
+		if (traversal.state() == END) {
+			end();
+			return null;
+		}
+		start(FlatAST.Kind.Print, "Print", stmt.start());
+		all(stmt.items);
+		traversal.resume(END);
+		return null;
+	}
+
+	public Void visit(ExprItem item) {
+		if (traversal.state() == END) {
+			end();
+			return null;
+		}
+		start(FlatAST.Kind.ExprItem, "ExprItem", item.start());
+		traversal.visit(item.expr);
+		traversal.resume(END);
+		return null;
+	}
+
+	public Void visit(StringItem item) {
+		start(FlatAST.Kind.StringItem, "StringItem", item.start());
+		message(item.message);
+		end();
+		return null;
+	}
+
+	public Void visit(BinOp expr) {
+		if (traversal.state() == END) {
+			end();
+			return null;
+		}
+		start(FlatAST.Kind.BinOp, "BinOp", expr.start());
+		field("op", expr.op.name());
+		traversal.visit(expr.left);
+		traversal.visit(expr.right);
+		traversal.resume(END);
+		return null;
+	}
+
+	public Void visit(UnOp expr) {
+		if (traversal.state() == END) {
+			end();
+			return null;
+		}
+		start(FlatAST.Kind.UnOp, "UnOp", expr.start());
+		field("op", expr.op.name());
+		traversal.visit(expr.expr);
+		traversal.resume(END);
+		return null;
+	}
+
+	public Void visit(Num expr) {
+		start(FlatAST.Kind.Num, "Num", expr.start());
+		field("value", expr.value);
+		end();
+		return null;
+	}
+
+	public Void visit(Id expr) {
+		start(FlatAST.Kind.Id, "Id", expr.start());
+		field("name", expr.id);
+		end();
+		return null;
+	}
+
+	public Void visit(True expr) {
+		start(FlatAST.Kind.True, "True", expr.start());
+		end();
+		return null;
+	}
+
+	public Void visit(False expr) {
+		start(FlatAST.Kind.False, "False", expr.start());
+		end();
+		return null;
+	}
+
+	private static volatile String spaces = "                                ";
+
+	private final Appendable out;
+	private final Format format;
+	private int depth; // nodes started and not yet ended
+	private boolean pending; // whether the line of the last node started is unfinished
+	private int count;
+	private int[] parents; // the numbers of the nodes started and not yet ended
+	private final Traversal traversal;
+}
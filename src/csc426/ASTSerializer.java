@@ -0,0 +1,595 @@
+package csc426;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import csc426.AST.*;
+import csc426.AST.Expr.*;
+import csc426.AST.Item.*;
+import csc426.AST.Param.*;
+import csc426.AST.Stmt.*;
+
+/**
+ * Writes a Program in a compact binary form, and reads it back.
+ *
+ * The form is a header (MAGIC, VERSION and a flags byte), a table of the
+ * names and messages used, and then the nodes in postorder, each as its
+ * FlatAST.Kind ordinal followed by its fields: names and messages as indexes
+ * into the table, numbers, counts of list children and the ordinals of
+ * types and operators. Every integer is a varint, zigzag-encoded if it may be
+ * negative. If the flags include POSITIONS, each node also has its position
+ * as the difference in line and column from the node before it; otherwise
+ * every position reads back as 0.
+ *
+ * Since a node comes after its children, reading needs no recursion: the
+ * reader keeps a stack of finished nodes, and each node takes its children
+ * from the top.
+ */
+public class ASTSerializer {
+	public static final byte[] MAGIC = { 'Y', 'A', 'S', 'T' };
+	public static final int VERSION = 1;
+
+	/**
+	 * Flag for a form that includes the positions of the nodes.
+	 */
+	public static final int POSITIONS = 1;
+
+	/**
+	 * Write a program to a stream.
+	 *
+	 * @param program
+	 * @param out
+	 * @param positions
+	 *            whether to include the positions of the nodes
+	 * @throws IOException
+	 */
+	public static void write(Program program, OutputStream out, boolean positions) throws IOException {
+		Writer writer = new Writer(positions);
+		writer.traversal.run(program);
+
+		Bytes header = new Bytes();
+		header.write(MAGIC, 0, MAGIC.length);
+		header.varint(VERSION);
+		header.varint(positions ? POSITIONS : 0);
+		header.varint(writer.strings.size());
+		for (int i = 0; i < writer.strings.size(); ++i) {
+			byte[] bytes = writer.strings.get(i).getBytes(StandardCharsets.UTF_8);
+			header.varint(bytes.length);
+			header.write(bytes, 0, bytes.length);
+		}
+		header.varint(writer.count);
+		header.writeTo(out);
+		writer.nodes.writeTo(out);
+	}
+
+	/**
+	 * @param program
+	 * @param positions
+	 * @return the serialized form of a program
+	 */
+	public static byte[] toBytes(Program program, boolean positions) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			write(program, out, positions);
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // not thrown by a ByteArrayOutputStream
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Read a program written by write.
+	 *
+	 * @param in
+	 * @return the program
+	 * @throws IOException
+	 *             if the stream could not be read, or does not hold a program
+	 *             in this version of the form
+	 */
+	public static Program read(InputStream in) throws IOException {
+		return fromBytes(in.readAllBytes());
+	}
+
+	/**
+	 * @param bytes
+	 * @return the program whose serialized form is bytes
+	 * @throws IOException
+	 *             if bytes do not hold a program in this version of the form
+	 */
+	public static Program fromBytes(byte[] bytes) throws IOException {
+		try {
+			return new Reader(bytes).read();
+		} catch (RuntimeException e) {
+			throw new IOException("Malformed serialized AST: " + e, e);
+		}
+	}
+
+	private static final FlatAST.Kind[] KINDS = FlatAST.Kind.values();
+	private static final Type[] TYPES = Type.values();
+	private static final Op1[] OP1S = Op1.values();
+	private static final Op2[] OP2S = Op2.values();
+
+	/**
+	 * A growable byte array with varint encoding.
+	 */
+	private static class Bytes extends ByteArrayOutputStream {
+		Bytes() {
+			super(4096);
+		}
+
+		void varint(int value) {
+			while ((value & ~0x7F) != 0) {
+				write((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			write(value);
+		}
+
+		void zigzag(int value) {
+			varint((value << 1) ^ (value >> 31));
+		}
+	}
+
+	/**
+	 * Writes each node after its children, collecting the strings as it goes.
+	 */
+	private static class Writer implements ASTVisitor<Void> {
+		/**
+		 * The state in which a node with children is visited again, to write
+		 * it after them.
+		 */
+		static final int NODE = 1;
+
+		Writer(boolean positions) {
+			this.positions = positions;
+			this.strings = new Names();
+			this.nodes = new Bytes();
+			this.count = 0;
+			this.line = 0;
+			this.column = 0;
+			this.traversal = new Traversal(this);
+		}
+
+		private void node(FlatAST.Kind kind, long position) {
+			nodes.write(kind.ordinal());
+			if (positions) {
+				nodes.zigzag(Position.line(position) - line);
+				nodes.zigzag(Position.column(position) - column);
+				line = Position.line(position);
+				column = Position.column(position);
+			}
+			++count;
+		}
+
+		private void string(String s) {
+			nodes.varint(strings.add(s));
+		}
+
+		private void all(List<? extends AST> children) {
+			for (AST child : children) {
+				traversal.visit(child);
+			}
+		}
+
+		public Void visit(Program program) {
+			if (traversal.state() == 0) {
+				traversal.visit(program.block);
+				traversal.resume(NODE);
+				return null;
+			}
+			node(FlatAST.Kind.Program, program.start());
+			string(program.name);
+			return null;
+		}
+
+		public Void visit(Block block) {
+			if (traversal.state() == 0) {
+				all(block.consts);
+				all(block.vars);
+				all(block.procs);
+				all(block.stmts);
+				traversal.resume(NODE);
+				return null;
+			}
+			node(FlatAST.Kind.Block, block.start());
+			nodes.varint(block.consts.size());
+			nodes.varint(block.vars.size());
+			nodes.varint(block.procs.size());
+			nodes.varint(block.stmts.size());
+			return null;
+		}
+
+		public Void visit(ConstDecl decl) {
+			node(FlatAST.Kind.ConstDecl, decl.start());
+			string(decl.id);
+			nodes.zigzag(decl.value);
+			return null;
+		}
+
+		public Void visit(VarDecl decl) {
+			node(FlatAST.Kind.VarDecl, decl.start());
+			string(decl.id);
+			nodes.varint(decl.type.ordinal());
+			return null;
+		}
+
+		public Void visit(ProcDecl decl) {
+			if (traversal.state() == 0) {
+				all(decl.params);
+				traversal.visit(decl.block);
+				traversal.resume(NODE);
+				return null;
+			}
+			node(FlatAST.Kind.ProcDecl, decl.start());
+			string(decl.id);
+			nodes.varint(decl.params.size());
+			return null;
+		}
+
+		public Void visit(Val param) {
+			node(FlatAST.Kind.Val, param.start());
+			string(param.id);
+			nodes.varint(param.type.ordinal());
+			return null;
+		}
+
+		public Void visit(Var param) {
+			node(FlatAST.Kind.Var, param.start());
+			string(param.id);
+			nodes.varint(param.type.ordinal());
+			return null;
+		}
+
+		public Void visit(Assign stmt) {
+			if (traversal.state() == 0) {
+				traversal.visit(stmt.expr);
+				traversal.resume(NODE);
+				return null;
+			}
+			node(FlatAST.Kind.Assign, stmt.start());
+			string(stmt.id);
+			return null;
+		}
+
+		public Void visit(Call stmt) {
+			if (traversal.state() == 0) {
+				all(stmt.args);
+				traversal.resume(NODE);
+				return null;
+			}
+			node(FlatAST.Kind.Call, stmt.start());
+			string(stmt.id);
+			nodes.varint(stmt.args.size());
+			return null;
+		}
+
+		public Void visit(Sequence stmt) {
+			if (traversal.state() == 0) {
+				all(stmt.body);
+				traversal.resume(NODE);
+				return null;
+			}
+			node(FlatAST.Kind.Sequence, stmt.start());
+			nodes.varint(stmt.body.size());
+			return null;
+		}
+
+		public Void visit(IfThen stmt) {
+			if (traversal.state() == 0) {
+				traversal.visit(stmt.test);
+				traversal.visit(stmt.trueClause);
+				traversal.resume(NODE);
+				return null;
+			}
+			node(FlatAST.Kind.IfThen, stmt.start());
+			return null;
+		}
+
+		public Void visit(IfThenElse stmt) {
+			if (traversal.state() == 0) {
+				traversal.visit(stmt.test);
+				traversal.visit(stmt.trueClause);
+				traversal.visit(stmt.falseClause);
+				traversal.resume(NODE);
+				return null;
+			}
+			node(FlatAST.Kind.IfThenElse, stmt.start());
+			return null;
+		}
+
+		public Void visit(While stmt) {
+			if (traversal.state() == 0) {
+				traversal.visit(stmt.test);
+				traversal.visit(stmt.body);
+				traversal.resume(NODE);
+				return null;
+			}
+			node(FlatAST.Kind.While, stmt.start());
+			return null;
+		}
+
+		public Void visit(Prompt stmt) {
+			node(FlatAST.Kind.Prompt, stmt.start());
+			string(stmt.message);
+			return null;
+		}
+
+		public Void visit(Prompt2 stmt) {
+			node(FlatAST.Kind.Prompt2, stmt.start());
+			string(stmt.message);
+			string(stmt.id);
+			return null;
+		}
+
+		public Void visit(Print stmt) {
+			if (traversal.state() == 0) {
+				all(stmt.items);
+				traversal.resume(NODE);
+				return null;
+			}
+			node(FlatAST.Kind.Print, stmt.start());
+			nodes.varint(stmt.items.size());
+			return null;
+		}
+
+		public Void visit(ExprItem item) {
+			if (traversal.state() == 0) {
+				traversal.visit(item.expr);
+				traversal.resume(NODE);
+				return null;
+			}
+			node(FlatAST.Kind.ExprItem, item.start());
+			return null;
+		}
+
+		public Void visit(StringItem item) {
+			node(FlatAST.Kind.StringItem, item.start());
+			string(item.message);
+			return null;
+		}
+
+		public Void visit(BinOp expr) {
+			if (traversal.state() == 0) {
+				traversal.visit(expr.left);
+				traversal.visit(expr.right);
+				traversal.resume(NODE);
+				return null;
+			}
+			node(FlatAST.Kind.BinOp, expr.start());
+			nodes.varint(expr.op.ordinal());
+			return null;
+		}
+
+		public Void visit(UnOp expr) {
+			if (traversal.state() == 0) {
+				traversal.visit(expr.expr);
+				traversal.resume(NODE);
+				return null;
+			}
+			node(FlatAST.Kind.UnOp, expr.start());
+			nodes.varint(expr.op.ordinal());
+			return null;
+		}
+
+		public Void visit(Num expr) {
+			node(FlatAST.Kind.Num, expr.start());
+			nodes.zigzag(expr.value);
+			return null;
+		}
+
+		public Void visit(Id expr) {
+			node(FlatAST.Kind.Id, expr.start());
+			string(expr.id);
+			return null;
+		}
+
+		public Void visit(True expr) {
+			node(FlatAST.Kind.True, expr.start());
+			return null;
+		}
+
+		public Void visit(False expr) {
+			node(FlatAST.Kind.False, expr.start());
+			return null;
+		}
+
+		final boolean positions;
+		final Names strings;
+		final Bytes nodes;
+		int count;
+		private int line, column;
+		final Traversal traversal;
+	}
+
+	/**
+	 * Rebuilds the nodes with a stack of the ones not yet taken by a parent.
+	 */
+	private static class Reader {
+		Reader(byte[] bytes) {
+			this.bytes = bytes;
+			this.index = 0;
+		}
+
+		Program read() throws IOException {
+			for (byte b : MAGIC) {
+				if (bytes[index++] != b) {
+					throw new IOException("Not a serialized AST");
+				}
+			}
+			int version = varint();
+			if (version != VERSION) {
+				throw new IOException("Unsupported serialized AST version " + version);
+			}
+			boolean positions = (varint() & POSITIONS) != 0;
+			strings = new String[varint()];
+			for (int i = 0; i < strings.length; ++i) {
+				int length = varint();
+				strings[i] = new String(bytes, index, length, StandardCharsets.UTF_8);
+				index += length;
+			}
+
+			int count = varint();
+			stack = new AST[64];
+			size = 0;
+			int line = 0, column = 0;
+			for (int n = 0; n < count; ++n) {
+				FlatAST.Kind kind = KINDS[bytes[index++]];
+				long position = 0;
+				if (positions) {
+					line += zigzag();
+					column += zigzag();
+					position = Position.pack(line, column);
+				}
+				push(node(kind, position));
+			}
+			if (size != 1 || !(stack[0] instanceof Program) || index != bytes.length) {
+				throw new IOException("Malformed serialized AST");
+			}
+			return (Program) stack[0];
+		}
+
+		private AST node(FlatAST.Kind kind, long position) {
+			switch (kind) {
+			case Program: {
+				Block block = (Block) pop();
+				return AST.program(string(), block, position);
+			}
+			case Block: {
+				int consts = varint(), vars = varint(), procs = varint(), stmts = varint();
+				List<Stmt> stmtList = popList(Stmt.class, stmts);
+				List<ProcDecl> procList = popList(ProcDecl.class, procs);
+				List<VarDecl> varList = popList(VarDecl.class, vars);
+				List<ConstDecl> constList = popList(ConstDecl.class, consts);
+				return AST.block(constList, varList, procList, stmtList, position);
+			}
+			case ConstDecl:
+				return AST.constDecl(string(), zigzag(), position);
+			case VarDecl:
+				return AST.varDecl(string(), TYPES[varint()], position);
+			case ProcDecl: {
+				Block block = (Block) pop();
+				String id = string();
+				List<Param> params = popList(Param.class, varint());
+				return AST.procDecl(id, params, block, position);
+			}
+			case Val:
+				return AST.valParam(string(), TYPES[varint()], position);
+			case Var:
+				return AST.varParam(string(), TYPES[varint()], position);
+			case Assign:
+				return AST.assignStmt(string(), (Expr) pop(), position);
+			case Call: {
+				String id = string();
+				List<Expr> args = popList(Expr.class, varint());
+				return AST.callStmt(id, args, position);
+			}
+			case Sequence:
+				return AST.sequenceStmt(popList(Stmt.class, varint()), position);
+			case IfThen: {
+				Stmt trueClause = (Stmt) pop();
+				return AST.ifThenStmt((Expr) pop(), trueClause, position);
+			}
+			case IfThenElse: {
+				Stmt falseClause = (Stmt) pop();
+				Stmt trueClause = (Stmt) pop();
+				return AST.ifThenElseStmt((Expr) pop(), trueClause, falseClause, position);
+			}
+			case While: {
+				Stmt body = (Stmt) pop();
+				return AST.whileStmt((Expr) pop(), body, position);
+			}
+			case Prompt:
+				return AST.promptStmt(string(), position);
+			case Prompt2: {
+				String message = string();
+				return AST.prompt2Stmt(message, string(), position);
+			}
+			case Print:
+				return AST.printStmt(popList(Item.class, varint()), position);
+			case ExprItem:
+				return AST.exprItem((Expr) pop(), position);
+			case StringItem:
+				return AST.stringItem(string(), position);
+			case BinOp: {
+				Expr right = (Expr) pop();
+				return AST.binOpExpr((Expr) pop(), OP2S[varint()], right, position);
+			}
+			case UnOp:
+				return AST.unOpExpr(OP1S[varint()], (Expr) pop(), position);
+			case Num:
+				return AST.numExpr(zigzag(), position);
+			case Id:
+				return AST.idExpr(string(), position);
+			case True:
+				return AST.trueExpr(position);
+			case False:
+				return AST.falseExpr(position);
+			default:
+				throw new IllegalStateException("Unknown kind " + kind);
+			}
+		}
+
+		private void push(AST node) {
+			if (size == stack.length) {
+				stack = Arrays.copyOf(stack, 2 * size);
+			}
+			stack[size++] = node;
+		}
+
+		private AST pop() {
+			AST node = stack[--size];
+			stack[size] = null;
+			return node;
+		}
+
+		/**
+		 * @return the top count nodes, in the order they were pushed, each of
+		 *         which must be of the given kind
+		 */
+		private <T extends AST> List<T> popList(Class<T> kind, int count) {
+			List<T> result = new ArrayList<>(count);
+			for (int i = size - count; i < size; ++i) {
+				if (!kind.isInstance(stack[i])) {
+					throw new IllegalStateException("Expected " + kind.getSimpleName() + " in a list, found "
+							+ stack[i].getClass().getSimpleName());
+				}
+				result.add(kind.cast(stack[i]));
+				stack[i] = null;
+			}
+			size -= count;
+			return result;
+		}
+
+		private String string() {
+			return strings[varint()];
+		}
+
+		private int varint() {
+			int result = 0;
+			for (int shift = 0;; shift += 7) {
+				byte b = bytes[index++];
+				result |= (b & 0x7F) << shift;
+				if (b >= 0) {
+					return result;
+				}
+			}
+		}
+
+		private int zigzag() {
+			int value = varint();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		private final byte[] bytes;
+		private int index;
+		private String[] strings;
+		private AST[] stack;
+		private int size;
+	}
+}
@@ -3,6 +3,7 @@ package csc426;
 
 import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -16,35 +17,67 @@ import csc426.AST.Stmt.*;
 import csc426.AST.Expr.True;
 import csc426.OffsetInformation.*;
 
-public class CodeGenerator implements ASTVisitor<Value> {
+/**
+ * Generates code for a type-checked program. It is driven by a Traversal, so
+ * trees of any depth are handled without recursion: a visit writes the code
+ * that comes before its children, schedules the children, and schedules the
+ * code that comes after each of them as a step of its own (see emit). The
+ * jumping code of a test is scheduled the same way (see expr(Expr, String,
+ * String)).
+ */
+public class CodeGenerator implements ASTVisitor<Void> {
 	private PrintStream output;
 	private SymbolTable<OffsetInformation> table;
 	private PrintWriter fileout;
 	private int currentLabel;
-	
+	private Traversal traversal;
+
 	public CodeGenerator(Scanner input, PrintStream output, PrintWriter fileout) {
 		this.output = output;
 		this.table = new SymbolTable<>();
 		this.fileout = fileout;
+		this.traversal = new Traversal(this);
+	}
+
+	/**
+	 * Generate the code for a program.
+	 *
+	 * @param program
+	 */
+	public void generate(Program program) {
+		traversal.run(program);
+	}
+
+	/**
+	 * Schedule lines of code to be written after the steps already scheduled.
+	 */
+	private void emit(String... lines) {
+		traversal.then(() -> {
+			for (String line : lines) {
+				fileout.println(line);
+			}
+		});
 	}
 
 	@Override
-	public Value visit(Program program) {
-		this.currentLabel = 0; 		
+	public Void visit(Program program) {
+		this.currentLabel = 0;
 		table.enter(program.name);
-		program.block.accept(this);
-		table.exit();
-		fileout.println("HALT");
+		traversal.visit(program.block);
+		traversal.then(() -> {
+			table.exit();
+			fileout.println("HALT");
+		});
 		return null;
 	}
 
 	@Override
-	public Value visit(Block block) {
+	public Void visit(Block block) {
 		int s = currentLabel;
 		currentLabel++;
-		
+
 		fileout.println("BRANCH _" + s);
-		
+
 		for (ConstDecl decl : block.consts) { decl.accept(this); }
 		table.setOffset(0);
 		for (VarDecl decl : block.vars) { decl.accept(this); }
@@ -57,26 +90,23 @@ public class CodeGenerator implements ASTVisitor<Value> {
 				throw new CodeGeneratorError(e.getMessage(), decl);
 			}
 		}
-		for(ProcDecl decl : block.procs){ decl.accept(this); }
-		
-		fileout.println("LABEL _" + s);
+		for(ProcDecl decl : block.procs){ traversal.visit(decl); }
+
 		int n = block.vars.size();
 		int l = table.level();
-		fileout.println("ENTER " + l);
-		fileout.println("RESERVE " + n);
-		
+		emit("LABEL _" + s, "ENTER " + l, "RESERVE " + n);
+
 		for(Stmt stmt : block.stmts){
-			stmt.accept(this);
+			traversal.visit(stmt);
 		}
-		
-		fileout.println("DROP " + n);
-		fileout.println("EXIT " + l);
-		
+
+		emit("DROP " + n, "EXIT " + l);
+
 		return null;
 	}
 
 	@Override
-	public Value visit(ConstDecl decl) {
+	public Void visit(ConstDecl decl) {
 		try {
 			table.add(decl.id, new ConstInfo(decl.value));
 		} catch (TableError e) {
@@ -86,10 +116,10 @@ public class CodeGenerator implements ASTVisitor<Value> {
 	}
 
 	@Override
-	public Value visit(VarDecl decl) {
+	public Void visit(VarDecl decl) {
 		try {
 			table.setOffset(table.getOffset()-1);
-			
+
 			table.add(decl.id, new VarInfo(table.level(), table.getOffset()));
 		} catch (TableError e) {
 			throw new CodeGeneratorError(e.getMessage(), decl);
@@ -98,39 +128,41 @@ public class CodeGenerator implements ASTVisitor<Value> {
 	}
 
 	@Override
-	public Value visit(ProcDecl decl) {
+	public Void visit(ProcDecl decl) {
 		try {
 			OffsetInformation temp = table.lookup(decl.id);
 			table.enter(decl.id);
 			table.setParamOffset(1);
 
-			List<Param> reverse = decl.params;
+			List<Param> reverse = new ArrayList<>(decl.params);
 			Collections.reverse(reverse);
-			
+
 			for(Param param : reverse){
 				param.accept(this);
 			}
-			
+
 			try {
 				fileout.println("LABEL " + temp.label());
 			} catch (OffsetInformationError e) {
 				throw new CodeGeneratorError(e.getMessage(), decl);
 			}
-			
-			decl.block.accept(this);
-			
-			fileout.println("RETURN");
-			table.exit();
-			
+
+			traversal.visit(decl.block);
+
+			traversal.then(() -> {
+				fileout.println("RETURN");
+				table.exit();
+			});
+
 		} catch (TableError e) {
 			throw new CodeGeneratorError(e.getMessage(), decl);
 		}
-		
+
 		return null;
 	}
 
 	@Override
-	public Value visit(Val param) {
+	public Void visit(Val param) {
 		table.setParamOffset(table.getParamOffset() + 1);
 		try {
 			table.add(param.id, new VarInfo(table.level(), table.getParamOffset()));
@@ -139,12 +171,12 @@ public class CodeGenerator implements ASTVisitor<Value> {
 		}
 		return null;
 	}
-	
+
 	private void lvalue(String ID){
 		try {
 			OffsetInformation i = table.lookup(ID);
 			fileout.println("ADDRESS " + i.levelValue() + ", " + i.offsetValue());
-			
+
 			if(i instanceof RefInfo){
 				fileout.println("LOAD");
 			}
@@ -152,9 +184,9 @@ public class CodeGenerator implements ASTVisitor<Value> {
 			throw new CodeGeneratorError(e.getMessage() + " in lvalue on " + ID, null);
 		}
 	}
-	
+
 	@Override
-	public Value visit(Var param) {
+	public Void visit(Var param) {
 		table.setParamOffset(table.getParamOffset() + 1);
 		try {
 			table.add(param.id, new RefInfo(table.level(), table.getParamOffset()));
@@ -165,13 +197,19 @@ public class CodeGenerator implements ASTVisitor<Value> {
 	}
 
 	@Override
-	public Value visit(Assign stmt) {
-		stmt.expr.accept(this);
-		lvalue(stmt.id);
-		fileout.println("STORE");
+	public Void visit(Assign stmt) {
+		expr(stmt.expr);
+		traversal.then(() -> {
+			lvalue(stmt.id);
+			fileout.println("STORE");
+		});
 		return null;
 	}
-	
+
+	/**
+	 * Schedule the code for the arguments of a call: the value of each value
+	 * parameter, and the address of each var parameter.
+	 */
 	public void setup(List<Param> params, List<Expr> args){
 		if (args.size() == 0 && params.size() == 0) {
 			return;
@@ -179,89 +217,88 @@ public class CodeGenerator implements ASTVisitor<Value> {
 		Iterator<Expr> it = args.iterator();
 		for (Param param : params) {
 			Expr arg = it.next();
-			
+
 			if(param instanceof Val){
-				arg.accept(this);
+				expr(arg);
 			} else if (param instanceof Var) {
-				lvalue(param.id);
+				traversal.then(() -> lvalue(((Id) arg).id));
 			} else {
 				throw new CodeGeneratorError("Operation Broke for some reason", param);
 			}
 		}
 	}
-	
+
 	@Override
-	public Value visit(Call stmt) {
+	public Void visit(Call stmt) {
 		try {
 			OffsetInformation i = table.lookup(stmt.id);
 			setup(i.params(), stmt.args);
-			fileout.println("CALL " + i.label());
-			fileout.print("DROP " + i.params().size());
+			emit("CALL " + i.label(), "DROP " + i.params().size());
 		} catch (TableError | OffsetInformationError e) {
 			throw new CodeGeneratorError(e.getMessage(), stmt);
 		}
-		
+
 		return null;
 	}
 
-	
+
 	@Override
-	public Value visit(Sequence stmt) {
+	public Void visit(Sequence stmt) {
 		for(Stmt s : stmt.body){
-			s.accept(this);
+			traversal.visit(s);
 		}
 		return null;
 	}
 
 	@Override
-	public Value visit(IfThen stmt) {
+	public Void visit(IfThen stmt) {
 		String y = "_" + currentLabel;
 		currentLabel++;
 		String n = "_" + currentLabel;
 		currentLabel++;
-		
-		stmt.test.accept(this);
-		fileout.println("LABEL " + y);
-		stmt.trueClause.accept(this);
-		fileout.println("LABEL " + n);
+
+		expr(stmt.test, y, n);
+		emit("LABEL " + y);
+		traversal.visit(stmt.trueClause);
+		emit("LABEL " + n);
 		return null;
 	}
 
 	@Override
-	public Value visit(IfThenElse stmt) {
-		
+	public Void visit(IfThenElse stmt) {
+
 		String y = "_" + currentLabel;
 		currentLabel++;
 		String n = "_" + currentLabel;
 		currentLabel++;
 		String s = "_" + currentLabel;
 		currentLabel++;
-		
-		fileout.println("LABEL " + y);
-		stmt.trueClause.accept(this);
-		fileout.println("BRANCH " + s);
-		fileout.println("LABEL " + n);
-		stmt.falseClause.accept(this);
-		fileout.println("LABEL " + s);
-		
+
+		expr(stmt.test, y, n);
+		emit("LABEL " + y);
+		traversal.visit(stmt.trueClause);
+		emit("BRANCH " + s, "LABEL " + n);
+		traversal.visit(stmt.falseClause);
+		emit("LABEL " + s);
+
 		return null;
 	}
 
 	@Override
-	public Value visit(While stmt) {
+	public Void visit(While stmt) {
 		String y = "_" + currentLabel;
 		currentLabel++;
 		String n = "_" + currentLabel;
 		currentLabel++;
 		String s = "_" + currentLabel;
 		currentLabel++;
-				
+
 		fileout.println("LABEL " + s);
-		fileout.println("LABEL " + y);
-		stmt.body.accept(this);
-		fileout.println("BRANCH " + s);
-		fileout.println("LABEL " + n);
-		
+		expr(stmt.test, y, n);
+		emit("LABEL " + y);
+		traversal.visit(stmt.body);
+		emit("BRANCH " + s, "LABEL " + n);
+
 		return null;
 	}
 
@@ -271,184 +308,268 @@ public class CodeGenerator implements ASTVisitor<Value> {
 			fileout.println("WRITECHAR");
 		}
 	}
-	
+
 	@Override
-	public Value visit(Prompt stmt) {
+	public Void visit(Prompt stmt) {
 		print(stmt.message);
 		fileout.println("READLINE");
 		return null;
 	}
 
 	@Override
-	public Value visit(Prompt2 stmt) {
+	public Void visit(Prompt2 stmt) {
 		print(stmt.message + " ");
 		fileout.println("READINT");
 		lvalue(stmt.id);
 		fileout.println("STORE");
 		return null;
 	}
-	
+
 	@Override
-	public Value visit(Print stmt) {
+	public Void visit(Print stmt) {
 		for(Item i : stmt.items){
 			if(i instanceof ExprItem){
-				i.expr.accept(this);
+				expr(((ExprItem) i).expr);
+				emit("WRITEINT");
 			} else if (i instanceof StringItem) {
-				print(i.message);
+				String message = ((StringItem) i).message;
+				traversal.then(() -> print(message));
 			}
 		}
-		
+		emit("WRITELINE");
+
 		return null;
 	}
 
 	@Override
-	public Value visit(ExprItem item) {
+	public Void visit(ExprItem item) {
 		return null;
 	}
 
 	@Override
-	public Value visit(StringItem item) {
+	public Void visit(StringItem item) {
 		return null;
 	}
-	
-	public Value BoolBinOp(BinOp expr, String y, String n){
+
+	/**
+	 * Generate jumping code for a boolean expression: control continues at
+	 * label y if the expression is true and at label n if it is false.
+	 *
+	 * @param expr
+	 * @param y
+	 * @param n
+	 */
+	public void BoolBinOp(BinOp expr, String y, String n){
 		Expr lhs = expr.left;
 		Expr rhs = expr.right;
 		String s;
 		switch (expr.op) {
-		
+
 		case And:
 			s = "_" + currentLabel;
 			currentLabel++;
-			expr(expr.left, s, n);
-			output.println("LABEL " + s);
-			expr(expr.right, y, n);
+			expr(lhs, s, n);
+			emit("LABEL " + s);
+			expr(rhs, y, n);
 			break;
 		case Or:
 			s = "_" + currentLabel;
 			currentLabel++;
-			expr(expr.left, y, s);
-			output.println("LABEL " + s);
-			expr(expr.left, y, n);
+			expr(lhs, y, s);
+			emit("LABEL " + s);
+			expr(rhs, y, n);
 			break;
 		case EQ:
 			expr(lhs);
 			expr(rhs);
-			output.println("SUB");
-			output.println("BRANCHZERO " + y);
-			output.println("BRANCH " + n);
+			emit("SUB", "BRANCHZERO " + y, "BRANCH " + n);
 			break;
 		case NE:
 			expr(lhs);
 			expr(rhs);
-			output.println("SUB");
-			output.println("BRANCHZERO " + n);
-			output.println("BRANCH " + y);
+			emit("SUB", "BRANCHZERO " + n, "BRANCH " + y);
 			break;
 		case LT:
 			expr(lhs);
 			expr(rhs);
-			output.println("SUB");
-			output.println("BRANCHNEG " + y);
-			output.println("BRANCH " + n);
+			emit("SUB", "BRANCHNEG " + y, "BRANCH " + n);
 			break;
 		case GE:
 			expr(lhs);
 			expr(rhs);
-			output.println("SUB");
-			output.println("BRANCHNEG " + n);
-			output.println("BRANCH " + y);
+			emit("SUB", "BRANCHNEG " + n, "BRANCH " + y);
 			break;
 		case GT:
-			expr(lhs);
 			expr(rhs);
-			output.println("SUB");
-			output.println("BRANCHNEG " + y);
-			output.println("BRANCH " + n);
+			expr(lhs);
+			emit("SUB", "BRANCHNEG " + y, "BRANCH " + n);
 			break;
 		case LE:
-			expr(lhs);
 			expr(rhs);
-			output.println("SUB");
-			output.println("BRANCHNEG " + n);
-			output.println("BRANCH " + y);
+			expr(lhs);
+			emit("SUB", "BRANCHNEG " + n, "BRANCH " + y);
+			break;
 		default:
 			throw new CodeGeneratorError("Unknown operator", expr);
 		}
-		return null;
 	}
 
 	@Override
-	public Value visit(BinOp expr) {
+	public Void visit(BinOp expr) {
+		if (type(expr) == Type.Bool) {
+			bool(expr);
+			return null;
+		}
 		Expr lhs = expr.left;
 		Expr rhs = expr.right;
-		expr(lhs);
-		expr(rhs);
 		switch(expr.op){
-		case Plus: 
-			output.println("ADD");
+		case Plus:
+			expr(lhs);
+			expr(rhs);
+			emit("ADD");
 			break;
-		case Minus: 
-			output.println("SUB");
+		case Minus:
+			expr(lhs);
+			expr(rhs);
+			emit("SUB");
 			break;
 		case Times:
-			output.println("MUL");
+			expr(lhs);
+			expr(rhs);
+			emit("MUL");
 			break;
 		case Div:
-			output.println("DIV");
+			expr(lhs);
+			expr(rhs);
+			emit("DIV");
 			break;
 		case Mod:
-			output.println("MOD");
+			expr(lhs);
+			expr(rhs);
+			emit("MOD");
 			break;
-		default: 
+		default:
 			throw new CodeGeneratorError("Unknown operator", expr);
 		}
-		
+
 		return null;
 	}
 
 	@Override
-	public Value visit(UnOp expr) {
+	public Void visit(UnOp expr) {
+		if (type(expr) == Type.Bool) {
+			bool(expr);
+			return null;
+		}
+		switch(expr.op){
+		case Neg:
+			fileout.println("CONSTANT 0");
+			expr(expr.expr);
+			emit("SUB");
+			break;
+		default:
+			throw new CodeGeneratorError("Unknown operator", expr);
+		}
 		return null;
-
 	}
 
 	@Override
-	public Value visit(Num expr) {
-		
+	public Void visit(Num expr) {
+		fileout.println("CONSTANT " + expr.value);
 		return null;
 	}
 
 	@Override
-	public Value visit(Id expr) {
+	public Void visit(Id expr) {
+		try {
+			OffsetInformation i = table.lookup(expr.id);
+			if(i instanceof ConstInfo){
+				fileout.println("CONSTANT " + i.intValue());
+			} else {
+				lvalue(expr.id);
+				fileout.println("LOAD");
+			}
+		} catch (TableError | OffsetInformationError e) {
+			throw new CodeGeneratorError(e.getMessage(), expr);
+		}
 		return null;
 	}
 
-	public Value expr(Expr expr, String y, String n){
+	/**
+	 * Schedule jumping code for a boolean expression. Literals, not and the
+	 * boolean operators branch directly; any other expression (a boolean
+	 * variable) is loaded and tested.
+	 *
+	 * @param expr
+	 * @param y the label to branch to if expr is true
+	 * @param n the label to branch to if expr is false
+	 */
+	public void expr(Expr expr, String y, String n){
+		traversal.then(() -> jump(expr, y, n));
+	}
+
+	private void jump(Expr expr, String y, String n){
+		if (type(expr) != Type.Bool) {
+			throw new CodeGeneratorError("Boolean expression required", expr);
+		}
 		if(expr instanceof True){
-			output.println("BRANCH " + y);
+			fileout.println("BRANCH " + y);
 		} else if (expr instanceof False){
-			output.println("BRANCH " + n);
+			fileout.println("BRANCH " + n);
 		} else if (expr instanceof UnOp){
-			output.println("CONSTANT 0");
-			expr.accept(this);
-			output.println("SUB");
+			expr(((UnOp) expr).expr, n, y);
+		} else if (expr instanceof BinOp){
+			BoolBinOp((BinOp) expr, y, n);
+		} else {
+			expr(expr);
+			emit("BRANCHZERO " + n, "BRANCH " + y);
 		}
-		return null;
 	}
-	public Value expr(Expr expr){
-		return null;
+
+	/**
+	 * Schedule code to leave the value of an expression on the stack.
+	 *
+	 * @param expr
+	 */
+	public void expr(Expr expr){
+		traversal.visit(expr);
 	}
-	
+
+	/**
+	 * Generate code to leave 1 or 0 on the stack for a boolean operation,
+	 * using its jumping code.
+	 */
+	private void bool(Expr expr){
+		String y = "_" + currentLabel;
+		currentLabel++;
+		String n = "_" + currentLabel;
+		currentLabel++;
+		String s = "_" + currentLabel;
+		currentLabel++;
+
+		expr(expr, y, n);
+		emit("LABEL " + y, "CONSTANT 1", "BRANCH " + s, "LABEL " + n, "CONSTANT 0", "LABEL " + s);
+	}
+
+	/**
+	 * @return the type of expr, as recorded by the TypeChecker
+	 */
+	private static Type type(Expr expr){
+		if (expr.type == null) {
+			throw new CodeGeneratorError("Expression has not been type checked", expr);
+		}
+		return expr.type;
+	}
+
 	@Override
-	public Value visit(True expr) {
-		output.println("CONSTANT 1");
+	public Void visit(True expr) {
+		fileout.println("CONSTANT 1");
 		return null;
 	}
 
 	@Override
-	public Value visit(False expr) {
-		output.println("CONSTANT 0");
+	public Void visit(False expr) {
+		fileout.println("CONSTANT 0");
 		return null;
 	}
-}
\ No newline at end of file
+}
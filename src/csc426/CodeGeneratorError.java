@@ -5,4 +5,8 @@ public class CodeGeneratorError extends RuntimeException {
 	public CodeGeneratorError(String message, AST ast) {
 		super(message + ": " + ast);
 	}
-}
\ No newline at end of file
+
+	public CodeGeneratorError(String message, FlatAST ast, int node) {
+		super(message + ": " + ast.toString(node));
+	}
+}
@@ -0,0 +1,142 @@
+package csc426;
+
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Diagnostics that records errors in arrays, up to a fixed capacity. Errors
+ * beyond the capacity are only counted, so that scanning a badly corrupted
+ * input costs no more than scanning a clean one. Room for up to
+ * DEFAULT_CAPACITY errors is allocated at once; a larger buffer grows as
+ * errors come in.
+ */
+public class DiagnosticBuffer implements Diagnostics {
+	public static final int DEFAULT_CAPACITY = 100;
+
+	public DiagnosticBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity the maximum number of errors to record
+	 */
+	public DiagnosticBuffer(int capacity) {
+		int initial = Math.min(capacity, DEFAULT_CAPACITY);
+		this.capacity = capacity;
+		this.codes = new byte[initial];
+		this.positions = new long[initial];
+		this.chars = new char[initial];
+		this.size = 0;
+		this.dropped = 0;
+	}
+
+	@Override
+	public void report(int code, long position, char c) {
+		if (size == capacity) {
+			++dropped;
+			return;
+		}
+		if (size == codes.length) {
+			int more = (int) Math.min(capacity, 2L * size);
+			codes = Arrays.copyOf(codes, more);
+			positions = Arrays.copyOf(positions, more);
+			chars = Arrays.copyOf(chars, more);
+		}
+		codes[size] = (byte) code;
+		positions[size] = position;
+		chars[size] = c;
+		++size;
+	}
+
+	/**
+	 * @return the maximum number of errors to record
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of errors recorded
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of errors reported but not recorded
+	 */
+	public int dropped() {
+		return dropped;
+	}
+
+	/**
+	 * @return the total number of errors reported
+	 */
+	public int total() {
+		return size + dropped;
+	}
+
+	/**
+	 * @param i
+	 * @return the code of error i
+	 */
+	public int code(int i) {
+		return codes[i];
+	}
+
+	/**
+	 * @param i
+	 * @return the packed position of error i
+	 */
+	public long position(int i) {
+		return positions[i];
+	}
+
+	/**
+	 * @param i
+	 * @return the message text of error i
+	 */
+	public String message(int i) {
+		return Diagnostics.message(codes[i], positions[i], chars[i]);
+	}
+
+	/**
+	 * Report all of the recorded errors to another Diagnostics, moving them
+	 * down by the given number of lines. The count of dropped errors carries
+	 * over if the other is also a DiagnosticBuffer.
+	 * 
+	 * @param other
+	 * @param lines
+	 */
+	public void replay(Diagnostics other, int lines) {
+		long shift = Position.pack(lines, 0);
+		for (int i = 0; i < size; ++i) {
+			other.report(codes[i], positions[i] + shift, chars[i]);
+		}
+		if (other instanceof DiagnosticBuffer) {
+			((DiagnosticBuffer) other).dropped += dropped;
+		}
+	}
+
+	/**
+	 * Print the recorded errors, followed by a count of any that were dropped.
+	 * 
+	 * @param out
+	 */
+	public void print(PrintStream out) {
+		for (int i = 0; i < size; ++i) {
+			out.println(message(i));
+		}
+		if (dropped > 0) {
+			out.println("(" + dropped + " more errors)");
+		}
+	}
+
+	private final int capacity;
+	private byte[] codes;
+	private long[] positions;
+	private char[] chars;
+	private int size;
+	private int dropped;
+}
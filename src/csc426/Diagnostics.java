@@ -0,0 +1,52 @@
+package csc426;
+
+/**
+ * A receiver for the errors found while scanning. Each error is reported as a
+ * code, a packed position and (for UNEXPECTED_CHARACTER) the offending
+ * character, so that no message needs to be built unless it is printed.
+ */
+public interface Diagnostics {
+	public static final int UNEXPECTED_CHARACTER = 0;
+	public static final int MALFORMED_COMMENT = 1;
+	public static final int UNCLOSED_COMMENT = 2;
+	public static final int UNCLOSED_STRING = 3;
+
+	/**
+	 * Record an error.
+	 * 
+	 * @param code one of the codes above
+	 * @param position the packed position of the error
+	 * @param c the unexpected character, if any
+	 */
+	public void report(int code, long position, char c);
+
+	/**
+	 * Diagnostics that prints each error to System.err as it is reported.
+	 */
+	public static final Diagnostics STDERR = new Diagnostics() {
+		public void report(int code, long position, char c) {
+			System.err.println(message(code, position, c));
+		}
+	};
+
+	/**
+	 * @param code
+	 * @param position
+	 * @param c
+	 * @return the text of an error message
+	 */
+	public static String message(int code, long position, char c) {
+		switch (code) {
+		case UNEXPECTED_CHARACTER:
+			return "Error: Unexpected character (" + c + ") at " + Position.toString(position);
+		case MALFORMED_COMMENT:
+			return "Error: Malformed comment at " + Position.toString(position);
+		case UNCLOSED_COMMENT:
+			return "Error: Unclosed comment at " + Position.toString(position);
+		case UNCLOSED_STRING:
+			return "Error: Unclosed string literal at " + Position.toString(position);
+		default:
+			return "Error: Unknown error " + code + " at " + Position.toString(position);
+		}
+	}
+}
@@ -0,0 +1,961 @@
+package csc426;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import csc426.AST.*;
+import csc426.AST.Expr.*;
+import csc426.AST.Item.*;
+import csc426.AST.Param.*;
+import csc426.AST.Stmt.*;
+
+/**
+ * A compact form of a whole AST, stored in a few primitive arrays instead of
+ * one object (and several lists) per node. Nodes are numbered in preorder,
+ * the program being node 0. For each node there is its kind, its packed
+ * position, one scalar (a name or message id, a number, an operator or a
+ * type ordinal) and the offset of its links: the ids of its children, with
+ * each list of children preceded by its length. Names and messages are
+ * interned in a Names table.
+ *
+ * Nodes are read through accessors that take the node id, and passes over
+ * the tree implement FlatVisitor, driven by a FlatTraversal: FlatTypeChecker,
+ * FlatInterpreter and FlatCodeGenerator check, run and compile a program in
+ * this form. The object tree can be rebuilt with toProgram() for other
+ * passes.
+ * Neither flattening nor rebuilding recurses, so trees of any depth can be
+ * converted both ways.
+ */
+public class FlatAST {
+	/**
+	 * The kinds of nodes, one for each concrete AST class.
+	 */
+	public static enum Kind {
+		Program, Block, ConstDecl, VarDecl, ProcDecl, Val, Var, Assign, Call, Sequence, IfThen, IfThenElse, While,
+		Prompt, Prompt2, Print, ExprItem, StringItem, BinOp, UnOp, Num, Id, True, False
+	}
+
+	private static final Kind[] KINDS = Kind.values();
+	private static final Type[] TYPES = Type.values();
+	private static final Op1[] OP1S = Op1.values();
+	private static final Op2[] OP2S = Op2.values();
+
+	private byte[] kinds;
+	private long[] positions;
+	private int[] data;
+	private int[] firsts;
+	private int size;
+	private int[] links;
+	private int linkCount;
+	private final Names names;
+
+	private FlatAST() {
+		this.kinds = new byte[256];
+		this.positions = new long[256];
+		this.data = new int[256];
+		this.firsts = new int[256];
+		this.size = 0;
+		this.links = new int[256];
+		this.linkCount = 0;
+		this.names = new Names();
+	}
+
+	/**
+	 * Flatten an AST.
+	 *
+	 * @param program
+	 * @return the flat form of program
+	 */
+	public static FlatAST of(Program program) {
+		FlatAST result = new FlatAST();
+		result.new Builder().traversal.run(program);
+		result.trim();
+		return result;
+	}
+
+	/**
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the table of names and messages
+	 */
+	public Names names() {
+		return names;
+	}
+
+	/**
+	 * @return the id of the program node
+	 */
+	public int root() {
+		return 0;
+	}
+
+	public Kind kind(int node) {
+		return KINDS[kinds[node]];
+	}
+
+	public long position(int node) {
+		return positions[node];
+	}
+
+	/**
+	 * @param node
+	 *            a Program, declaration, parameter, Assign, Call, Prompt2 or Id
+	 * @return the name declared or used by node
+	 */
+	public String id(int node) {
+		return names.get(idIndex(node));
+	}
+
+	/**
+	 * @param node
+	 *            a Program, declaration, parameter, Assign, Call, Prompt2 or Id
+	 * @return the id of the name in names()
+	 */
+	public int idIndex(int node) {
+		return kinds[node] == Kind.Prompt2.ordinal() ? links[firsts[node]] : data[node];
+	}
+
+	/**
+	 * @param node
+	 *            a Prompt, Prompt2 or StringItem
+	 */
+	public String message(int node) {
+		return names.get(data[node]);
+	}
+
+	/**
+	 * @param node
+	 *            a ConstDecl or Num
+	 */
+	public int value(int node) {
+		return kinds[node] == Kind.Num.ordinal() ? data[node] : links[firsts[node]];
+	}
+
+	/**
+	 * @param node
+	 *            a VarDecl or parameter
+	 */
+	public Type type(int node) {
+		return TYPES[links[firsts[node]]];
+	}
+
+	/**
+	 * @param node
+	 *            a BinOp
+	 */
+	public Op2 op2(int node) {
+		return OP2S[data[node]];
+	}
+
+	/**
+	 * @param node
+	 *            an UnOp
+	 */
+	public Op1 op1(int node) {
+		return OP1S[data[node]];
+	}
+
+	/**
+	 * @param node
+	 *            a Program or ProcDecl
+	 */
+	public int block(int node) {
+		int first = firsts[node];
+		return kinds[node] == Kind.Program.ordinal() ? links[first] : links[first + 1 + links[first]];
+	}
+
+	/**
+	 * @param node
+	 *            an Assign, UnOp or ExprItem
+	 */
+	public int expr(int node) {
+		return links[firsts[node]];
+	}
+
+	/**
+	 * @param node
+	 *            a BinOp
+	 */
+	public int left(int node) {
+		return links[firsts[node]];
+	}
+
+	/**
+	 * @param node
+	 *            a BinOp
+	 */
+	public int right(int node) {
+		return links[firsts[node] + 1];
+	}
+
+	/**
+	 * @param node
+	 *            an IfThen, IfThenElse or While
+	 */
+	public int test(int node) {
+		return links[firsts[node]];
+	}
+
+	/**
+	 * @param node
+	 *            an IfThen or IfThenElse
+	 */
+	public int trueClause(int node) {
+		return links[firsts[node] + 1];
+	}
+
+	/**
+	 * @param node
+	 *            an IfThenElse
+	 */
+	public int falseClause(int node) {
+		return links[firsts[node] + 2];
+	}
+
+	/**
+	 * @param node
+	 *            a While
+	 */
+	public int body(int node) {
+		return links[firsts[node] + 1];
+	}
+
+	/**
+	 * The following return lists of children, to be read with length(list)
+	 * and get(list, i).
+	 *
+	 * @param block
+	 */
+	public int consts(int block) {
+		return firsts[block];
+	}
+
+	public int vars(int block) {
+		int list = consts(block);
+		return list + 1 + links[list];
+	}
+
+	public int procs(int block) {
+		int list = vars(block);
+		return list + 1 + links[list];
+	}
+
+	/**
+	 * @param node
+	 *            a Block or Sequence
+	 */
+	public int stmts(int node) {
+		if (kinds[node] == Kind.Sequence.ordinal()) {
+			return firsts[node];
+		}
+		int list = procs(node);
+		return list + 1 + links[list];
+	}
+
+	/**
+	 * @param proc
+	 *            a ProcDecl
+	 */
+	public int params(int proc) {
+		return firsts[proc];
+	}
+
+	/**
+	 * @param call
+	 *            a Call
+	 */
+	public int args(int call) {
+		return firsts[call];
+	}
+
+	/**
+	 * @param print
+	 *            a Print
+	 */
+	public int items(int print) {
+		return firsts[print];
+	}
+
+	public int length(int list) {
+		return links[list];
+	}
+
+	public int get(int list, int i) {
+		return links[list + 1 + i];
+	}
+
+	/**
+	 * Dispatch on the kind of a node.
+	 *
+	 * @param node
+	 * @param visitor
+	 * @return the result of the visitor's method for that kind
+	 */
+	public <T> T accept(int node, FlatVisitor<T> visitor) {
+		switch (KINDS[kinds[node]]) {
+		case Program:
+			return visitor.visitProgram(this, node);
+		case Block:
+			return visitor.visitBlock(this, node);
+		case ConstDecl:
+			return visitor.visitConstDecl(this, node);
+		case VarDecl:
+			return visitor.visitVarDecl(this, node);
+		case ProcDecl:
+			return visitor.visitProcDecl(this, node);
+		case Val:
+			return visitor.visitVal(this, node);
+		case Var:
+			return visitor.visitVar(this, node);
+		case Assign:
+			return visitor.visitAssign(this, node);
+		case Call:
+			return visitor.visitCall(this, node);
+		case Sequence:
+			return visitor.visitSequence(this, node);
+		case IfThen:
+			return visitor.visitIfThen(this, node);
+		case IfThenElse:
+			return visitor.visitIfThenElse(this, node);
+		case While:
+			return visitor.visitWhile(this, node);
+		case Prompt:
+			return visitor.visitPrompt(this, node);
+		case Prompt2:
+			return visitor.visitPrompt2(this, node);
+		case Print:
+			return visitor.visitPrint(this, node);
+		case ExprItem:
+			return visitor.visitExprItem(this, node);
+		case StringItem:
+			return visitor.visitStringItem(this, node);
+		case BinOp:
+			return visitor.visitBinOp(this, node);
+		case UnOp:
+			return visitor.visitUnOp(this, node);
+		case Num:
+			return visitor.visitNum(this, node);
+		case Id:
+			return visitor.visitId(this, node);
+		case True:
+			return visitor.visitTrue(this, node);
+		default:
+			return visitor.visitFalse(this, node);
+		}
+	}
+
+	/**
+	 * Rebuild the object tree, for passes that work on AST.
+	 *
+	 * @return the program
+	 */
+	public Program toProgram() {
+		Rebuilder rebuilder = new Rebuilder();
+		rebuilder.traversal.run(root());
+		return (Program) rebuilder.results[0];
+	}
+
+	/**
+	 * @param node
+	 * @return the same text as toString() of the AST node that node was
+	 *         flattened from, for error messages
+	 */
+	public String toString(int node) {
+		String at = " at " + Position.toString(positions[node]);
+		switch (KINDS[kinds[node]]) {
+		case Program:
+			return "Program " + id(node) + at;
+		case Block:
+			return "Block" + at;
+		case ConstDecl:
+			return "Constant declaration " + id(node) + at;
+		case VarDecl:
+			return "Variable declaration " + id(node) + at;
+		case ProcDecl:
+			return "Procedure declaration " + id(node) + at;
+		case Val:
+			return "Value parameter " + id(node) + at;
+		case Var:
+			return "Variable parameter " + id(node) + at;
+		case Assign:
+			return "Assignment to " + id(node) + at;
+		case Call:
+			return "Call to " + id(node) + at;
+		case Sequence:
+			return "Sequence" + at;
+		case IfThen:
+			return "If-then statement" + at;
+		case IfThenElse:
+			return "If-Then-Else statement" + at;
+		case While:
+			return "While statement" + at;
+		case Prompt:
+			return "Prompt statement" + at;
+		case Prompt2:
+			return "Prompt of " + id(node) + at;
+		case Print:
+			return "Print statement" + at;
+		case ExprItem:
+			return "Print expression item" + at;
+		case StringItem:
+			return "Print string item" + at;
+		case BinOp:
+			return "Binary operation " + op2(node) + at;
+		case UnOp:
+			return "Unary operation " + op1(node) + at;
+		case Num:
+			return "Integer literal " + value(node) + at;
+		case Id:
+			return "Variable " + id(node) + at;
+		case True:
+			return "Boolean literal true" + at;
+		default:
+			return "Boolean literal false" + at;
+		}
+	}
+
+	/**
+	 * Shrink the arrays to the size of the finished tree.
+	 */
+	private void trim() {
+		kinds = Arrays.copyOf(kinds, size);
+		positions = Arrays.copyOf(positions, size);
+		data = Arrays.copyOf(data, size);
+		firsts = Arrays.copyOf(firsts, size);
+		links = Arrays.copyOf(links, linkCount);
+	}
+
+	/**
+	 * Reserve the next node, in preorder.
+	 */
+	private int node(Kind kind, long position, int value) {
+		if (size == kinds.length) {
+			int capacity = 2 * size;
+			kinds = Arrays.copyOf(kinds, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+			data = Arrays.copyOf(data, capacity);
+			firsts = Arrays.copyOf(firsts, capacity);
+		}
+		kinds[size] = (byte) kind.ordinal();
+		positions[size] = position;
+		data[size] = value;
+		return size++;
+	}
+
+	/**
+	 * Store the links of a node, once its children have been added.
+	 */
+	private void link(int node, int[] values, int count) {
+		if (linkCount + count > links.length) {
+			links = Arrays.copyOf(links, Math.max(2 * links.length, linkCount + count));
+		}
+		System.arraycopy(values, 0, links, linkCount, count);
+		firsts[node] = linkCount;
+		linkCount += count;
+	}
+
+	/**
+	 * Adds each node visited. A node is added when it is first visited, so the
+	 * nodes are numbered in preorder, and linked when it is visited again
+	 * after its children. The ids of the nodes added and not yet linked to
+	 * their parents are kept on a stack.
+	 */
+	private class Builder implements ASTVisitor<Void> {
+		final Traversal traversal = new Traversal(this);
+		private int[] ids = new int[64];
+		private int idCount = 0;
+		private int[] values = new int[16]; // the links of the node being linked
+		private int count;
+		private int first; // the stack index of its first child
+		private int next; // and of the child to be linked next
+
+		private void push(int id) {
+			if (idCount == ids.length) {
+				ids = Arrays.copyOf(ids, 2 * idCount);
+			}
+			ids[idCount++] = id;
+		}
+
+		private Void leaf(Kind kind, long position, int value, int... fields) {
+			int node = node(kind, position, value);
+			link(node, fields, fields.length);
+			push(node);
+			return null;
+		}
+
+		/**
+		 * Add a node with children, to be linked once they have been added.
+		 */
+		private void enter(Kind kind, long position, int value) {
+			push(node(kind, position, value));
+		}
+
+		private void visitAll(List<? extends AST> nodes) {
+			for (AST node : nodes) {
+				traversal.visit(node);
+			}
+		}
+
+		/**
+		 * Start linking the node whose n children were added last.
+		 */
+		private Builder children(int n) {
+			first = idCount - n;
+			next = first;
+			count = 0;
+			return this;
+		}
+
+		private void add(int value) {
+			if (count == values.length) {
+				values = Arrays.copyOf(values, 2 * count);
+			}
+			values[count++] = value;
+		}
+
+		private Builder one() {
+			add(ids[next++]);
+			return this;
+		}
+
+		private Builder list(int n) {
+			add(n);
+			for (int i = 0; i < n; ++i) {
+				one();
+			}
+			return this;
+		}
+
+		private Void done() {
+			int node = ids[first - 1];
+			link(node, values, count);
+			idCount = first - 1;
+			push(node);
+			return null;
+		}
+
+		public Void visit(Program program) {
+			if (traversal.state() == 0) {
+				enter(Kind.Program, program.start(), names.add(program.name));
+				traversal.visit(program.block);
+				traversal.resume(1);
+				return null;
+			}
+			return children(1).one().done();
+		}
+
+		public Void visit(Block block) {
+			if (traversal.state() == 0) {
+				enter(Kind.Block, block.start(), 0);
+				visitAll(block.consts);
+				visitAll(block.vars);
+				visitAll(block.procs);
+				visitAll(block.stmts);
+				traversal.resume(1);
+				return null;
+			}
+			return children(block.consts.size() + block.vars.size() + block.procs.size() + block.stmts.size())
+					.list(block.consts.size()).list(block.vars.size()).list(block.procs.size())
+					.list(block.stmts.size()).done();
+		}
+
+		public Void visit(ConstDecl decl) {
+			return leaf(Kind.ConstDecl, decl.start(), names.add(decl.id), decl.value);
+		}
+
+		public Void visit(VarDecl decl) {
+			return leaf(Kind.VarDecl, decl.start(), names.add(decl.id), decl.type.ordinal());
+		}
+
+		public Void visit(ProcDecl decl) {
+			if (traversal.state() == 0) {
+				enter(Kind.ProcDecl, decl.start(), names.add(decl.id));
+				visitAll(decl.params);
+				traversal.visit(decl.block);
+				traversal.resume(1);
+				return null;
+			}
+			return children(decl.params.size() + 1).list(decl.params.size()).one().done();
+		}
+
+		public Void visit(Val param) {
+			return leaf(Kind.Val, param.start(), names.add(param.id), param.type.ordinal());
+		}
+
+		public Void visit(Var param) {
+			return leaf(Kind.Var, param.start(), names.add(param.id), param.type.ordinal());
+		}
+
+		public Void visit(Assign stmt) {
+			if (traversal.state() == 0) {
+				enter(Kind.Assign, stmt.start(), names.add(stmt.id));
+				traversal.visit(stmt.expr);
+				traversal.resume(1);
+				return null;
+			}
+			return children(1).one().done();
+		}
+
+		public Void visit(Call stmt) {
+			if (traversal.state() == 0) {
+				enter(Kind.Call, stmt.start(), names.add(stmt.id));
+				visitAll(stmt.args);
+				traversal.resume(1);
+				return null;
+			}
+			return children(stmt.args.size()).list(stmt.args.size()).done();
+		}
+
+		public Void visit(Sequence stmt) {
+			if (traversal.state() == 0) {
+				enter(Kind.Sequence, stmt.start(), 0);
+				visitAll(stmt.body);
+				traversal.resume(1);
+				return null;
+			}
+			return children(stmt.body.size()).list(stmt.body.size()).done();
+		}
+
+		public Void visit(IfThen stmt) {
+			if (traversal.state() == 0) {
+				enter(Kind.IfThen, stmt.start(), 0);
+				traversal.visit(stmt.test);
+				traversal.visit(stmt.trueClause);
+				traversal.resume(1);
+				return null;
+			}
+			return children(2).one().one().done();
+		}
+
+		public Void visit(IfThenElse stmt) {
+			if (traversal.state() == 0) {
+				enter(Kind.IfThenElse, stmt.start(), 0);
+				traversal.visit(stmt.test);
+				traversal.visit(stmt.trueClause);
+				traversal.visit(stmt.falseClause);
+				traversal.resume(1);
+				return null;
+			}
+			return children(3).one().one().one().done();
+		}
+
+		public Void visit(While stmt) {
+			if (traversal.state() == 0) {
+				enter(Kind.While, stmt.start(), 0);
+				traversal.visit(stmt.test);
+				traversal.visit(stmt.body);
+				traversal.resume(1);
+				return null;
+			}
+			return children(2).one().one().done();
+		}
+
+		public Void visit(Prompt stmt) {
+			return leaf(Kind.Prompt, stmt.start(), names.add(stmt.message));
+		}
+
+		public Void visit(Prompt2 stmt) {
+			return leaf(Kind.Prompt2, stmt.start(), names.add(stmt.message), names.add(stmt.id));
+		}
+
+		public Void visit(Print stmt) {
+			if (traversal.state() == 0) {
+				enter(Kind.Print, stmt.start(), 0);
+				visitAll(stmt.items);
+				traversal.resume(1);
+				return null;
+			}
+			return children(stmt.items.size()).list(stmt.items.size()).done();
+		}
+
+		public Void visit(ExprItem item) {
+			if (traversal.state() == 0) {
+				enter(Kind.ExprItem, item.start(), 0);
+				traversal.visit(item.expr);
+				traversal.resume(1);
+				return null;
+			}
+			return children(1).one().done();
+		}
+
+		public Void visit(StringItem item) {
+			return leaf(Kind.StringItem, item.start(), names.add(item.message));
+		}
+
+		public Void visit(BinOp expr) {
+			if (traversal.state() == 0) {
+				enter(Kind.BinOp, expr.start(), expr.op.ordinal());
+				traversal.visit(expr.left);
+				traversal.visit(expr.right);
+				traversal.resume(1);
+				return null;
+			}
+			return children(2).one().one().done();
+		}
+
+		public Void visit(UnOp expr) {
+			if (traversal.state() == 0) {
+				enter(Kind.UnOp, expr.start(), expr.op.ordinal());
+				traversal.visit(expr.expr);
+				traversal.resume(1);
+				return null;
+			}
+			return children(1).one().done();
+		}
+
+		public Void visit(Num expr) {
+			return leaf(Kind.Num, expr.start(), expr.value);
+		}
+
+		public Void visit(Id expr) {
+			return leaf(Kind.Id, expr.start(), names.add(expr.id));
+		}
+
+		public Void visit(True expr) {
+			return leaf(Kind.True, expr.start(), 0);
+		}
+
+		public Void visit(False expr) {
+			return leaf(Kind.False, expr.start(), 0);
+		}
+	}
+
+	/**
+	 * Rebuilds each node visited, once its children have been rebuilt. The
+	 * nodes rebuilt and not yet taken by their parents are kept on a stack.
+	 */
+	private class Rebuilder implements FlatVisitor<Void> {
+		private Object[] results = new Object[64];
+		private int resultCount = 0;
+		private int next; // the stack index of the child to be taken next
+		final FlatTraversal traversal = new FlatTraversal(FlatAST.this, this);
+
+		private Void push(Object result) {
+			if (resultCount == results.length) {
+				results = Arrays.copyOf(results, 2 * resultCount);
+			}
+			results[resultCount++] = result;
+			return null;
+		}
+
+		/**
+		 * Start taking the n children rebuilt last.
+		 */
+		private void children(int n) {
+			next = resultCount - n;
+			resultCount = next;
+		}
+
+		private Object take() {
+			Object result = results[next];
+			results[next++] = null;
+			return result;
+		}
+
+		@SuppressWarnings("unchecked")
+		private <T> List<T> takeAll(int list) {
+			int n = length(list);
+			List<T> result = new ArrayList<>(n);
+			for (int i = 0; i < n; ++i) {
+				result.add((T) take());
+			}
+			return result;
+		}
+
+		public Void visitProgram(FlatAST ast, int program) {
+			if (traversal.state() == 0) {
+				traversal.visit(block(program));
+				traversal.resume(1);
+				return null;
+			}
+			children(1);
+			return push(AST.program(id(program), (Block) take(), positions[program]));
+		}
+
+		public Void visitBlock(FlatAST ast, int block) {
+			int consts = consts(block), vars = vars(block), procs = procs(block), stmts = stmts(block);
+			if (traversal.state() == 0) {
+				traversal.visitAll(consts);
+				traversal.visitAll(vars);
+				traversal.visitAll(procs);
+				traversal.visitAll(stmts);
+				traversal.resume(1);
+				return null;
+			}
+			children(length(consts) + length(vars) + length(procs) + length(stmts));
+			return push(AST.block(takeAll(consts), takeAll(vars), takeAll(procs), takeAll(stmts), positions[block]));
+		}
+
+		public Void visitConstDecl(FlatAST ast, int decl) {
+			return push(AST.constDecl(id(decl), value(decl), positions[decl]));
+		}
+
+		public Void visitVarDecl(FlatAST ast, int decl) {
+			return push(AST.varDecl(id(decl), type(decl), positions[decl]));
+		}
+
+		public Void visitProcDecl(FlatAST ast, int decl) {
+			int params = params(decl);
+			if (traversal.state() == 0) {
+				traversal.visitAll(params);
+				traversal.visit(block(decl));
+				traversal.resume(1);
+				return null;
+			}
+			children(length(params) + 1);
+			return push(AST.procDecl(id(decl), takeAll(params), (Block) take(), positions[decl]));
+		}
+
+		public Void visitVal(FlatAST ast, int param) {
+			return push(AST.valParam(id(param), type(param), positions[param]));
+		}
+
+		public Void visitVar(FlatAST ast, int param) {
+			return push(AST.varParam(id(param), type(param), positions[param]));
+		}
+
+		public Void visitAssign(FlatAST ast, int stmt) {
+			if (traversal.state() == 0) {
+				traversal.visit(expr(stmt));
+				traversal.resume(1);
+				return null;
+			}
+			children(1);
+			return push(AST.assignStmt(id(stmt), (Expr) take(), positions[stmt]));
+		}
+
+		public Void visitCall(FlatAST ast, int stmt) {
+			int args = args(stmt);
+			if (traversal.state() == 0) {
+				traversal.visitAll(args);
+				traversal.resume(1);
+				return null;
+			}
+			children(length(args));
+			return push(AST.callStmt(id(stmt), takeAll(args), positions[stmt]));
+		}
+
+		public Void visitSequence(FlatAST ast, int stmt) {
+			int body = stmts(stmt);
+			if (traversal.state() == 0) {
+				traversal.visitAll(body);
+				traversal.resume(1);
+				return null;
+			}
+			children(length(body));
+			return push(AST.sequenceStmt(takeAll(body), positions[stmt]));
+		}
+
+		public Void visitIfThen(FlatAST ast, int stmt) {
+			if (traversal.state() == 0) {
+				traversal.visit(test(stmt));
+				traversal.visit(trueClause(stmt));
+				traversal.resume(1);
+				return null;
+			}
+			children(2);
+			return push(AST.ifThenStmt((Expr) take(), (Stmt) take(), positions[stmt]));
+		}
+
+		public Void visitIfThenElse(FlatAST ast, int stmt) {
+			if (traversal.state() == 0) {
+				traversal.visit(test(stmt));
+				traversal.visit(trueClause(stmt));
+				traversal.visit(falseClause(stmt));
+				traversal.resume(1);
+				return null;
+			}
+			children(3);
+			return push(AST.ifThenElseStmt((Expr) take(), (Stmt) take(), (Stmt) take(), positions[stmt]));
+		}
+
+		public Void visitWhile(FlatAST ast, int stmt) {
+			if (traversal.state() == 0) {
+				traversal.visit(test(stmt));
+				traversal.visit(body(stmt));
+				traversal.resume(1);
+				return null;
+			}
+			children(2);
+			return push(AST.whileStmt((Expr) take(), (Stmt) take(), positions[stmt]));
+		}
+
+		public Void visitPrompt(FlatAST ast, int stmt) {
+			return push(AST.promptStmt(message(stmt), positions[stmt]));
+		}
+
+		public Void visitPrompt2(FlatAST ast, int stmt) {
+			return push(AST.prompt2Stmt(message(stmt), id(stmt), positions[stmt]));
+		}
+
+		public Void visitPrint(FlatAST ast, int stmt) {
+			int items = items(stmt);
+			if (traversal.state() == 0) {
+				traversal.visitAll(items);
+				traversal.resume(1);
+				return null;
+			}
+			children(length(items));
+			return push(AST.printStmt(takeAll(items), positions[stmt]));
+		}
+
+		public Void visitExprItem(FlatAST ast, int item) {
+			if (traversal.state() == 0) {
+				traversal.visit(expr(item));
+				traversal.resume(1);
+				return null;
+			}
+			children(1);
+			return push(AST.exprItem((Expr) take(), positions[item]));
+		}
+
+		public Void visitStringItem(FlatAST ast, int item) {
+			return push(AST.stringItem(message(item), positions[item]));
+		}
+
+		public Void visitBinOp(FlatAST ast, int expr) {
+			if (traversal.state() == 0) {
+				traversal.visit(left(expr));
+				traversal.visit(right(expr));
+				traversal.resume(1);
+				return null;
+			}
+			children(2);
+			Expr left = (Expr) take();
+			Expr right = (Expr) take();
+			return push(AST.binOpExpr(left, op2(expr), right, positions[expr]));
+		}
+
+		public Void visitUnOp(FlatAST ast, int expr) {
+			if (traversal.state() == 0) {
+				traversal.visit(expr(expr));
+				traversal.resume(1);
+				return null;
+			}
+			children(1);
+			return push(AST.unOpExpr(op1(expr), (Expr) take(), positions[expr]));
+		}
+
+		public Void visitNum(FlatAST ast, int expr) {
+			return push(AST.numExpr(value(expr), positions[expr]));
+		}
+
+		public Void visitId(FlatAST ast, int expr) {
+			return push(AST.idExpr(id(expr), positions[expr]));
+		}
+
+		public Void visitTrue(FlatAST ast, int expr) {
+			return push(AST.trueExpr(positions[expr]));
+		}
+
+		public Void visitFalse(FlatAST ast, int expr) {
+			return push(AST.falseExpr(positions[expr]));
+		}
+	}
+}
@@ -0,0 +1,634 @@
+package csc426;
+
+import java.io.PrintWriter;
+
+import csc426.AST.Type;
+import csc426.FlatAST.Kind;
+import csc426.OffsetInformation.*;
+
+/**
+ * Generates code for a program in flat form, the counterpart of
+ * CodeGenerator, with the same output. The types of the expressions are read
+ * from a FlatTypeChecker that has checked the program. It is driven by a
+ * FlatTraversal: what CodeGenerator schedules as a step of its own is here a
+ * later state of the node, and the labels a node needs in that state are
+ * kept by node id.
+ */
+public class FlatCodeGenerator implements FlatVisitor<Void> {
+	/**
+	 * The states of an expression: the code to leave its value on the stack
+	 * is generated in state VALUE, and finished in state AFTER; its jumping
+	 * code is generated in state JUMP, and for a BinOp finished in state LEFT
+	 * (after the left operand of And or Or) or COMPARE (after both operands of
+	 * a comparison). An Id is visited in state LVALUE for its address.
+	 */
+	private static final int VALUE = 0, AFTER = 1, JUMP = 2, LEFT = 3, COMPARE = 4, LVALUE = 5;
+
+	private final FlatAST ast;
+	private final FlatTypeChecker types;
+	private final PrintWriter fileout;
+	private final SymbolTable<OffsetInformation> table;
+	private final FlatTraversal traversal;
+	private final int[] labels; // the first label a node allocated, by node id
+	private final int[] yes; // where the jumping code of an expression goes
+	private final int[] no;
+	private int currentLabel;
+
+	/**
+	 * @param ast
+	 *            the program
+	 * @param types
+	 *            a checker that has checked it
+	 * @param fileout
+	 *            where the code is written
+	 */
+	public FlatCodeGenerator(FlatAST ast, FlatTypeChecker types, PrintWriter fileout) {
+		this.ast = ast;
+		this.types = types;
+		this.fileout = fileout;
+		this.table = new SymbolTable<>();
+		this.traversal = new FlatTraversal(ast, this);
+		this.labels = new int[ast.size()];
+		this.yes = new int[ast.size()];
+		this.no = new int[ast.size()];
+	}
+
+	/**
+	 * Generate the code for the program.
+	 */
+	public void generate() {
+		traversal.run(ast.root());
+	}
+
+	/**
+	 * A procedure: its label, and its list of parameters.
+	 */
+	private static final class FlatProcInfo extends OffsetInformation {
+		final String label;
+		final int params;
+
+		FlatProcInfo(String label, int params) {
+			this.label = label;
+			this.params = params;
+		}
+
+		@Override
+		public String label() {
+			return label;
+		}
+	}
+
+	private OffsetInformation lookup(int use) {
+		try {
+			return table.lookup(ast.id(use));
+		} catch (TableError e) {
+			throw new CodeGeneratorError(e.getMessage(), ast, use);
+		}
+	}
+
+	private void add(int decl, OffsetInformation info) {
+		try {
+			table.add(ast.id(decl), info);
+		} catch (TableError e) {
+			throw new CodeGeneratorError(e.getMessage(), ast, decl);
+		}
+	}
+
+	private String label() {
+		return "_" + currentLabel++;
+	}
+
+	private static String label(int label) {
+		return "_" + label;
+	}
+
+	public Void visitProgram(FlatAST ast, int program) {
+		if (traversal.state() == 0) {
+			this.currentLabel = 0;
+			table.enter(ast.id(program));
+			traversal.visit(ast.block(program));
+			traversal.resume(1);
+		} else {
+			table.exit();
+			fileout.println("HALT");
+		}
+		return null;
+	}
+
+	/**
+	 * In state 0 the declarations are entered and the procedures scheduled;
+	 * the code to enter the block is written in state 1, after the
+	 * procedures, and the code to leave it in state 2, after the statements.
+	 */
+	public Void visitBlock(FlatAST ast, int block) {
+		int n = ast.length(ast.vars(block));
+		int l = table.level();
+		switch (traversal.state()) {
+		case 0:
+			labels[block] = currentLabel;
+			fileout.println("BRANCH " + label());
+
+			int consts = ast.consts(block);
+			for (int i = 0; i < ast.length(consts); ++i) {
+				int decl = ast.get(consts, i);
+				add(decl, new ConstInfo(ast.value(decl)));
+			}
+			table.setOffset(0);
+			int vars = ast.vars(block);
+			for (int i = 0; i < ast.length(vars); ++i) {
+				table.setOffset(table.getOffset() - 1);
+				add(ast.get(vars, i), new VarInfo(table.level(), table.getOffset()));
+			}
+			int procs = ast.procs(block);
+			for (int i = 0; i < ast.length(procs); ++i) {
+				int decl = ast.get(procs, i);
+				add(decl, new FlatProcInfo(label(), ast.params(decl)));
+			}
+			traversal.visitAll(procs);
+			traversal.resume(1);
+			traversal.visitAll(ast.stmts(block));
+			traversal.resume(2);
+			break;
+		case 1:
+			fileout.println("LABEL " + label(labels[block]));
+			fileout.println("ENTER " + l);
+			fileout.println("RESERVE " + n);
+			break;
+		default:
+			fileout.println("DROP " + n);
+			fileout.println("EXIT " + l);
+		}
+		return null;
+	}
+
+	public Void visitConstDecl(FlatAST ast, int decl) {
+		return null;
+	}
+
+	public Void visitVarDecl(FlatAST ast, int decl) {
+		return null;
+	}
+
+	public Void visitProcDecl(FlatAST ast, int decl) {
+		if (traversal.state() == 0) {
+			OffsetInformation info = lookup(decl);
+			table.enter(ast.id(decl));
+			table.setParamOffset(1);
+
+			int params = ast.params(decl);
+			for (int i = ast.length(params) - 1; i >= 0; --i) {
+				int param = ast.get(params, i);
+				table.setParamOffset(table.getParamOffset() + 1);
+				if (ast.kind(param) == Kind.Var) {
+					add(param, new RefInfo(table.level(), table.getParamOffset()));
+				} else {
+					add(param, new VarInfo(table.level(), table.getParamOffset()));
+				}
+			}
+
+			try {
+				fileout.println("LABEL " + info.label());
+			} catch (OffsetInformationError e) {
+				throw new CodeGeneratorError(e.getMessage(), ast, decl);
+			}
+			traversal.visit(ast.block(decl));
+			traversal.resume(1);
+		} else {
+			fileout.println("RETURN");
+			table.exit();
+		}
+		return null;
+	}
+
+	public Void visitVal(FlatAST ast, int param) {
+		return null;
+	}
+
+	public Void visitVar(FlatAST ast, int param) {
+		return null;
+	}
+
+	/**
+	 * Write the code to leave the address of a variable on the stack.
+	 */
+	private void lvalue(String id) {
+		try {
+			OffsetInformation i = table.lookup(id);
+			fileout.println("ADDRESS " + i.levelValue() + ", " + i.offsetValue());
+
+			if (i instanceof RefInfo) {
+				fileout.println("LOAD");
+			}
+		} catch (TableError | OffsetInformationError e) {
+			throw new CodeGeneratorError(e.getMessage() + " in lvalue on " + id, null);
+		}
+	}
+
+	public Void visitAssign(FlatAST ast, int stmt) {
+		if (traversal.state() == 0) {
+			traversal.visit(ast.expr(stmt));
+			traversal.resume(1);
+		} else {
+			lvalue(ast.id(stmt));
+			fileout.println("STORE");
+		}
+		return null;
+	}
+
+	/**
+	 * In state 0 the arguments are scheduled: the value of each value
+	 * parameter, and the address of each var parameter; the call is written
+	 * in state 1.
+	 */
+	public Void visitCall(FlatAST ast, int stmt) {
+		OffsetInformation info = lookup(stmt);
+		if (!(info instanceof FlatProcInfo)) {
+			throw new CodeGeneratorError("The Information object is not a Proc Type", ast, stmt);
+		}
+		FlatProcInfo proc = (FlatProcInfo) info;
+		int params = proc.params;
+		if (traversal.state() == 0) {
+			int args = ast.args(stmt);
+			for (int i = 0; i < ast.length(params); ++i) {
+				int arg = ast.get(args, i);
+				if (ast.kind(ast.get(params, i)) == Kind.Val) {
+					traversal.visit(arg);
+				} else {
+					traversal.visit(arg, LVALUE);
+				}
+			}
+			traversal.resume(1);
+		} else {
+			fileout.println("CALL " + proc.label);
+			fileout.println("DROP " + ast.length(params));
+		}
+		return null;
+	}
+
+	public Void visitSequence(FlatAST ast, int stmt) {
+		traversal.visitAll(ast.stmts(stmt));
+		return null;
+	}
+
+	/**
+	 * Schedule the jumping code for a boolean expression: control continues
+	 * at label y if the expression is true and at label n if it is false.
+	 */
+	private void jump(int expr, int y, int n) {
+		yes[expr] = y;
+		no[expr] = n;
+		traversal.visit(expr, JUMP);
+	}
+
+	public Void visitIfThen(FlatAST ast, int stmt) {
+		int y = labels[stmt], n = y + 1;
+		switch (traversal.state()) {
+		case 0:
+			labels[stmt] = currentLabel;
+			currentLabel += 2;
+			jump(ast.test(stmt), labels[stmt], labels[stmt] + 1);
+			traversal.resume(1);
+			traversal.visit(ast.trueClause(stmt));
+			traversal.resume(2);
+			break;
+		case 1:
+			fileout.println("LABEL " + label(y));
+			break;
+		default:
+			fileout.println("LABEL " + label(n));
+		}
+		return null;
+	}
+
+	public Void visitIfThenElse(FlatAST ast, int stmt) {
+		int y = labels[stmt], n = y + 1, s = y + 2;
+		switch (traversal.state()) {
+		case 0:
+			labels[stmt] = currentLabel;
+			currentLabel += 3;
+			jump(ast.test(stmt), labels[stmt], labels[stmt] + 1);
+			traversal.resume(1);
+			traversal.visit(ast.trueClause(stmt));
+			traversal.resume(2);
+			traversal.visit(ast.falseClause(stmt));
+			traversal.resume(3);
+			break;
+		case 1:
+			fileout.println("LABEL " + label(y));
+			break;
+		case 2:
+			fileout.println("BRANCH " + label(s));
+			fileout.println("LABEL " + label(n));
+			break;
+		default:
+			fileout.println("LABEL " + label(s));
+		}
+		return null;
+	}
+
+	public Void visitWhile(FlatAST ast, int stmt) {
+		int y = labels[stmt], n = y + 1, s = y + 2;
+		switch (traversal.state()) {
+		case 0:
+			labels[stmt] = currentLabel;
+			currentLabel += 3;
+			fileout.println("LABEL " + label(labels[stmt] + 2));
+			jump(ast.test(stmt), labels[stmt], labels[stmt] + 1);
+			traversal.resume(1);
+			traversal.visit(ast.body(stmt));
+			traversal.resume(2);
+			break;
+		case 1:
+			fileout.println("LABEL " + label(y));
+			break;
+		default:
+			fileout.println("BRANCH " + label(s));
+			fileout.println("LABEL " + label(n));
+		}
+		return null;
+	}
+
+	private void print(String s) {
+		for (char c : s.toCharArray()) {
+			fileout.println("CONSTANT " + c);
+			fileout.println("WRITECHAR");
+		}
+	}
+
+	public Void visitPrompt(FlatAST ast, int stmt) {
+		print(ast.message(stmt));
+		fileout.println("READLINE");
+		return null;
+	}
+
+	public Void visitPrompt2(FlatAST ast, int stmt) {
+		print(ast.message(stmt) + " ");
+		fileout.println("READINT");
+		lvalue(ast.id(stmt));
+		fileout.println("STORE");
+		return null;
+	}
+
+	public Void visitPrint(FlatAST ast, int stmt) {
+		if (traversal.state() == 0) {
+			traversal.visitAll(ast.items(stmt));
+			traversal.resume(1);
+		} else {
+			fileout.println("WRITELINE");
+		}
+		return null;
+	}
+
+	public Void visitExprItem(FlatAST ast, int item) {
+		if (traversal.state() == 0) {
+			traversal.visit(ast.expr(item));
+			traversal.resume(1);
+		} else {
+			fileout.println("WRITEINT");
+		}
+		return null;
+	}
+
+	public Void visitStringItem(FlatAST ast, int item) {
+		print(ast.message(item));
+		return null;
+	}
+
+	/**
+	 * @return the type of expr, as recorded by the FlatTypeChecker
+	 */
+	private Type type(int expr) {
+		Type type = types.typeOf(expr);
+		if (type == null) {
+			throw new CodeGeneratorError("Expression has not been type checked", ast, expr);
+		}
+		return type;
+	}
+
+	/**
+	 * Schedule code to leave 1 or 0 on the stack for a boolean operation,
+	 * using its jumping code; the rest is written in state AFTER (see
+	 * boolAfter).
+	 */
+	private void bool(int expr) {
+		int y = currentLabel;
+		currentLabel += 3;
+		jump(expr, y, y + 1);
+		traversal.resume(AFTER);
+	}
+
+	private void boolAfter(int expr) {
+		int y = yes[expr], n = y + 1, s = y + 2;
+		fileout.println("LABEL " + label(y));
+		fileout.println("CONSTANT 1");
+		fileout.println("BRANCH " + label(s));
+		fileout.println("LABEL " + label(n));
+		fileout.println("CONSTANT 0");
+		fileout.println("LABEL " + label(s));
+	}
+
+	public Void visitBinOp(FlatAST ast, int expr) {
+		switch (traversal.state()) {
+		case VALUE:
+			if (type(expr) == Type.Bool) {
+				bool(expr);
+				return null;
+			}
+			traversal.visit(ast.left(expr));
+			traversal.visit(ast.right(expr));
+			traversal.resume(AFTER);
+			break;
+		case AFTER:
+			if (type(expr) == Type.Bool) {
+				boolAfter(expr);
+				return null;
+			}
+			switch (ast.op2(expr)) {
+			case Plus:
+				fileout.println("ADD");
+				break;
+			case Minus:
+				fileout.println("SUB");
+				break;
+			case Times:
+				fileout.println("MUL");
+				break;
+			case Div:
+				fileout.println("DIV");
+				break;
+			case Mod:
+				fileout.println("MOD");
+				break;
+			default:
+				throw new CodeGeneratorError("Unknown operator", ast, expr);
+			}
+			break;
+		case JUMP:
+			jumpBinOp(expr);
+			break;
+		case LEFT:
+			fileout.println("LABEL " + label(labels[expr]));
+			break;
+		default:
+			compare(expr);
+		}
+		return null;
+	}
+
+	/**
+	 * Generate the jumping code for a boolean BinOp: And and Or jump on each
+	 * operand, with a label between them; a comparison subtracts its operands
+	 * and is finished in state COMPARE.
+	 */
+	private void jumpBinOp(int expr) {
+		if (type(expr) != Type.Bool) {
+			throw new CodeGeneratorError("Boolean expression required", ast, expr);
+		}
+		int lhs = ast.left(expr), rhs = ast.right(expr);
+		int y = yes[expr], n = no[expr];
+		switch (ast.op2(expr)) {
+		case And:
+			labels[expr] = currentLabel++;
+			jump(lhs, labels[expr], n);
+			traversal.resume(LEFT);
+			jump(rhs, y, n);
+			break;
+		case Or:
+			labels[expr] = currentLabel++;
+			jump(lhs, y, labels[expr]);
+			traversal.resume(LEFT);
+			jump(rhs, y, n);
+			break;
+		case EQ:
+		case NE:
+		case LT:
+		case GE:
+			traversal.visit(lhs);
+			traversal.visit(rhs);
+			traversal.resume(COMPARE);
+			break;
+		case GT:
+		case LE:
+			traversal.visit(rhs);
+			traversal.visit(lhs);
+			traversal.resume(COMPARE);
+			break;
+		default:
+			throw new CodeGeneratorError("Unknown operator", ast, expr);
+		}
+	}
+
+	private void compare(int expr) {
+		String y = label(yes[expr]), n = label(no[expr]);
+		fileout.println("SUB");
+		switch (ast.op2(expr)) {
+		case EQ:
+			fileout.println("BRANCHZERO " + y);
+			fileout.println("BRANCH " + n);
+			break;
+		case NE:
+			fileout.println("BRANCHZERO " + n);
+			fileout.println("BRANCH " + y);
+			break;
+		case LT:
+		case GT:
+			fileout.println("BRANCHNEG " + y);
+			fileout.println("BRANCH " + n);
+			break;
+		default:
+			fileout.println("BRANCHNEG " + n);
+			fileout.println("BRANCH " + y);
+		}
+	}
+
+	public Void visitUnOp(FlatAST ast, int expr) {
+		switch (traversal.state()) {
+		case VALUE:
+			if (type(expr) == Type.Bool) {
+				bool(expr);
+				return null;
+			}
+			switch (ast.op1(expr)) {
+			case Neg:
+				fileout.println("CONSTANT 0");
+				traversal.visit(ast.expr(expr));
+				traversal.resume(AFTER);
+				break;
+			default:
+				throw new CodeGeneratorError("Unknown operator", ast, expr);
+			}
+			break;
+		case AFTER:
+			if (type(expr) == Type.Bool) {
+				boolAfter(expr);
+			} else {
+				fileout.println("SUB");
+			}
+			break;
+		default:
+			if (type(expr) != Type.Bool) {
+				throw new CodeGeneratorError("Boolean expression required", ast, expr);
+			}
+			jump(ast.expr(expr), no[expr], yes[expr]);
+		}
+		return null;
+	}
+
+	public Void visitNum(FlatAST ast, int expr) {
+		if (traversal.state() == JUMP) {
+			throw new CodeGeneratorError("Boolean expression required", ast, expr);
+		}
+		fileout.println("CONSTANT " + ast.value(expr));
+		return null;
+	}
+
+	/**
+	 * In state JUMP a boolean variable is loaded and tested.
+	 */
+	public Void visitId(FlatAST ast, int expr) {
+		int state = traversal.state();
+		if (state == LVALUE) {
+			lvalue(ast.id(expr));
+			return null;
+		}
+		if (state == JUMP && type(expr) != Type.Bool) {
+			throw new CodeGeneratorError("Boolean expression required", ast, expr);
+		}
+
+		OffsetInformation i = lookup(expr);
+		try {
+			if (i instanceof ConstInfo) {
+				fileout.println("CONSTANT " + i.intValue());
+			} else {
+				lvalue(ast.id(expr));
+				fileout.println("LOAD");
+			}
+		} catch (OffsetInformationError e) {
+			throw new CodeGeneratorError(e.getMessage(), ast, expr);
+		}
+
+		if (state == JUMP) {
+			fileout.println("BRANCHZERO " + label(no[expr]));
+			fileout.println("BRANCH " + label(yes[expr]));
+		}
+		return null;
+	}
+
+	public Void visitTrue(FlatAST ast, int expr) {
+		if (traversal.state() == JUMP) {
+			fileout.println("BRANCH " + label(yes[expr]));
+		} else {
+			fileout.println("CONSTANT 1");
+		}
+		return null;
+	}
+
+	public Void visitFalse(FlatAST ast, int expr) {
+		if (traversal.state() == JUMP) {
+			fileout.println("BRANCH " + label(no[expr]));
+		} else {
+			fileout.println("CONSTANT 0");
+		}
+		return null;
+	}
+}
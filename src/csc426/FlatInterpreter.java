@@ -0,0 +1,500 @@
+package csc426;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Scanner;
+
+import csc426.AST.Op1;
+import csc426.AST.Op2;
+import csc426.FlatAST.Kind;
+import csc426.Value.BoolCell;
+import csc426.Value.BoolValue;
+import csc426.Value.IntCell;
+import csc426.Value.IntValue;
+
+/**
+ * Runs a program in flat form, the counterpart of InterpreterVisitor, with
+ * the same output and errors. The program is first resolved (see
+ * FlatResolver), and each name is then found in a Frame by following the
+ * static links and indexing its slot. It is driven by a FlatTraversal, so
+ * neither deep trees nor deep recursion in the program use the Java stack.
+ */
+public class FlatInterpreter implements FlatVisitor<Void> {
+	/**
+	 * The state in which a block is visited to end a call.
+	 */
+	private static final int RETURN = 1;
+
+	private final FlatAST ast;
+	private final Scanner input;
+	private final PrintStream output;
+	private final FlatTraversal traversal;
+	private FlatResolver names;
+	private Frame frame; // of the innermost procedure (or program) running
+	private Frame[] callers; // the frames to return to
+	private int callerCount;
+	private Value[] values; // of the expressions evaluated and not yet used
+	private int valueCount;
+
+	public FlatInterpreter(FlatAST ast, Scanner input, PrintStream output) {
+		this.ast = ast;
+		this.input = input;
+		this.output = output;
+		this.traversal = new FlatTraversal(ast, this);
+		this.callers = new Frame[16];
+		this.callerCount = 0;
+		this.values = new Value[16];
+		this.valueCount = 0;
+	}
+
+	/**
+	 * Run the program.
+	 */
+	public void run() {
+		traversal.run(ast.root());
+	}
+
+	/**
+	 * A procedure declared in a frame, which will be the static link of the
+	 * frame of each call.
+	 */
+	private static final class Procedure extends Value {
+		final int decl;
+		final Frame scope;
+
+		Procedure(int decl, Frame scope) {
+			this.decl = decl;
+			this.scope = scope;
+		}
+	}
+
+	private void push(Value value) {
+		if (valueCount == values.length) {
+			values = Arrays.copyOf(values, 2 * valueCount);
+		}
+		values[valueCount++] = value;
+	}
+
+	/**
+	 * @return the value of the expression evaluated last and not yet used
+	 */
+	private Value pop() {
+		Value value = values[--valueCount];
+		values[valueCount] = null;
+		return value;
+	}
+
+	/**
+	 * @return the frame slot holding the name used
+	 */
+	private Value lookup(int use) {
+		return frame.up(names.depth(use)).slots[names.slot(use)];
+	}
+
+	/**
+	 * Evaluate expr now, leaving its value on the stack, if it is a leaf or an
+	 * operator applied to leaves, or else schedule it (see
+	 * InterpreterVisitor.evaluate).
+	 *
+	 * @param expr
+	 * @return true if the value of expr is on the stack
+	 */
+	private boolean evaluate(int expr) {
+		Kind kind = ast.kind(expr);
+		if (kind == Kind.BinOp) {
+			if (!leaf(ast.left(expr)) || !leaf(ast.right(expr))) {
+				traversal.visit(expr);
+				return false;
+			}
+			try {
+				push(apply(expr, value(ast.left(expr)), value(ast.right(expr))));
+			} catch (ValueError e) {
+				throw new InterpreterError(e.getMessage(), ast, expr);
+			}
+		} else if (kind == Kind.UnOp) {
+			if (!leaf(ast.expr(expr))) {
+				traversal.visit(expr);
+				return false;
+			}
+			try {
+				push(apply(expr, value(ast.expr(expr))));
+			} catch (ValueError e) {
+				throw new InterpreterError(e.getMessage(), ast, expr);
+			}
+		} else {
+			push(value(expr));
+		}
+		return true;
+	}
+
+	private boolean leaf(int expr) {
+		Kind kind = ast.kind(expr);
+		return kind != Kind.BinOp && kind != Kind.UnOp;
+	}
+
+	/**
+	 * @param leaf
+	 * @return the value of a Num, Id, True or False
+	 */
+	private Value value(int leaf) {
+		switch (ast.kind(leaf)) {
+		case Num:
+			return new IntValue(ast.value(leaf));
+		case Id:
+			return lookup(leaf);
+		default:
+			return new BoolValue(ast.kind(leaf) == Kind.True);
+		}
+	}
+
+	public Void visitProgram(FlatAST ast, int program) {
+		names = FlatResolver.resolve(ast);
+		frame = new Frame(null, FlatResolver.declarations(ast, ast.block(program)));
+		traversal.visit(ast.block(program));
+		return null;
+	}
+
+	public Void visitBlock(FlatAST ast, int block) {
+		if (traversal.state() == RETURN) {
+			frame = callers[--callerCount];
+			callers[callerCount] = null;
+			return null;
+		}
+
+		int slot = 0;
+		int consts = ast.consts(block);
+		for (int i = 0; i < ast.length(consts); ++i) {
+			frame.slots[slot++] = new IntValue(ast.value(ast.get(consts, i)));
+		}
+		int vars = ast.vars(block);
+		for (int i = 0; i < ast.length(vars); ++i) {
+			frame.slots[slot++] = cell(ast.get(vars, i));
+		}
+		int procs = ast.procs(block);
+		for (int i = 0; i < ast.length(procs); ++i) {
+			frame.slots[slot++] = new Procedure(ast.get(procs, i), frame);
+		}
+		traversal.visitAll(ast.stmts(block));
+		return null;
+	}
+
+	/**
+	 * @return a new, uninitialized variable of the type of decl
+	 */
+	private Value cell(int decl) {
+		switch (ast.type(decl)) {
+		case Bool:
+			return new BoolCell();
+		default:
+			return new IntCell();
+		}
+	}
+
+	public Void visitConstDecl(FlatAST ast, int decl) {
+		return null;
+	}
+
+	public Void visitVarDecl(FlatAST ast, int decl) {
+		return null;
+	}
+
+	public Void visitProcDecl(FlatAST ast, int decl) {
+		return null;
+	}
+
+	public Void visitVal(FlatAST ast, int param) {
+		return null;
+	}
+
+	public Void visitVar(FlatAST ast, int param) {
+		return null;
+	}
+
+	public Void visitAssign(FlatAST ast, int stmt) {
+		if (traversal.state() == 0 && !evaluate(ast.expr(stmt))) {
+			traversal.resume(1);
+			return null;
+		}
+
+		try {
+			lookup(stmt).set(pop());
+		} catch (ValueError e) {
+			throw new InterpreterError(e.getMessage(), ast, stmt);
+		}
+		return null;
+	}
+
+	/**
+	 * In state 0 the arguments are to be evaluated; in state 1 their values
+	 * are ready, and the body of the procedure is scheduled in a new frame,
+	 * whose slots for the parameters are filled from them.
+	 */
+	public Void visitCall(FlatAST ast, int stmt) {
+		int args = ast.args(stmt);
+		if (traversal.state() == 0) {
+			traversal.visitAll(args);
+			traversal.resume(1);
+			return null;
+		}
+
+		int n = ast.length(args);
+		int first = valueCount - n;
+		try {
+			Value value = lookup(stmt);
+			if (!(value instanceof Procedure)) {
+				throw new ValueError("Procedure Required");
+			}
+			Procedure proc = (Procedure) value;
+			int params = ast.params(proc.decl);
+			if (n != ast.length(params)) {
+				throw new ValueError("Wrong number of arguments");
+			}
+
+			int block = ast.block(proc.decl);
+			int slot = FlatResolver.declarations(ast, block);
+			Frame callee = new Frame(proc.scope, slot + n);
+			for (int i = 0; i < n; ++i) {
+				int param = ast.get(params, i);
+				Value arg = values[first + i];
+				if (ast.kind(param) == Kind.Var) {
+					callee.slots[slot++] = arg;
+				} else {
+					Value cell = cell(param);
+					cell.set(arg);
+					callee.slots[slot++] = cell;
+				}
+			}
+			while (valueCount > first) {
+				pop();
+			}
+
+			if (callerCount == callers.length) {
+				callers = Arrays.copyOf(callers, 2 * callerCount);
+			}
+			callers[callerCount++] = frame;
+			frame = callee;
+			traversal.visit(block);
+			traversal.visit(block, RETURN);
+		} catch (ValueError e) {
+			throw new InterpreterError(e.getMessage(), ast, stmt);
+		}
+		return null;
+	}
+
+	public Void visitSequence(FlatAST ast, int stmt) {
+		traversal.visitAll(ast.stmts(stmt));
+		return null;
+	}
+
+	public Void visitIfThen(FlatAST ast, int stmt) {
+		if (traversal.state() == 0 && !evaluate(ast.test(stmt))) {
+			traversal.resume(1);
+			return null;
+		}
+
+		Value test = pop();
+		try {
+			if (test.boolValue()) {
+				traversal.visit(ast.trueClause(stmt));
+			}
+		} catch (ValueError e) {
+			throw new InterpreterError(e.getMessage(), ast, stmt);
+		}
+		return null;
+	}
+
+	public Void visitIfThenElse(FlatAST ast, int stmt) {
+		if (traversal.state() == 0 && !evaluate(ast.test(stmt))) {
+			traversal.resume(1);
+			return null;
+		}
+
+		Value test = pop();
+		try {
+			if (test.boolValue()) {
+				traversal.visit(ast.trueClause(stmt));
+			} else {
+				traversal.visit(ast.falseClause(stmt));
+			}
+		} catch (ValueError e) {
+			throw new InterpreterError(e.getMessage(), ast, stmt);
+		}
+		return null;
+	}
+
+	/**
+	 * In state 0 the test is to be evaluated; in state 1 its value is ready,
+	 * and if it is true the body runs and the loop returns to state 0.
+	 */
+	public Void visitWhile(FlatAST ast, int stmt) {
+		if (traversal.state() == 0 && !evaluate(ast.test(stmt))) {
+			traversal.resume(1);
+			return null;
+		}
+
+		Value test = pop();
+		try {
+			if (test.boolValue()) {
+				traversal.visit(ast.body(stmt));
+				traversal.resume(0);
+			}
+		} catch (ValueError e) {
+			throw new InterpreterError(e.getMessage(), ast, stmt);
+		}
+		return null;
+	}
+
+	public Void visitPrompt(FlatAST ast, int stmt) {
+		output.print(ast.message(stmt));
+		input.nextLine();
+		return null;
+	}
+
+	public Void visitPrompt2(FlatAST ast, int stmt) {
+		try {
+			Value lhs = lookup(stmt);
+			output.print(ast.message(stmt) + " ");
+			String line = input.nextLine();
+			lhs.set(new IntValue(Integer.parseInt(line)));
+		} catch (NumberFormatException e) {
+			throw new InterpreterError(e.getMessage(), ast, stmt);
+		} catch (ValueError e) {
+			throw new InterpreterError(e.getMessage(), ast, stmt);
+		}
+		return null;
+	}
+
+	public Void visitPrint(FlatAST ast, int stmt) {
+		if (traversal.state() == 0) {
+			traversal.visitAll(ast.items(stmt));
+			traversal.resume(1);
+		} else {
+			output.println();
+		}
+		return null;
+	}
+
+	public Void visitExprItem(FlatAST ast, int item) {
+		if (traversal.state() == 0 && !evaluate(ast.expr(item))) {
+			traversal.resume(1);
+			return null;
+		}
+
+		Value value = pop();
+		try {
+			output.print(value.intValue());
+		} catch (ValueError e) {
+			throw new InterpreterError(e.getMessage(), ast, item);
+		}
+		return null;
+	}
+
+	public Void visitStringItem(FlatAST ast, int item) {
+		output.print(ast.message(item));
+		return null;
+	}
+
+	public Void visitBinOp(FlatAST ast, int expr) {
+		if (traversal.state() == 0) {
+			if (!evaluate(ast.left(expr))) {
+				traversal.visit(ast.right(expr));
+				traversal.resume(1);
+				return null;
+			}
+			if (!evaluate(ast.right(expr))) {
+				traversal.resume(1);
+				return null;
+			}
+		}
+
+		Value rhs = pop();
+		Value lhs = pop();
+		try {
+			push(apply(expr, lhs, rhs));
+		} catch (ValueError e) {
+			throw new InterpreterError(e.getMessage(), ast, expr);
+		}
+		return null;
+	}
+
+	private Value apply(int expr, Value lhs, Value rhs) throws ValueError {
+		Op2 op = ast.op2(expr);
+		switch (op) {
+		case And:
+			return new BoolValue(lhs.boolValue() && rhs.boolValue());
+		case Div:
+			return new IntValue(lhs.intValue() / rhs.intValue());
+		case EQ:
+			return new BoolValue(lhs.intValue() == rhs.intValue());
+		case GE:
+			return new BoolValue(lhs.intValue() >= rhs.intValue());
+		case GT:
+			return new BoolValue(lhs.intValue() > rhs.intValue());
+		case LE:
+			return new BoolValue(lhs.intValue() <= rhs.intValue());
+		case LT:
+			return new BoolValue(lhs.intValue() < rhs.intValue());
+		case Minus:
+			return new IntValue(lhs.intValue() - rhs.intValue());
+		case Mod:
+			return new IntValue(lhs.intValue() % rhs.intValue());
+		case NE:
+			return new BoolValue(lhs.intValue() != rhs.intValue());
+		case Or:
+			return new BoolValue(lhs.boolValue() || rhs.boolValue());
+		case Plus:
+			return new IntValue(lhs.intValue() + rhs.intValue());
+		case Times:
+			return new IntValue(lhs.intValue() * rhs.intValue());
+		default:
+			throw new InterpreterError("Unknown operator", ast, expr);
+		}
+	}
+
+	public Void visitUnOp(FlatAST ast, int expr) {
+		if (traversal.state() == 0 && !evaluate(ast.expr(expr))) {
+			traversal.resume(1);
+			return null;
+		}
+
+		Value value = pop();
+		try {
+			push(apply(expr, value));
+		} catch (ValueError e) {
+			throw new InterpreterError(e.getMessage(), ast, expr);
+		}
+		return null;
+	}
+
+	private Value apply(int expr, Value value) throws ValueError {
+		Op1 op = ast.op1(expr);
+		switch (op) {
+		case Neg:
+			return new IntValue(-value.intValue());
+		case Not:
+			return new BoolValue(!value.boolValue());
+		default:
+			throw new InterpreterError("Unknown operator", ast, expr);
+		}
+	}
+
+	public Void visitNum(FlatAST ast, int expr) {
+		push(value(expr));
+		return null;
+	}
+
+	public Void visitId(FlatAST ast, int expr) {
+		push(value(expr));
+		return null;
+	}
+
+	public Void visitTrue(FlatAST ast, int expr) {
+		push(value(expr));
+		return null;
+	}
+
+	public Void visitFalse(FlatAST ast, int expr) {
+		push(value(expr));
+		return null;
+	}
+}
@@ -0,0 +1,231 @@
+package csc426;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binds each use of a name in a program in flat form to its declaration, the
+ * counterpart of Resolver: the depth and slot of each Id, Assign, Call and
+ * Prompt2 are recorded by node id (see depth and slot), numbered as by
+ * Resolver. Duplicate and unknown names are reported as ResolveErrors.
+ */
+public class FlatResolver implements FlatVisitor<Void> {
+	private final FlatAST ast;
+	private final List<Map<String, Integer>> scopes;
+	private final FlatTraversal traversal;
+	private final int[] depths; // by node id
+	private final int[] slots;
+
+	private FlatResolver(FlatAST ast) {
+		this.ast = ast;
+		this.scopes = new ArrayList<>();
+		this.traversal = new FlatTraversal(ast, this);
+		this.depths = new int[ast.size()];
+		this.slots = new int[ast.size()];
+	}
+
+	/**
+	 * Resolve the names in a program.
+	 *
+	 * @param ast
+	 * @return where each name used is declared
+	 */
+	public static FlatResolver resolve(FlatAST ast) {
+		FlatResolver resolver = new FlatResolver(ast);
+		resolver.traversal.run(ast.root());
+		return resolver;
+	}
+
+	/**
+	 * @param use
+	 *            an Id, Assign, Call or Prompt2
+	 * @return the number of static links to follow to the frame declaring the
+	 *         name used
+	 */
+	public int depth(int use) {
+		return depths[use];
+	}
+
+	/**
+	 * @param use
+	 *            an Id, Assign, Call or Prompt2
+	 * @return the slot of the name used in its frame
+	 */
+	public int slot(int use) {
+		return slots[use];
+	}
+
+	/**
+	 * @param ast
+	 * @param block
+	 * @return the number of slots for the declarations of block, which are
+	 *         followed by any parameters
+	 */
+	public static int declarations(FlatAST ast, int block) {
+		return ast.length(ast.consts(block)) + ast.length(ast.vars(block)) + ast.length(ast.procs(block));
+	}
+
+	private void declare(int decl, int slot) {
+		Map<String, Integer> scope = scopes.get(scopes.size() - 1);
+		String id = ast.id(decl);
+		if (scope.containsKey(id)) {
+			throw new ResolveError("Duplicate definition of " + id, ast, decl);
+		}
+		scope.put(id, slot);
+	}
+
+	private void declareAll(int list, int slot) {
+		for (int i = 0; i < ast.length(list); ++i) {
+			declare(ast.get(list, i), slot++);
+		}
+	}
+
+	private Void resolve(int use) {
+		String id = ast.id(use);
+		for (int i = scopes.size() - 1; i >= 0; --i) {
+			Integer found = scopes.get(i).get(id);
+			if (found != null) {
+				depths[use] = scopes.size() - 1 - i;
+				slots[use] = found;
+				return null;
+			}
+		}
+		throw new ResolveError("Unknown identifier " + id, ast, use);
+	}
+
+	public Void visitProgram(FlatAST ast, int program) {
+		if (traversal.state() == 0) {
+			scopes.add(new HashMap<>());
+			traversal.visit(ast.block(program));
+			traversal.resume(1);
+		} else {
+			scopes.remove(scopes.size() - 1);
+		}
+		return null;
+	}
+
+	public Void visitBlock(FlatAST ast, int block) {
+		int consts = ast.consts(block), vars = ast.vars(block), procs = ast.procs(block);
+		declareAll(consts, 0);
+		declareAll(vars, ast.length(consts));
+		declareAll(procs, ast.length(consts) + ast.length(vars));
+		traversal.visitAll(procs);
+		traversal.visitAll(ast.stmts(block));
+		return null;
+	}
+
+	public Void visitConstDecl(FlatAST ast, int decl) {
+		return null;
+	}
+
+	public Void visitVarDecl(FlatAST ast, int decl) {
+		return null;
+	}
+
+	public Void visitProcDecl(FlatAST ast, int decl) {
+		if (traversal.state() == 0) {
+			scopes.add(new HashMap<>());
+			declareAll(ast.params(decl), declarations(ast, ast.block(decl)));
+			traversal.visit(ast.block(decl));
+			traversal.resume(1);
+		} else {
+			scopes.remove(scopes.size() - 1);
+		}
+		return null;
+	}
+
+	public Void visitVal(FlatAST ast, int param) {
+		return null;
+	}
+
+	public Void visitVar(FlatAST ast, int param) {
+		return null;
+	}
+
+	public Void visitAssign(FlatAST ast, int stmt) {
+		resolve(stmt);
+		traversal.visit(ast.expr(stmt));
+		return null;
+	}
+
+	public Void visitCall(FlatAST ast, int stmt) {
+		resolve(stmt);
+		traversal.visitAll(ast.args(stmt));
+		return null;
+	}
+
+	public Void visitSequence(FlatAST ast, int stmt) {
+		traversal.visitAll(ast.stmts(stmt));
+		return null;
+	}
+
+	public Void visitIfThen(FlatAST ast, int stmt) {
+		traversal.visit(ast.test(stmt));
+		traversal.visit(ast.trueClause(stmt));
+		return null;
+	}
+
+	public Void visitIfThenElse(FlatAST ast, int stmt) {
+		traversal.visit(ast.test(stmt));
+		traversal.visit(ast.trueClause(stmt));
+		traversal.visit(ast.falseClause(stmt));
+		return null;
+	}
+
+	public Void visitWhile(FlatAST ast, int stmt) {
+		traversal.visit(ast.test(stmt));
+		traversal.visit(ast.body(stmt));
+		return null;
+	}
+
+	public Void visitPrompt(FlatAST ast, int stmt) {
+		return null;
+	}
+
+	public Void visitPrompt2(FlatAST ast, int stmt) {
+		return resolve(stmt);
+	}
+
+	public Void visitPrint(FlatAST ast, int stmt) {
+		traversal.visitAll(ast.items(stmt));
+		return null;
+	}
+
+	public Void visitExprItem(FlatAST ast, int item) {
+		traversal.visit(ast.expr(item));
+		return null;
+	}
+
+	public Void visitStringItem(FlatAST ast, int item) {
+		return null;
+	}
+
+	public Void visitBinOp(FlatAST ast, int expr) {
+		traversal.visit(ast.left(expr));
+		traversal.visit(ast.right(expr));
+		return null;
+	}
+
+	public Void visitUnOp(FlatAST ast, int expr) {
+		traversal.visit(ast.expr(expr));
+		return null;
+	}
+
+	public Void visitNum(FlatAST ast, int expr) {
+		return null;
+	}
+
+	public Void visitId(FlatAST ast, int expr) {
+		return resolve(expr);
+	}
+
+	public Void visitTrue(FlatAST ast, int expr) {
+		return null;
+	}
+
+	public Void visitFalse(FlatAST ast, int expr) {
+		return null;
+	}
+}
@@ -0,0 +1,131 @@
+package csc426;
+
+import java.util.Arrays;
+
+/**
+ * Drives a FlatVisitor over a FlatAST of any depth with a stack of steps of
+ * its own, the counterpart of Traversal. A step is the visit of a node in
+ * some state (0 at first). A visit schedules the children of its node with
+ * visit, and what is left to do after them as a later state of the same node
+ * with resume. The steps scheduled by one step run in the order they were
+ * scheduled, and before any step scheduled earlier, so the nodes are visited
+ * in the same order as by a recursive visitor.
+ */
+public class FlatTraversal {
+	/**
+	 * @param ast
+	 *            the tree whose nodes are visited
+	 * @param visitor
+	 *            the visitor whose methods are called for the nodes visited
+	 */
+	public FlatTraversal(FlatAST ast, FlatVisitor<?> visitor) {
+		this.ast = ast;
+		this.visitor = visitor;
+		this.steps = new int[64];
+		this.states = new int[64];
+		this.size = 0;
+		this.scheduled = 0;
+	}
+
+	/**
+	 * Visit root, and then every step scheduled from it, before returning.
+	 * This may be called from a step; it then runs only the steps scheduled
+	 * inside it. If a step throws, the steps left are dropped.
+	 *
+	 * @param root
+	 */
+	public void run(int root) {
+		int base = size;
+		int outerStep = step;
+		int outerState = state;
+		int outerScheduled = scheduled;
+		scheduled = size;
+		visit(root);
+		try {
+			while (size > base) {
+				--size;
+				step = steps[size];
+				state = states[size];
+				scheduled = size;
+				ast.accept(step, visitor);
+
+				// Run the new steps in the order they were scheduled
+				for (int i = scheduled, j = size - 1; i < j; ++i, --j) {
+					int swap = steps[i];
+					steps[i] = steps[j];
+					steps[j] = swap;
+					swap = states[i];
+					states[i] = states[j];
+					states[j] = swap;
+				}
+			}
+		} finally {
+			size = Math.min(size, base);
+			step = outerStep;
+			state = outerState;
+			scheduled = outerScheduled;
+		}
+	}
+
+	/**
+	 * Schedule a visit of node, in state 0.
+	 *
+	 * @param node
+	 */
+	public void visit(int node) {
+		visit(node, 0);
+	}
+
+	/**
+	 * Schedule a visit of node in the given state.
+	 *
+	 * @param node
+	 * @param state
+	 */
+	public void visit(int node, int state) {
+		if (size == steps.length) {
+			steps = Arrays.copyOf(steps, 2 * size);
+			states = Arrays.copyOf(states, 2 * size);
+		}
+		steps[size] = node;
+		states[size] = state;
+		++size;
+	}
+
+	/**
+	 * Schedule each node of a list of children (see FlatAST.length).
+	 *
+	 * @param list
+	 */
+	public void visitAll(int list) {
+		for (int i = 0; i < ast.length(list); ++i) {
+			visit(ast.get(list, i));
+		}
+	}
+
+	/**
+	 * Schedule the node being visited to be visited again, in the given
+	 * state.
+	 *
+	 * @param state
+	 */
+	public void resume(int state) {
+		visit(step, state);
+	}
+
+	/**
+	 * @return the state in which the node being visited was scheduled
+	 */
+	public int state() {
+		return state;
+	}
+
+	private final FlatAST ast;
+	private final FlatVisitor<?> visitor;
+	private int[] steps; // node ids
+	private int[] states;
+	private int size;
+	private int step; // the node being visited
+	private int state;
+	private int scheduled; // where the steps scheduled by the step running start
+}
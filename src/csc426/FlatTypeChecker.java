@@ -0,0 +1,396 @@
+package csc426;
+
+import java.util.Arrays;
+
+import csc426.AST.Type;
+import csc426.FlatAST.Kind;
+
+/**
+ * Checks the types of a program in flat form, the counterpart of TypeChecker:
+ * the same checks in the same order, so it throws the same errors. It is
+ * driven by a FlatTraversal; the type of each expression is left on a stack
+ * for its parent, and also recorded, by node id, for later passes (see
+ * typeOf). Procedures are checked sequentially.
+ */
+public class FlatTypeChecker implements FlatVisitor<Void> {
+	private final FlatAST ast;
+	private final SymbolTable<Symbol> table;
+	private final FlatTraversal traversal;
+	private final Type[] annotations; // by node id
+	private Type[] types; // of the expressions checked and not yet used
+	private int typeCount;
+
+	/**
+	 * @param ast
+	 *            the program to check
+	 */
+	public FlatTypeChecker(FlatAST ast) {
+		this.ast = ast;
+		this.table = new SymbolTable<>();
+		this.traversal = new FlatTraversal(ast, this);
+		this.annotations = new Type[ast.size()];
+		this.types = new Type[16];
+		this.typeCount = 0;
+	}
+
+	/**
+	 * Check the program.
+	 *
+	 * @throws TypeCheckError
+	 *             at the first error found
+	 */
+	public void check() {
+		traversal.run(ast.root());
+	}
+
+	/**
+	 * @param expr
+	 * @return the type of expr, once the program has been checked
+	 */
+	public Type typeOf(int expr) {
+		return annotations[expr];
+	}
+
+	/**
+	 * What is known about a name: the type of a constant or variable, or the
+	 * parameters of a procedure.
+	 */
+	private static final class Symbol {
+		final Type type; // null for a procedure
+		final boolean variable;
+		final int params; // the list of parameters, or -1 unless a procedure
+
+		Symbol(Type type, boolean variable, int params) {
+			this.type = type;
+			this.variable = variable;
+			this.params = params;
+		}
+	}
+
+	private void declare(Symbol symbol, int decl) {
+		try {
+			table.add(ast.id(decl), symbol);
+		} catch (TableError e) {
+			throw new TypeCheckError(e.getMessage(), ast, decl);
+		}
+	}
+
+	private Symbol lookup(int use) {
+		try {
+			return table.lookup(ast.id(use));
+		} catch (TableError e) {
+			throw new TypeCheckError(e.getMessage(), ast, use);
+		}
+	}
+
+	/**
+	 * @return the symbol for the name used, which must be a variable
+	 */
+	private Symbol variable(int use) {
+		Symbol symbol = lookup(use);
+		if (!symbol.variable) {
+			throw new TypeCheckError("Variable Required", ast, use);
+		}
+		return symbol;
+	}
+
+	/**
+	 * Record the type of expr, and leave it for its parent.
+	 */
+	private Void annotate(int expr, Type type) {
+		annotations[expr] = type;
+		if (typeCount == types.length) {
+			types = Arrays.copyOf(types, 2 * typeCount);
+		}
+		types[typeCount++] = type;
+		return null;
+	}
+
+	/**
+	 * @return the type of the expression checked last and not yet used
+	 */
+	private Type pop() {
+		return types[--typeCount];
+	}
+
+	/**
+	 * Check that the expression checked last has the expected type.
+	 */
+	private void expect(Type expected, String message, int context) {
+		if (pop() != expected) {
+			throw new TypeCheckError(message, ast, context);
+		}
+	}
+
+	public Void visitProgram(FlatAST ast, int program) {
+		if (traversal.state() == 0) {
+			table.enter(ast.id(program));
+			traversal.visit(ast.block(program));
+			traversal.resume(1);
+		} else {
+			table.exit();
+		}
+		return null;
+	}
+
+	public Void visitBlock(FlatAST ast, int block) {
+		int consts = ast.consts(block);
+		for (int i = 0; i < ast.length(consts); ++i) {
+			visitConstDecl(ast, ast.get(consts, i));
+		}
+		int vars = ast.vars(block);
+		for (int i = 0; i < ast.length(vars); ++i) {
+			visitVarDecl(ast, ast.get(vars, i));
+		}
+		int procs = ast.procs(block);
+		for (int i = 0; i < ast.length(procs); ++i) {
+			int decl = ast.get(procs, i);
+			declare(new Symbol(null, false, ast.params(decl)), decl);
+		}
+		traversal.visitAll(procs);
+		traversal.visitAll(ast.stmts(block));
+		return null;
+	}
+
+	public Void visitConstDecl(FlatAST ast, int decl) {
+		declare(new Symbol(Type.Int, false, -1), decl);
+		return null;
+	}
+
+	public Void visitVarDecl(FlatAST ast, int decl) {
+		declare(new Symbol(ast.type(decl), true, -1), decl);
+		return null;
+	}
+
+	public Void visitProcDecl(FlatAST ast, int decl) {
+		if (traversal.state() == 0) {
+			table.enter(ast.id(decl));
+			int params = ast.params(decl);
+			for (int i = 0; i < ast.length(params); ++i) {
+				int param = ast.get(params, i);
+				declare(new Symbol(ast.type(param), true, -1), param);
+			}
+			traversal.visit(ast.block(decl));
+			traversal.resume(1);
+		} else {
+			table.exit();
+		}
+		return null;
+	}
+
+	public Void visitVal(FlatAST ast, int param) {
+		return null;
+	}
+
+	public Void visitVar(FlatAST ast, int param) {
+		return null;
+	}
+
+	public Void visitAssign(FlatAST ast, int stmt) {
+		Symbol lhs = variable(stmt);
+		if (traversal.state() == 0) {
+			traversal.visit(ast.expr(stmt));
+			traversal.resume(1);
+		} else {
+			expect(lhs.type, "Not the same type.", stmt);
+		}
+		return null;
+	}
+
+	/**
+	 * In state i, the arguments before the i-th have been checked, and the
+	 * type of the last of them is waiting to be compared with its parameter.
+	 */
+	public Void visitCall(FlatAST ast, int stmt) {
+		Symbol proc = lookup(stmt);
+		int args = ast.args(stmt);
+		int i = traversal.state();
+		if (i == 0) {
+			if (proc.params < 0) {
+				throw new TypeCheckError("Procedure Required", ast, stmt);
+			}
+			if (ast.length(args) != ast.length(proc.params)) {
+				throw new TypeCheckError("Wrong number of arguments", ast, stmt);
+			}
+		} else {
+			int param = ast.get(proc.params, i - 1);
+			expect(ast.type(param), "Type mismatch in proc call, " + ast.id(param), stmt);
+		}
+
+		if (i < ast.length(args)) {
+			int param = ast.get(proc.params, i);
+			int arg = ast.get(args, i);
+			if (ast.kind(param) == Kind.Var) {
+				if (ast.kind(arg) != Kind.Id) {
+					throw new TypeCheckError("Variable Required for var parameter " + ast.id(param), ast, stmt);
+				}
+				variable(arg);
+			}
+			traversal.visit(arg);
+			traversal.resume(i + 1);
+		}
+		return null;
+	}
+
+	public Void visitSequence(FlatAST ast, int stmt) {
+		traversal.visitAll(ast.stmts(stmt));
+		return null;
+	}
+
+	public Void visitIfThen(FlatAST ast, int stmt) {
+		if (traversal.state() == 0) {
+			traversal.visit(ast.test(stmt));
+			traversal.resume(1);
+		} else {
+			expect(Type.Bool, "Boolean Value Required", stmt);
+			traversal.visit(ast.trueClause(stmt));
+		}
+		return null;
+	}
+
+	public Void visitIfThenElse(FlatAST ast, int stmt) {
+		if (traversal.state() == 0) {
+			traversal.visit(ast.test(stmt));
+			traversal.resume(1);
+		} else {
+			expect(Type.Bool, "Boolean Value Required", stmt);
+			traversal.visit(ast.trueClause(stmt));
+			traversal.visit(ast.falseClause(stmt));
+		}
+		return null;
+	}
+
+	public Void visitWhile(FlatAST ast, int stmt) {
+		if (traversal.state() == 0) {
+			traversal.visit(ast.test(stmt));
+			traversal.resume(1);
+		} else {
+			expect(Type.Bool, "Boolean Value Required", stmt);
+			traversal.visit(ast.body(stmt));
+		}
+		return null;
+	}
+
+	public Void visitPrompt(FlatAST ast, int stmt) {
+		return null;
+	}
+
+	public Void visitPrompt2(FlatAST ast, int stmt) {
+		if (variable(stmt).type != Type.Int) {
+			throw new TypeCheckError("Prompt Statements need Int IDs", ast, stmt);
+		}
+		return null;
+	}
+
+	public Void visitPrint(FlatAST ast, int stmt) {
+		traversal.visitAll(ast.items(stmt));
+		return null;
+	}
+
+	public Void visitExprItem(FlatAST ast, int item) {
+		if (traversal.state() == 0) {
+			traversal.visit(ast.expr(item));
+			traversal.resume(1);
+		} else {
+			expect(Type.Int, "Not an Int.", item);
+		}
+		return null;
+	}
+
+	public Void visitStringItem(FlatAST ast, int item) {
+		return null;
+	}
+
+	public Void visitBinOp(FlatAST ast, int expr) {
+		if (traversal.state() == 0) {
+			traversal.visit(ast.left(expr));
+			traversal.visit(ast.right(expr));
+			traversal.resume(1);
+			return null;
+		}
+
+		Type rhs = pop();
+		Type lhs = pop();
+		switch (ast.op2(expr)) {
+		case And:
+		case Or:
+			if (lhs == Type.Bool && rhs == Type.Bool) {
+				return annotate(expr, Type.Bool);
+			} else {
+				throw new TypeCheckError("Op Error", ast, expr);
+			}
+
+		case EQ:
+		case GE:
+		case GT:
+		case LE:
+		case LT:
+		case NE:
+			if (lhs == Type.Int && rhs == Type.Int) {
+				return annotate(expr, Type.Bool);
+			} else {
+				throw new TypeCheckError("Op Error", ast, expr);
+			}
+
+		case Minus:
+		case Mod:
+		case Plus:
+		case Times:
+		case Div:
+			if (lhs == Type.Int && rhs == Type.Int) {
+				return annotate(expr, Type.Int);
+			} else {
+				throw new TypeCheckError("Op Error", ast, expr);
+			}
+
+		default:
+			throw new TypeCheckError("Unknown operator", ast, expr);
+		}
+	}
+
+	public Void visitUnOp(FlatAST ast, int expr) {
+		if (traversal.state() == 0) {
+			traversal.visit(ast.expr(expr));
+			traversal.resume(1);
+			return null;
+		}
+
+		Type type = pop();
+		switch (ast.op1(expr)) {
+		case Neg:
+			if (type == Type.Int) {
+				return annotate(expr, Type.Int);
+			} else {
+				throw new TypeCheckError("Op Error", ast, expr);
+			}
+		case Not:
+			if (type == Type.Bool) {
+				return annotate(expr, Type.Bool);
+			} else {
+				throw new TypeCheckError("Op Error", ast, expr);
+			}
+		default:
+			throw new TypeCheckError("Unknown operator", ast, expr);
+		}
+	}
+
+	public Void visitNum(FlatAST ast, int expr) {
+		return annotate(expr, Type.Int);
+	}
+
+	public Void visitId(FlatAST ast, int expr) {
+		Symbol symbol = lookup(expr);
+		if (symbol.type == null) {
+			throw new TypeCheckError("Procedure used as a value", ast, expr);
+		}
+		return annotate(expr, symbol.type);
+	}
+
+	public Void visitTrue(FlatAST ast, int expr) {
+		return annotate(expr, Type.Bool);
+	}
+
+	public Void visitFalse(FlatAST ast, int expr) {
+		return annotate(expr, Type.Bool);
+	}
+}
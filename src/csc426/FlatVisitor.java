@@ -0,0 +1,56 @@
+package csc426;
+
+/**
+ * A pass over a FlatAST: the counterpart of ASTVisitor, with one method per
+ * kind of node. Each method gets the tree and the id of the node, and reads
+ * the node's fields through the tree's accessors.
+ */
+public interface FlatVisitor<T> {
+	public T visitProgram(FlatAST ast, int program);
+
+	public T visitBlock(FlatAST ast, int block);
+
+	public T visitConstDecl(FlatAST ast, int decl);
+
+	public T visitVarDecl(FlatAST ast, int decl);
+
+	public T visitProcDecl(FlatAST ast, int decl);
+
+	public T visitVal(FlatAST ast, int param);
+
+	public T visitVar(FlatAST ast, int param);
+
+	public T visitAssign(FlatAST ast, int stmt);
+
+	public T visitCall(FlatAST ast, int stmt);
+
+	public T visitSequence(FlatAST ast, int stmt);
+
+	public T visitIfThen(FlatAST ast, int stmt);
+
+	public T visitIfThenElse(FlatAST ast, int stmt);
+
+	public T visitWhile(FlatAST ast, int stmt);
+
+	public T visitPrompt(FlatAST ast, int stmt);
+
+	public T visitPrompt2(FlatAST ast, int stmt);
+
+	public T visitPrint(FlatAST ast, int stmt);
+
+	public T visitExprItem(FlatAST ast, int item);
+
+	public T visitStringItem(FlatAST ast, int item);
+
+	public T visitBinOp(FlatAST ast, int expr);
+
+	public T visitUnOp(FlatAST ast, int expr);
+
+	public T visitNum(FlatAST ast, int expr);
+
+	public T visitId(FlatAST ast, int expr);
+
+	public T visitTrue(FlatAST ast, int expr);
+
+	public T visitFalse(FlatAST ast, int expr);
+}
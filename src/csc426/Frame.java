@@ -0,0 +1,34 @@
+package csc426;
+
+/**
+ * The storage for one activation of a procedure (or of the program): a slot
+ * for each name declared in it, numbered as by Resolver, and a static link
+ * to the frame of the enclosing procedure's activation.
+ */
+public class Frame {
+	public final Frame parent;
+	public final Value[] slots;
+
+	/**
+	 * @param parent
+	 *            the static link, or null for the program's frame
+	 * @param size
+	 *            the number of slots
+	 */
+	public Frame(Frame parent, int size) {
+		this.parent = parent;
+		this.slots = new Value[size];
+	}
+
+	/**
+	 * @param depth
+	 * @return the frame depth static links out from this one
+	 */
+	public Frame up(int depth) {
+		Frame result = this;
+		for (int i = 0; i < depth; ++i) {
+			result = result.parent;
+		}
+		return result;
+	}
+}
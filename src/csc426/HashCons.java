@@ -0,0 +1,144 @@
+package csc426;
+
+import csc426.AST.Expr;
+import csc426.AST.Expr.*;
+import csc426.AST.Op1;
+import csc426.AST.Op2;
+
+/**
+ * A factory for expression nodes that returns the same node for structurally
+ * identical expressions. The methods match the expression factory methods in
+ * AST, which go through a HashCons once it is installed with AST.share. A
+ * node is only created the first time its operator, value and (already
+ * shared) children are seen. After that the existing node is returned, so
+ * two expressions from the same HashCons are equal exactly when they are ==.
+ *
+ * A shared node keeps the position of its first occurrence, so this is only
+ * for trees whose later passes do not report expression positions. The
+ * annotations that passes record in nodes (Expr.type, Id.depth and Id.slot)
+ * must be the same at every use of a shared node; the Parser clears its
+ * HashCons at each block so that this holds.
+ */
+public class HashCons {
+	public HashCons() {
+		clear();
+	}
+
+	public Expr binOpExpr(Expr left, Op2 op, Expr right, long position) {
+		int hash = (31 * System.identityHashCode(left) + op.ordinal()) * 31 + System.identityHashCode(right);
+		int mask = table.length - 1;
+		int i = hash & mask;
+		for (Expr node = table[i]; node != null; node = table[i = (i + 1) & mask]) {
+			if (hashes[i] == hash && node instanceof BinOp) {
+				BinOp binOp = (BinOp) node;
+				if (binOp.left == left && binOp.op == op && binOp.right == right) {
+					return node;
+				}
+			}
+		}
+		return insert(i, hash, new BinOp(left, op, right, position));
+	}
+
+	public Expr unOpExpr(Op1 op, Expr expr, long position) {
+		int hash = 31 * System.identityHashCode(expr) + op.ordinal() + 1;
+		int mask = table.length - 1;
+		int i = hash & mask;
+		for (Expr node = table[i]; node != null; node = table[i = (i + 1) & mask]) {
+			if (hashes[i] == hash && node instanceof UnOp) {
+				UnOp unOp = (UnOp) node;
+				if (unOp.op == op && unOp.expr == expr) {
+					return node;
+				}
+			}
+		}
+		return insert(i, hash, new UnOp(op, expr, position));
+	}
+
+	public Expr numExpr(int value, long position) {
+		int hash = 31 * value + 2;
+		int mask = table.length - 1;
+		int i = hash & mask;
+		for (Expr node = table[i]; node != null; node = table[i = (i + 1) & mask]) {
+			if (hashes[i] == hash && node instanceof Num && ((Num) node).value == value) {
+				return node;
+			}
+		}
+		return insert(i, hash, new Num(value, position));
+	}
+
+	public Expr idExpr(String id, long position) {
+		int hash = 31 * id.hashCode() + 3;
+		int mask = table.length - 1;
+		int i = hash & mask;
+		for (Expr node = table[i]; node != null; node = table[i = (i + 1) & mask]) {
+			if (hashes[i] == hash && node instanceof Id && ((Id) node).id.equals(id)) {
+				return node;
+			}
+		}
+		return insert(i, hash, new Id(id, position));
+	}
+
+	public Expr trueExpr(long position) {
+		if (trueNode == null) {
+			trueNode = new True(position);
+		}
+		return trueNode;
+	}
+
+	public Expr falseExpr(long position) {
+		if (falseNode == null) {
+			falseNode = new False(position);
+		}
+		return falseNode;
+	}
+
+	/**
+	 * Forget all of the nodes made so far; later nodes will not be shared with
+	 * them.
+	 */
+	public void clear() {
+		table = new Expr[64];
+		hashes = new int[64];
+		size = 0;
+		trueNode = null;
+		falseNode = null;
+	}
+
+	/**
+	 * @return the number of distinct nodes made since the last clear
+	 */
+	public int size() {
+		return size + (trueNode == null ? 0 : 1) + (falseNode == null ? 0 : 1);
+	}
+
+	private Expr insert(int slot, int hash, Expr node) {
+		table[slot] = node;
+		hashes[slot] = hash;
+		++size;
+
+		// keep the table at most half full
+		if (2 * size > table.length) {
+			Expr[] oldTable = table;
+			int[] oldHashes = hashes;
+			table = new Expr[oldTable.length * 2];
+			hashes = new int[oldTable.length * 2];
+			int mask = table.length - 1;
+			for (int j = 0; j < oldTable.length; ++j) {
+				if (oldTable[j] != null) {
+					int i = oldHashes[j] & mask;
+					while (table[i] != null) {
+						i = (i + 1) & mask;
+					}
+					table[i] = oldTable[j];
+					hashes[i] = oldHashes[j];
+				}
+			}
+		}
+		return node;
+	}
+
+	private Expr[] table; // open-addressed by hash, null if empty
+	private int[] hashes;
+	private int size;
+	private Expr trueNode, falseNode;
+}
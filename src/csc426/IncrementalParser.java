@@ -0,0 +1,757 @@
+package csc426;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import csc426.AST.*;
+
+/**
+ * Keeps the text, tokens and AST of a source that is edited and reparsed
+ * repeatedly, and redoes only the work an edit calls for.
+ *
+ * The text and the tokens are each kept with a gap at the last edit, so an
+ * edit moves only what lies between it and the one before. The offsets and
+ * lines of the tokens after the gap are counted back from the end of the
+ * text, so they stay right however the text before them changes; only the
+ * columns of the tokens on the line where an edit ends have to be moved.
+ *
+ * Lexing restarts at the last token that began before the edit, and stops
+ * as soon as a new token begins exactly where an old token after the edit
+ * began, with the same type: from a token boundary the scanner is always in
+ * its start state, so the rest of the tokens are the old ones.
+ *
+ * Parsing runs over the whole token stream, but a procedure declaration or
+ * a statement of a block whose tokens the edit did not touch (nor the token
+ * after them, which the parser may have looked at) is not parsed again: the
+ * old subtree is used, and the parser skips to its end. Each token records
+ * the subtree, if any, that was parsed from it. The nodes of a subtree that
+ * is kept are not copied to move their positions; its Origin is moved
+ * instead. Parsing recovers from syntax errors (see Parser), and a subtree
+ * with errors is never kept.
+ *
+ * The declarations and statements of a list are also grouped into runs of up
+ * to RUN siblings, and those into runs of runs, and so on, as in a B-tree. A
+ * run the edit did not touch is kept in one step, so only a few runs on
+ * either side of the edit are taken from each list it is in. An edit thus
+ * costs the tokens it relexes and reparses, a number of steps logarithmic in
+ * the length of each list it is in, and the distance from the previous edit.
+ * Copying the elements of those lists into the new ones is still linear in
+ * their length, but is a plain copy.
+ */
+public class IncrementalParser {
+	/**
+	 * Lex and parse a source for the first time.
+	 *
+	 * @param text
+	 * @param diagnostics
+	 *            receives the lexical errors of each part of the text lexed
+	 * @throws ParseError
+	 *             only on a failure to read the text
+	 */
+	public IncrementalParser(String text, Diagnostics diagnostics) throws ParseError {
+		this.diagnostics = diagnostics;
+		this.text = new Text(text);
+		this.tokens = new Tokens(new Names());
+		tokens.resize(this.text.length, this.text.lastLine);
+		this.relexed = lex(0, Position.pack(1, 1));
+		parse();
+	}
+
+	/**
+	 * Replace part of the text and reparse it.
+	 *
+	 * @param offset
+	 *            where the replaced characters start
+	 * @param removed
+	 *            the number of characters replaced
+	 * @param inserted
+	 *            the replacement
+	 * @return the new program
+	 * @throws ParseError
+	 *             only on a failure to read the text
+	 */
+	public Program edit(int offset, int removed, String inserted) throws ParseError {
+		int first = Math.max(0, firstAtOrAfter(offset) - 1);
+		int next = firstAtOrAfter(offset + removed);
+		int start = (first == 0) ? 0 : tokens.offset(first);
+		long position = (first == 0) ? Position.pack(1, 1) : tokens.position(first);
+		forget(first);
+
+		tokens.moveGap(first);
+		text.replace(offset, removed, inserted);
+		tokens.resize(text.length, text.lastLine);
+		tokens.drop(next - first);
+		relexed = lex(start, position);
+
+		parse();
+		return program;
+	}
+
+	/**
+	 * @return the current text
+	 */
+	public String text() {
+		return text.toString();
+	}
+
+	/**
+	 * @return the current tokens
+	 */
+	public TokenBuffer tokens() {
+		return tokens;
+	}
+
+	/**
+	 * @return the current program (possibly partial, if there were errors)
+	 */
+	public Program program() {
+		return program;
+	}
+
+	/**
+	 * @return the syntax errors of the current text
+	 */
+	public List<ParseError> errors() {
+		return errors;
+	}
+
+	/**
+	 * @return the number of tokens lexed by the last edit
+	 */
+	public int relexed() {
+		return relexed;
+	}
+
+	/**
+	 * @return the number of procedure declarations, statements and runs of
+	 *         them reused whole by the last parse
+	 */
+	public int reused() {
+		return reused;
+	}
+
+	/**
+	 * @return the index of the first token starting at or after offset
+	 */
+	private int firstAtOrAfter(int offset) {
+		int lo = 0, hi = tokens.size();
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (tokens.offset(mid) < offset) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Forget the subtrees and runs that start before token first and take in
+	 * token first - 1, since relexing from first may change the token after
+	 * them: the innermost of them starts at or after the last subtree
+	 * starting before first, and the others are the subtrees and runs it is
+	 * in. The subtrees starting from first on go with their tokens, and so do
+	 * the runs, which are found from their first subtree.
+	 */
+	private void forget(int first) {
+		int start = first - 1;
+		while (start >= 0 && tokens.unit(start) == null) {
+			--start;
+		}
+		for (Origin unit = (start < 0) ? null : tokens.unit(start); unit != null; unit = unit.parent) {
+			if (start + unit.length >= first) {
+				if (unit.node == null) {
+					unit.forgotten = true;
+				} else {
+					tokens.unit(start, null);
+				}
+			}
+			start -= unit.offset;
+		}
+	}
+
+	/**
+	 * Lex the text from the given offset and position into the gap, until the
+	 * tokens after the gap are met again or the text ends.
+	 *
+	 * @return the number of tokens lexed
+	 */
+	private int lex(int start, long position) throws ParseError {
+		int startLine = Position.line(position);
+		int startColumn = Position.column(position);
+		ScanTable table = new ScanTable(tokens.lexemes(), diagnostics);
+		int count = 0;
+		try {
+			Source source = new TextSource(text, start);
+			while (true) {
+				TokenType type = table.scan(source);
+				int tokenOffset = start + table.offset();
+				int tokenLine = table.line();
+				long tokenPosition = Position.pack(startLine + tokenLine - 1,
+						tokenLine == 1 ? startColumn + table.column() - 1 : table.column());
+				int next = tokens.gap();
+				while (tokens.tail() > 0 && tokens.offset(next) < tokenOffset) {
+					tokens.drop(1);
+				}
+				if (tokens.tail() > 0 && tokens.offset(next) == tokenOffset && tokens.type(next) == type) {
+					tokens.moveColumns(Position.column(tokenPosition) - Position.column(tokens.position(next)));
+					break;
+				}
+				tokens.add(type, table.lexemeId(tokens.lexemes()), tokenPosition, tokenOffset);
+				++count;
+				if (type == TokenType.EOF) {
+					tokens.drop(tokens.tail());
+					break;
+				}
+			}
+			source.close();
+		} catch (IOException e) {
+			throw new ParseError(e.getMessage());
+		}
+		return count;
+	}
+
+	/**
+	 * Parse the current tokens, without sharing expressions (see AST.share),
+	 * since the subtrees kept are not parsed together.
+	 */
+	private void parse() throws ParseError {
+		errors = new ArrayList<>();
+		reused = 0;
+		HashCons shared = AST.share(null);
+		ReusingParser parser = new ReusingParser(new TokenBufferLookahead(tokens), errors);
+		try {
+			program = parser.parseProgram();
+		} finally {
+			parser.sweep(tokens.size());
+			AST.share(shared);
+		}
+	}
+
+	/**
+	 * The most subtrees or runs grouped into one run
+	 */
+	private static final int RUN = 16;
+
+	/**
+	 * A Parser that takes procedure declarations and statements, and runs of
+	 * them, from the previous parse where it can, and records the ones it
+	 * parses for the next.
+	 */
+	private class ReusingParser extends Parser {
+		ReusingParser(TokenBufferLookahead lookahead, List<ParseError> errors) {
+			super(lookahead, errors);
+			this.la = lookahead;
+			this.nodes = new ArrayList<>();
+			this.children = new Traversal.Children(nodes);
+			this.runs = new ArrayList<>();
+			this.swept = -1;
+		}
+
+		@Override
+		public List<ProcDecl> parseProcDecls() throws ParseError {
+			runs.add(new ArrayList<>());
+			try {
+				return super.parseProcDecls();
+			} finally {
+				runs.remove(runs.size() - 1);
+			}
+		}
+
+		@Override
+		public ProcDecl parseProcDecl() throws ParseError {
+			int start = la.index();
+			int recoveries = recoveries();
+			ProcDecl decl = super.parseProcDecl();
+			record(start, decl, recoveries);
+			return decl;
+		}
+
+		@Override
+		public List<Stmt> parseStmts() throws ParseError {
+			runs.add(new ArrayList<>());
+			try {
+				return super.parseStmts();
+			} finally {
+				runs.remove(runs.size() - 1);
+			}
+		}
+
+		@Override
+		public Stmt parseStmt() throws ParseError {
+			int start = la.index();
+			int recoveries = recoveries();
+			Stmt stmt = super.parseStmt();
+			record(start, stmt, recoveries);
+			return stmt;
+		}
+
+		/**
+		 * Take the subtree of the given kind parsed from the current token
+		 * before, if any, or the largest run starting with it that an edit has
+		 * not touched since, moved to where it is now, and skip its tokens.
+		 */
+		@Override
+		<T extends AST> boolean parsed(List<T> list, Class<T> kind) {
+			int start = la.index();
+			sweep(start);
+			swept = start;
+			Origin piece = tokens.unit(start);
+			if (piece == null || !kind.isInstance(piece.node)) {
+				return false;
+			}
+			while (piece.parent != null && piece.offset == 0 && piece.parent.node == null
+					&& !piece.parent.forgotten) {
+				piece = piece.parent;
+			}
+			piece.start = start;
+			piece.moveTo(tokens.position(start));
+			la.reset(start + piece.length);
+			swept = start + piece.length - 1;
+			++reused;
+
+			if (piece.node != null) {
+				list.add(kind.cast(piece.node));
+			} else {
+				if (list instanceof ArrayList) {
+					((ArrayList<T>) list).ensureCapacity(list.size() + piece.nodes.length);
+				}
+				for (AST node : piece.nodes) {
+					list.add(kind.cast(node));
+				}
+			}
+			group(piece);
+			return true;
+		}
+
+		/**
+		 * Record the subtree just parsed from token start, unless there were
+		 * errors in it: give its nodes an Origin, and make the subtrees and
+		 * runs in it move with it.
+		 */
+		private void record(int start, AST node, int recoveries) {
+			if (node == null || recoveries() != recoveries) {
+				tokens.unit(start, null);
+				runs.get(runs.size() - 1).clear();
+				return;
+			}
+			Origin unit = new Origin(node, start, la.index() - start, tokens.position(start));
+			nodes.add(node);
+			while (!nodes.isEmpty()) {
+				AST next = nodes.remove(nodes.size() - 1);
+				if (next.origin == null) {
+					next.origin = unit;
+					next.accept(children);
+				} else {
+					Origin outer = next.origin;
+					while (outer.parent != null && outer.parent != unit) {
+						outer = outer.parent;
+					}
+					outer.attach(unit, start);
+				}
+			}
+			tokens.unit(start, unit);
+			group(unit);
+		}
+
+		/**
+		 * Add a subtree or run just taken to the runs being grouped from the
+		 * current list (a stack whose levels never increase), grouping those
+		 * below its level first, and then any RUN of its level. Runs only group
+		 * siblings with no tokens between them.
+		 */
+		private void group(Origin piece) {
+			List<Origin> stack = runs.get(runs.size() - 1);
+			if (!stack.isEmpty()) {
+				Origin top = stack.get(stack.size() - 1);
+				if (top.start + top.length != piece.start) {
+					stack.clear();
+				}
+			}
+			while (!stack.isEmpty() && stack.get(stack.size() - 1).level < piece.level) {
+				run(stack);
+			}
+			stack.add(piece);
+			while (stack.size() - top(stack) >= RUN) {
+				run(stack);
+			}
+		}
+
+		/**
+		 * @return the index of the first of the pieces of the same level at
+		 *         the top of stack
+		 */
+		private int top(List<Origin> stack) {
+			int level = stack.get(stack.size() - 1).level;
+			int from = stack.size() - 1;
+			while (from > 0 && stack.get(from - 1).level == level) {
+				--from;
+			}
+			return from;
+		}
+
+		/**
+		 * Replace the pieces of the same level at the top of stack with a run
+		 * of them.
+		 */
+		private void run(List<Origin> stack) {
+			List<Origin> siblings = stack.subList(top(stack), stack.size());
+			Origin first = siblings.get(0), last = siblings.get(siblings.size() - 1);
+			Origin run = new Origin(siblings.toArray(new Origin[siblings.size()]), first.level + 1, first.start,
+					last.start + last.length - first.start, tokens.position(first.start));
+			siblings.clear();
+			stack.add(run);
+		}
+
+		/**
+		 * Forget the subtrees recorded at the tokens after the last one swept
+		 * and before end: this parse went through those tokens without
+		 * reaching them.
+		 */
+		void sweep(int end) {
+			for (int i = swept + 1; i < end; ++i) {
+				tokens.unit(i, null);
+			}
+			swept = Math.max(swept, end - 1);
+		}
+
+		private final TokenBufferLookahead la;
+		private final List<AST> nodes;
+		private final Traversal.Children children;
+		private final List<List<Origin>> runs; // being grouped, one stack for each list being parsed
+		private int swept; // the last token whose subtree, if any, is current
+	}
+
+	/**
+	 * The characters of the text, with a gap at the last edit.
+	 */
+	private static final class Text {
+		Text(String text) {
+			this.chars = text.toCharArray();
+			this.gapStart = chars.length;
+			this.gapEnd = chars.length;
+			this.length = chars.length;
+			this.lastLine = 1 + newlines(0, length);
+		}
+
+		/**
+		 * Replace removed characters from offset on with inserted.
+		 */
+		void replace(int offset, int removed, String inserted) {
+			moveGap(offset);
+			lastLine -= newlines(gapEnd, gapEnd + removed);
+			gapEnd += removed;
+			int count = inserted.length();
+			if (gapEnd - gapStart < count) {
+				char[] more = new char[Math.max(2 * chars.length, length + count)];
+				int tail = chars.length - gapEnd;
+				System.arraycopy(chars, 0, more, 0, gapStart);
+				System.arraycopy(chars, gapEnd, more, more.length - tail, tail);
+				gapEnd = more.length - tail;
+				chars = more;
+			}
+			inserted.getChars(0, count, chars, gapStart);
+			lastLine += newlines(gapStart, gapStart + count);
+			gapStart += count;
+			length += count - removed;
+		}
+
+		/**
+		 * Copy up to count characters from offset on into buffer.
+		 *
+		 * @return the number of characters copied, or -1 at the end
+		 */
+		int read(int offset, char[] buffer, int at, int count) {
+			if (offset >= length) {
+				return -1;
+			}
+			int n;
+			if (offset < gapStart) {
+				n = Math.min(count, gapStart - offset);
+				System.arraycopy(chars, offset, buffer, at, n);
+			} else {
+				n = Math.min(count, length - offset);
+				System.arraycopy(chars, offset + gapEnd - gapStart, buffer, at, n);
+			}
+			return n;
+		}
+
+		private void moveGap(int offset) {
+			if (offset < gapStart) {
+				int count = gapStart - offset;
+				System.arraycopy(chars, offset, chars, gapEnd - count, count);
+				gapStart -= count;
+				gapEnd -= count;
+			} else if (offset > gapStart) {
+				int count = offset - gapStart;
+				System.arraycopy(chars, gapEnd, chars, gapStart, count);
+				gapStart += count;
+				gapEnd += count;
+			}
+		}
+
+		private int newlines(int from, int to) {
+			int count = 0;
+			for (int i = from; i < to; ++i) {
+				if (chars[i] == '\n') {
+					++count;
+				}
+			}
+			return count;
+		}
+
+		@Override
+		public String toString() {
+			return new String(chars, 0, gapStart) + new String(chars, gapEnd, chars.length - gapEnd);
+		}
+
+		private char[] chars;
+		private int gapStart, gapEnd;
+		int length;
+		int lastLine; // 1 + the number of newlines
+	}
+
+	/**
+	 * A Source reading the text from some offset on, across its gap.
+	 */
+	private static final class TextSource extends Source {
+		TextSource(Text text, int offset) throws IOException {
+			super(BUFFER_SIZE);
+			this.text = text;
+			this.offset = offset;
+			advance();
+		}
+
+		@Override
+		protected int read(char[] buffer, int at, int count) {
+			int n = text.read(offset, buffer, at, count);
+			if (n > 0) {
+				offset += n;
+			}
+			return n;
+		}
+
+		/**
+		 * Relexing usually stops after a few tokens, so read little at a time.
+		 */
+		private static final int BUFFER_SIZE = 256;
+
+		private final Text text;
+		private int offset;
+	}
+
+	/**
+	 * The tokens, with a gap at the last edit; an edit moves the gap there and
+	 * replaces the tokens at its start. The offsets and lines of the tokens
+	 * after the gap are stored relative to the length and last line of the
+	 * text (see resize). Each token also has a slot for the subtree, if any,
+	 * that was parsed from it.
+	 */
+	private static final class Tokens extends TokenBuffer {
+		Tokens(Names lexemes) {
+			super(lexemes);
+			this.types = new byte[256];
+			this.lexemeIds = new int[256];
+			this.positions = new long[256];
+			this.offsets = new int[256];
+			this.units = new Origin[256];
+			this.gapStart = 0;
+			this.gapEnd = 256;
+		}
+
+		@Override
+		public int size() {
+			return gapStart + types.length - gapEnd;
+		}
+
+		@Override
+		public TokenType type(int i) {
+			return TYPES[types[at(i)]];
+		}
+
+		@Override
+		public String lexeme(int i) {
+			return lexemes().get(lexemeIds[at(i)]);
+		}
+
+		@Override
+		public int lexemeId(int i) {
+			return lexemeIds[at(i)];
+		}
+
+		@Override
+		public long position(int i) {
+			return (i < gapStart) ? positions[i] : positions[at(i)] + ((long) lastLine << 32);
+		}
+
+		@Override
+		public int offset(int i) {
+			return (i < gapStart) ? offsets[i] : offsets[at(i)] + length;
+		}
+
+		@Override
+		public Token token(int i) {
+			return new Token(position(i), type(i), lexeme(i));
+		}
+
+		/**
+		 * Insert a token into the gap.
+		 */
+		@Override
+		public void add(TokenType type, int lexeme, long position, int offset) {
+			if (gapStart == gapEnd) {
+				grow();
+			}
+			types[gapStart] = (byte) type.ordinal();
+			lexemeIds[gapStart] = lexeme;
+			positions[gapStart] = position;
+			offsets[gapStart] = offset;
+			units[gapStart] = null;
+			++gapStart;
+		}
+
+		/**
+		 * Insert the first count tokens of another buffer into the gap.
+		 */
+		@Override
+		public void append(TokenBuffer other, int count, int[] ids, int lines, int offset) {
+			long shift = Position.pack(lines, 0);
+			for (int i = 0; i < count; ++i) {
+				add(other.type(i), ids[other.lexemeId(i)], other.position(i) + shift, other.offset(i) + offset);
+			}
+		}
+
+		/**
+		 * @return the subtree parsed from token i, if any
+		 */
+		Origin unit(int i) {
+			return units[at(i)];
+		}
+
+		void unit(int i, Origin unit) {
+			units[at(i)] = unit;
+		}
+
+		/**
+		 * @return the index of the first token after the gap
+		 */
+		int gap() {
+			return gapStart;
+		}
+
+		/**
+		 * @return the number of tokens after the gap
+		 */
+		int tail() {
+			return types.length - gapEnd;
+		}
+
+		/**
+		 * Move the gap to just before token index.
+		 */
+		void moveGap(int index) {
+			long lines = (long) lastLine << 32;
+			while (gapStart > index) {
+				move(--gapStart, --gapEnd);
+				offsets[gapEnd] -= length;
+				positions[gapEnd] -= lines;
+			}
+			while (gapStart < index) {
+				move(gapEnd++, gapStart);
+				offsets[gapStart] += length;
+				positions[gapStart] += lines;
+				++gapStart;
+			}
+		}
+
+		/**
+		 * The text now has the given length and last line; the tokens after
+		 * the gap move with its end.
+		 */
+		void resize(int length, int lastLine) {
+			this.length = length;
+			this.lastLine = lastLine;
+		}
+
+		/**
+		 * Remove count tokens from after the gap.
+		 */
+		void drop(int count) {
+			for (int i = 0; i < count; ++i) {
+				units[gapEnd++] = null;
+			}
+		}
+
+		/**
+		 * Move the tokens after the gap that are on the same line as the first
+		 * of them across by the given number of columns.
+		 */
+		void moveColumns(int columns) {
+			if (columns == 0) {
+				return;
+			}
+			int line = Position.line(positions[gapEnd]);
+			for (int i = gapEnd; i < types.length && Position.line(positions[i]) == line; ++i) {
+				positions[i] += columns;
+			}
+		}
+
+		private int at(int i) {
+			return (i < gapStart) ? i : i + gapEnd - gapStart;
+		}
+
+		private void move(int from, int to) {
+			types[to] = types[from];
+			lexemeIds[to] = lexemeIds[from];
+			positions[to] = positions[from];
+			offsets[to] = offsets[from];
+			units[to] = units[from];
+			units[from] = null;
+		}
+
+		private void grow() {
+			int capacity = 2 * types.length;
+			int tail = types.length - gapEnd;
+			byte[] moreTypes = new byte[capacity];
+			int[] moreLexemeIds = new int[capacity];
+			long[] morePositions = new long[capacity];
+			int[] moreOffsets = new int[capacity];
+			Origin[] moreUnits = new Origin[capacity];
+			System.arraycopy(types, 0, moreTypes, 0, gapStart);
+			System.arraycopy(lexemeIds, 0, moreLexemeIds, 0, gapStart);
+			System.arraycopy(positions, 0, morePositions, 0, gapStart);
+			System.arraycopy(offsets, 0, moreOffsets, 0, gapStart);
+			System.arraycopy(units, 0, moreUnits, 0, gapStart);
+			System.arraycopy(types, gapEnd, moreTypes, capacity - tail, tail);
+			System.arraycopy(lexemeIds, gapEnd, moreLexemeIds, capacity - tail, tail);
+			System.arraycopy(positions, gapEnd, morePositions, capacity - tail, tail);
+			System.arraycopy(offsets, gapEnd, moreOffsets, capacity - tail, tail);
+			System.arraycopy(units, gapEnd, moreUnits, capacity - tail, tail);
+			types = moreTypes;
+			lexemeIds = moreLexemeIds;
+			positions = morePositions;
+			offsets = moreOffsets;
+			units = moreUnits;
+			gapEnd = capacity - tail;
+		}
+
+		private static final TokenType[] TYPES = TokenType.values();
+
+		private byte[] types;
+		private int[] lexemeIds;
+		private long[] positions;
+		private int[] offsets;
+		private Origin[] units;
+		private int gapStart, gapEnd;
+		private int length, lastLine; // of the text
+	}
+
+	private final Diagnostics diagnostics;
+	private final Text text;
+	private final Tokens tokens;
+	private Program program;
+	private List<ParseError> errors;
+	private int relexed, reused;
+}
@@ -5,4 +5,8 @@ public class InterpreterError extends RuntimeException {
 	public InterpreterError(String message, AST ast) {
 		super(message + ": " + ast);
 	}
+
+	public InterpreterError(String message, FlatAST ast, int node) {
+		super(message + ": " + ast.toString(node));
+	}
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package csc426;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
 
@@ -16,54 +17,198 @@ import csc426.Value.IntCell;
 import csc426.Value.IntValue;
 import csc426.Value.ProcValue;
 
-public class InterpreterVisitor implements ASTVisitor<Value> {
+/**
+ * Runs a program. Names are bound by static scoping: the program is first
+ * resolved (see Resolver), which throws a ResolveError for any unknown or
+ * duplicate name before anything runs, and each name is then found in a Frame
+ * by following the static links and indexing its slot.
+ *
+ * It is driven by a Traversal, so neither deep trees nor deep recursion in
+ * the program use the Java stack: the value of each expression is left on a
+ * stack for its parent, a loop schedules its test again after its body, and
+ * a call schedules the body of its procedure, after which the frame of the
+ * caller is restored.
+ */
+public class InterpreterVisitor implements ASTVisitor<Void> {
+	/**
+	 * The state in which a block is visited to end a call (see execute).
+	 */
+	private static final int RETURN = 1;
+
 	private Scanner input;
 	private PrintStream output;
-	private SymbolTable<Value> table;
+	private Frame frame; // of the innermost procedure (or program) running
+	private Frame[] callers; // the frames to return to
+	private int callerCount;
+	private Value[] values; // of the expressions evaluated and not yet used
+	private int valueCount;
+	private Traversal traversal;
 
 	public InterpreterVisitor(Scanner input, PrintStream output) {
 		this.input = input;
 		this.output = output;
-		this.table = new SymbolTable<>();
+		this.callers = new Frame[16];
+		this.callerCount = 0;
+		this.values = new Value[16];
+		this.valueCount = 0;
+		this.traversal = new Traversal(this);
+	}
+
+	/**
+	 * Run a program.
+	 *
+	 * @param program
+	 */
+	public void run(Program program) {
+		traversal.run(program);
 	}
 
 	@Override
-	public Value visit(Program program) {
-		table.enter(program.name);
-		program.block.accept(this);
-		table.exit();
+	public Void visit(Program program) {
+		Resolver.resolve(program);
+		frame = new Frame(null, Resolver.declarations(program.block));
+		traversal.visit(program.block);
 		return null;
 	}
 
+	/**
+	 * Schedule a block to run in a new frame, whose slots for any parameters
+	 * are already filled, and the frame running now to be restored after it.
+	 *
+	 * @param block
+	 * @param frame
+	 */
+	public void execute(Block block, Frame frame) {
+		if (callerCount == callers.length) {
+			callers = Arrays.copyOf(callers, 2 * callerCount);
+		}
+		callers[callerCount++] = this.frame;
+		this.frame = frame;
+		traversal.visit(block);
+		traversal.visit(block, RETURN);
+	}
+
+	private void push(Value value) {
+		if (valueCount == values.length) {
+			values = Arrays.copyOf(values, 2 * valueCount);
+		}
+		values[valueCount++] = value;
+	}
+
+	/**
+	 * @return the value of the expression evaluated last and not yet used
+	 */
+	private Value pop() {
+		Value value = values[--valueCount];
+		values[valueCount] = null;
+		return value;
+	}
+
+	/**
+	 * @return the values of the last n expressions evaluated, in order
+	 */
+	private List<Value> pop(int n) {
+		List<Value> result = new ArrayList<>(n);
+		for (int i = valueCount - n; i < valueCount; ++i) {
+			result.add(values[i]);
+			values[i] = null;
+		}
+		valueCount -= n;
+		return result;
+	}
+
+	/**
+	 * Evaluate expr now, leaving its value on the stack, if it is a leaf or an
+	 * operator applied to leaves, or else schedule it. Such expressions
+	 * recurse at most one level, and most expressions in a program are one, so
+	 * this saves the steps for them.
+	 *
+	 * @param expr
+	 * @return true if the value of expr is on the stack
+	 */
+	private boolean evaluate(Expr expr) {
+		if (expr instanceof BinOp) {
+			BinOp op = (BinOp) expr;
+			if (!leaf(op.left) || !leaf(op.right)) {
+				traversal.visit(expr);
+				return false;
+			}
+			try {
+				push(apply(op, value(op.left), value(op.right)));
+			} catch (ValueError e) {
+				throw new InterpreterError(e.getMessage(), op);
+			}
+		} else if (expr instanceof UnOp) {
+			UnOp op = (UnOp) expr;
+			if (!leaf(op.expr)) {
+				traversal.visit(expr);
+				return false;
+			}
+			try {
+				push(apply(op, value(op.expr)));
+			} catch (ValueError e) {
+				throw new InterpreterError(e.getMessage(), op);
+			}
+		} else {
+			push(value(expr));
+		}
+		return true;
+	}
+
+	private static boolean leaf(Expr expr) {
+		return !(expr instanceof BinOp || expr instanceof UnOp);
+	}
+
+	/**
+	 * @param leaf
+	 * @return the value of a Num, Id, True or False
+	 */
+	private Value value(Expr leaf) {
+		if (leaf instanceof Num) {
+			return new IntValue(((Num) leaf).value);
+		} else if (leaf instanceof Id) {
+			Id id = (Id) leaf;
+			return frame.up(id.depth).slots[id.slot];
+		} else {
+			return new BoolValue(leaf instanceof True);
+		}
+	}
+
 	@Override
-	public Value visit(Block block) {
+	public Void visit(Block block) {
+		if (traversal.state() == RETURN) {
+			frame = callers[--callerCount];
+			callers[callerCount] = null;
+			return null;
+		}
+
+		int slot = 0;
 		for (ConstDecl decl : block.consts) {
 			decl.accept(this);
+			frame.slots[slot++] = pop();
 		}
 		for (VarDecl decl : block.vars) {
 			decl.accept(this);
+			frame.slots[slot++] = pop();
 		}
 		for (ProcDecl decl : block.procs) {
 			decl.accept(this);
+			frame.slots[slot++] = pop();
 		}
 		for (Stmt stmt : block.stmts) {
-			stmt.accept(this);
+			traversal.visit(stmt);
 		}
 		return null;
 	}
 
 	@Override
-	public Value visit(ConstDecl decl) {
-		try {
-			table.add(decl.id, new IntValue(decl.value));
-		} catch (TableError e) {
-			throw new InterpreterError(e.getMessage(), decl);
-		}
+	public Void visit(ConstDecl decl) {
+		push(new IntValue(decl.value));
 		return null;
 	}
 
 	@Override
-	public Value visit(VarDecl decl) {
+	public Void visit(VarDecl decl) {
 		Value value = null;
 		switch (decl.type) {
 		case Bool:
@@ -73,83 +218,82 @@ public class InterpreterVisitor implements ASTVisitor<Value> {
 			value = new IntCell();
 			break;
 		}
-		try {
-			table.add(decl.id, value);
-		} catch (TableError e) {
-			throw new InterpreterError(e.getMessage(), decl);
-		}
+		push(value);
 		return null;
 	}
 
 	@Override
-	public Value visit(ProcDecl decl) {
-		try {
-			table.add(decl.id, new ProcValue(decl.params, decl.block));
-		} catch (TableError e) {
-			throw new InterpreterError(e.getMessage(), decl);
-		}
+	public Void visit(ProcDecl decl) {
+		push(new ProcValue(decl.params, decl.block, frame));
 		return null;
 	}
 
 	//Token Methods, They dont do anything
 	@Override
-	public Value visit(Val param) {
+	public Void visit(Val param) {
 		return null;
 	}
 
 	@Override
-	public Value visit(Var param) {
+	public Void visit(Var param) {
 		return null;
 	}
 
 	@Override
-	public Value visit(Assign stmt) {
+	public Void visit(Assign stmt) {
+		if (traversal.state() == 0 && !evaluate(stmt.expr)) {
+			traversal.resume(1);
+			return null;
+		}
+
 		try {
-			Value lhs = table.lookup(stmt.id);
-			Value rhs = stmt.expr.accept(this);
-			lhs.set(rhs);
+			Value lhs = frame.up(stmt.depth).slots[stmt.slot];
+			lhs.set(pop());
 		} catch (ValueError e) {
 			throw new InterpreterError(e.getMessage(), stmt);
-		} catch (TableError e) {
-			throw new InterpreterError(e.getMessage(), stmt);
 		}
 		return null;
 	}
 
 	@Override
-	public Value visit(Call stmt) {
-		try {
-			Value proc = table.lookup(stmt.id);
-			List<Value> args = new ArrayList<>();
+	public Void visit(Call stmt) {
+		if (traversal.state() == 0) {
 			for (Expr arg : stmt.args) {
-				args.add(arg.accept(this));
+				traversal.visit(arg);
 			}
-			
-			table.enter(stmt.id);
-			proc.call(args, this, table);
-			table.exit();
+			traversal.resume(1);
+			return null;
+		}
+
+		try {
+			Value proc = frame.up(stmt.depth).slots[stmt.slot];
+			List<Value> args = pop(stmt.args.size());
+			proc.call(args, this);
 		} catch (ValueError e) {
 			throw new InterpreterError(e.getMessage(), stmt);
-		} catch (TableError e) {
-			throw new InterpreterError(e.getMessage(), stmt);
 		}
 		return null;
 	}
 
 	@Override
-	public Value visit(Sequence stmt) {
+	public Void visit(Sequence stmt) {
 		for (Stmt s : stmt.body) {
-			s.accept(this);
+			traversal.visit(s);
 		}
 		return null;
 	}
 
 	@Override
-	public Value visit(IfThen stmt) {
-		Value test = stmt.test.accept(this);
+	public Void visit(IfThen stmt) {
+		if (traversal.state() == 0 && !evaluate(stmt.test)) {
+			traversal.resume(1);
+			return null;
+		}
+
+		Value test = pop();
 		try {
 			if (test.boolValue()) {
-				stmt.trueClause.accept(this);
+				traversal.visit(stmt.trueClause);
 			}
 		} catch (ValueError e) {
 			throw new InterpreterError(e.getMessage(), stmt);
@@ -158,13 +302,18 @@ public class InterpreterVisitor implements ASTVisitor<Value> {
 	}
 
 	@Override
-	public Value visit(IfThenElse stmt) {
-		Value test = stmt.test.accept(this);
+	public Void visit(IfThenElse stmt) {
+		if (traversal.state() == 0 && !evaluate(stmt.test)) {
+			traversal.resume(1);
+			return null;
+		}
+
+		Value test = pop();
 		try {
 			if (test.boolValue()) {
-				stmt.trueClause.accept(this);
+				traversal.visit(stmt.trueClause);
 			} else {
-				stmt.falseClause.accept(this);
+				traversal.visit(stmt.falseClause);
 			}
 		} catch (ValueError e) {
 			throw new InterpreterError(e.getMessage(), stmt);
@@ -172,13 +321,22 @@ public class InterpreterVisitor implements ASTVisitor<Value> {
 		return null;
 	}
 
+	/**
+	 * In state 0 the test is to be evaluated; in state 1 its value is ready,
+	 * and if it is true the body runs and the loop returns to state 0.
+	 */
 	@Override
-	public Value visit(While stmt) {
-		Value test = stmt.test.accept(this);
+	public Void visit(While stmt) {
+		if (traversal.state() == 0 && !evaluate(stmt.test)) {
+			traversal.resume(1);
+			return null;
+		}
+
+		Value test = pop();
 		try {
-			while (test.boolValue()) {
-				stmt.body.accept(this);
-				test = stmt.test.accept(this);
+			if (test.boolValue()) {
+				traversal.visit(stmt.body);
+				traversal.resume(0);
 			}
 		} catch (ValueError e) {
 			throw new InterpreterError(e.getMessage(), stmt);
@@ -187,16 +345,16 @@ public class InterpreterVisitor implements ASTVisitor<Value> {
 	}
 
 	@Override
-	public Value visit(Prompt stmt) {
+	public Void visit(Prompt stmt) {
 		output.print(stmt.message);
 		input.nextLine();
 		return null;
 	}
 
 	@Override
-	public Value visit(Prompt2 stmt) {
+	public Void visit(Prompt2 stmt) {
 		try {
-			Value lhs = table.lookup(stmt.id);
+			Value lhs = frame.up(stmt.depth).slots[stmt.slot];
 			output.print(stmt.message + " ");
 			String line = input.nextLine();
 			Value rhs = new IntValue(Integer.parseInt(line));
@@ -205,24 +363,31 @@ public class InterpreterVisitor implements ASTVisitor<Value> {
 			throw new InterpreterError(e.getMessage(), stmt);
 		} catch (ValueError e) {
 			throw new InterpreterError(e.getMessage(), stmt);
-		} catch (TableError e) {
-			throw new InterpreterError(e.getMessage(), stmt);
 		}
 		return null;
 	}
 
 	@Override
-	public Value visit(Print stmt) {
-		for (Item item : stmt.items) {
-			item.accept(this);
+	public Void visit(Print stmt) {
+		if (traversal.state() == 0) {
+			for (Item item : stmt.items) {
+				traversal.visit(item);
+			}
+			traversal.resume(1);
+		} else {
+			output.println();
 		}
-		output.println();
 		return null;
 	}
 
 	@Override
-	public Value visit(ExprItem item) {
-		Value value = item.expr.accept(this);
+	public Void visit(ExprItem item) {
+		if (traversal.state() == 0 && !evaluate(item.expr)) {
+			traversal.resume(1);
+			return null;
+		}
+
+		Value value = pop();
 		try {
 			output.print(value.intValue());
 		} catch (ValueError e) {
@@ -232,89 +397,130 @@ public class InterpreterVisitor implements ASTVisitor<Value> {
 	}
 
 	@Override
-	public Value visit(StringItem item) {
+	public Void visit(StringItem item) {
 		output.print(item.message);
 		return null;
 	}
 
 	@Override
-	public Value visit(BinOp expr) {
-		Value lhs = expr.left.accept(this);
-		Value rhs = expr.right.accept(this);
-		try {
-			switch (expr.op) {
-			case And:
-				return new BoolValue(lhs.boolValue() && rhs.boolValue());
-			case Div:
-				return new IntValue(lhs.intValue() / rhs.intValue());
-			case EQ:
-				return new BoolValue(lhs.intValue() == rhs.intValue());
-			case GE:
-				return new BoolValue(lhs.intValue() >= rhs.intValue());
-			case GT:
-				return new BoolValue(lhs.intValue() > rhs.intValue());
-			case LE:
-				return new BoolValue(lhs.intValue() <= rhs.intValue());
-			case LT:
-				return new BoolValue(lhs.intValue() < rhs.intValue());
-			case Minus:
-				return new IntValue(lhs.intValue() - rhs.intValue());
-			case Mod:
-				return new IntValue(lhs.intValue() % rhs.intValue());
-			case NE:
-				return new BoolValue(lhs.intValue() != rhs.intValue());
-			case Or:
-				return new BoolValue(lhs.boolValue() || rhs.boolValue());
-			case Plus:
-				return new IntValue(lhs.intValue() + rhs.intValue());
-			case Times:
-				return new IntValue(lhs.intValue() * rhs.intValue());
-			default:
-				throw new InterpreterError("Unknown operator", expr);
+	public Void visit(BinOp expr) {
+		if (traversal.state() == 0) {
+			if (!evaluate(expr.left)) {
+				traversal.visit(expr.right);
+				traversal.resume(1);
+				return null;
+			}
+			if (!evaluate(expr.right)) {
+				traversal.resume(1);
+				return null;
 			}
+		}
+
+		combine(expr);
+		return null;
+	}
+
+	/**
+	 * Replace the values of the operands of expr, on the stack, by its value.
+	 */
+	private void combine(BinOp expr) {
+		Value rhs = pop();
+		Value lhs = pop();
+		try {
+			push(apply(expr, lhs, rhs));
 		} catch (ValueError e) {
 			throw new InterpreterError(e.getMessage(), expr);
 		}
 	}
 
+	private static Value apply(BinOp expr, Value lhs, Value rhs) throws ValueError {
+		switch (expr.op) {
+		case And:
+			return new BoolValue(lhs.boolValue() && rhs.boolValue());
+		case Div:
+			return new IntValue(lhs.intValue() / rhs.intValue());
+		case EQ:
+			return new BoolValue(lhs.intValue() == rhs.intValue());
+		case GE:
+			return new BoolValue(lhs.intValue() >= rhs.intValue());
+		case GT:
+			return new BoolValue(lhs.intValue() > rhs.intValue());
+		case LE:
+			return new BoolValue(lhs.intValue() <= rhs.intValue());
+		case LT:
+			return new BoolValue(lhs.intValue() < rhs.intValue());
+		case Minus:
+			return new IntValue(lhs.intValue() - rhs.intValue());
+		case Mod:
+			return new IntValue(lhs.intValue() % rhs.intValue());
+		case NE:
+			return new BoolValue(lhs.intValue() != rhs.intValue());
+		case Or:
+			return new BoolValue(lhs.boolValue() || rhs.boolValue());
+		case Plus:
+			return new IntValue(lhs.intValue() + rhs.intValue());
+		case Times:
+			return new IntValue(lhs.intValue() * rhs.intValue());
+		default:
+			throw new InterpreterError("Unknown operator", expr);
+		}
+	}
+
 	@Override
-	public Value visit(UnOp expr) {
-		Value value = expr.expr.accept(this);
+	public Void visit(UnOp expr) {
+		if (traversal.state() == 0 && !evaluate(expr.expr)) {
+			traversal.resume(1);
+			return null;
+		}
+
+		combine(expr);
+		return null;
+	}
+
+	/**
+	 * Replace the value of the operand of expr, on the stack, by its value.
+	 */
+	private void combine(UnOp expr) {
+		Value value = pop();
 		try {
-			switch (expr.op) {
-			case Neg:
-				return new IntValue(-value.intValue());
-			case Not:
-				return new BoolValue(!value.boolValue());
-			default:
-				throw new InterpreterError("Unknown operator", expr);
-			}
+			push(apply(expr, value));
 		} catch (ValueError e) {
 			throw new InterpreterError(e.getMessage(), expr);
 		}
 	}
 
+	private static Value apply(UnOp expr, Value value) throws ValueError {
+		switch (expr.op) {
+		case Neg:
+			return new IntValue(-value.intValue());
+		case Not:
+			return new BoolValue(!value.boolValue());
+		default:
+			throw new InterpreterError("Unknown operator", expr);
+		}
+	}
+
 	@Override
-	public Value visit(Num expr) {
-		return new IntValue(expr.value);
+	public Void visit(Num expr) {
+		push(value(expr));
+		return null;
 	}
 
 	@Override
-	public Value visit(Id expr) {
-		try {
-			return table.lookup(expr.id);
-		} catch (TableError e) {
-			throw new InterpreterError(e.getMessage(), expr);
-		}
+	public Void visit(Id expr) {
+		push(value(expr));
+		return null;
 	}
 
 	@Override
-	public Value visit(True expr) {
-		return new BoolValue(true);
+	public Void visit(True expr) {
+		push(value(expr));
+		return null;
 	}
 
 	@Override
-	public Value visit(False expr) {
-		return new BoolValue(false);
+	public Void visit(False expr) {
+		push(value(expr));
+		return null;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+package csc426;
+
+/**
+ * Recognizes the YASL keywords directly from a buffer of characters, without
+ * first building a String. A perfect hash on the length and the first and last
+ * characters selects the only keyword that could match, which is then
+ * compared character by character.
+ */
+public class Keywords {
+	/**
+	 * @param chars
+	 * @param offset
+	 * @param length
+	 * @return the keyword TokenType spelled by the given characters, or null
+	 */
+	public static TokenType lookup(char[] chars, int offset, int length) {
+		if (length < 2 || length > MAX_LENGTH) {
+			return null;
+		}
+		int slot = hash(length, chars[offset], chars[offset + length - 1]);
+		char[] word = WORDS[slot];
+		if (word == null || word.length != length) {
+			return null;
+		}
+		for (int i = 0; i < length; ++i) {
+			if (word[i] != chars[offset + i]) {
+				return null;
+			}
+		}
+		return TYPES[slot];
+	}
+
+	/**
+	 * @param s
+	 * @return the keyword TokenType spelled by s, or null
+	 */
+	public static TokenType lookup(CharSequence s) {
+		int length = s.length();
+		if (length < 2 || length > MAX_LENGTH) {
+			return null;
+		}
+		int slot = hash(length, s.charAt(0), s.charAt(length - 1));
+		char[] word = WORDS[slot];
+		if (word == null || word.length != length) {
+			return null;
+		}
+		for (int i = 0; i < length; ++i) {
+			if (word[i] != s.charAt(i)) {
+				return null;
+			}
+		}
+		return TYPES[slot];
+	}
+
+	/**
+	 * @param type
+	 * @return the shared lexeme String for a keyword TokenType
+	 */
+	public static String lexeme(TokenType type) {
+		return LEXEMES[type.ordinal()];
+	}
+
+	private static int hash(int length, char first, char last) {
+		return (7 * length + 5 * first + 23 * last) & (SLOTS - 1);
+	}
+
+	private static final int SLOTS = 32;
+	private static final int MAX_LENGTH = 7;
+	private static final char[][] WORDS = new char[SLOTS][];
+	private static final TokenType[] TYPES = new TokenType[SLOTS];
+	private static final String[] LEXEMES = new String[TokenType.values().length];
+
+	// fill the hash table from the keywords in State.tokenMap
+	static {
+		for (String word : State.tokenMap.keySet()) {
+			if (!Character.isLetter(word.charAt(0))) {
+				continue;
+			}
+			TokenType type = State.tokenMap.get(word);
+			int slot = hash(word.length(), word.charAt(0), word.charAt(word.length() - 1));
+			if (WORDS[slot] != null || word.length() > MAX_LENGTH) {
+				throw new IllegalStateException("Keyword hash is not perfect for " + word);
+			}
+			WORDS[slot] = word.toCharArray();
+			TYPES[slot] = type;
+			LEXEMES[type.ordinal()] = word;
+		}
+	}
+}
@@ -3,49 +3,132 @@ package csc426;
 
 import java.io.IOException;
 
+/**
+ * The parser's view of the token stream. Tokens are read from the Scanner
+ * into a ring buffer of CAPACITY slots, so the parser can look up to
+ * CAPACITY - 1 tokens past the current one, and can back up to a marked token
+ * as long as no more than CAPACITY - 1 tokens have been read since. The
+ * buffer is allocated once; reading a token only stores it in a slot.
+ */
 public class Lookahead {
+	/**
+	 * The number of tokens kept; a power of two.
+	 */
+	public static final int CAPACITY = 64;
+
 	public Lookahead(Scanner scanner) throws IOException {
 		this.scanner = scanner;
-		this.current = scanner.next();
+		this.ring = new Token[CAPACITY];
+		this.index = 0;
+		this.end = 0;
+		this.ring[end++] = scanner.next();
+	}
+
+	/**
+	 * Constructor for subclasses that supply tokens some other way.
+	 */
+	protected Lookahead() {
 	}
 
 	public Token current() {
-		return current;
+		return ring[index & MASK];
 	}
 
 	public boolean check(TokenType type) {
-		return current.type == type;
+		return current().type == type;
+	}
+
+	/**
+	 * @param k
+	 * @param type
+	 * @return true if the token k places ahead of the current one has the given type
+	 * @throws ParseError
+	 */
+	public boolean check(int k, TokenType type) throws ParseError {
+		return peek(k).type == type;
 	}
 
 	public Token match(TokenType type) throws ParseError {
-		Token token = current;
-		
+		Token token = current();
+
 		if (token.type == type) {
-			try {
-				current = scanner.next();
-			} catch (IOException e) {
-				throw new ParseError(e.getMessage());
-			}
-			return token;
+			return skip();
 		} else {
 			throw new ParseError("Error: Expected " + type + ", found " + token);
 		}
 	}
 
 	public Token skip() throws ParseError {
-		Token token = current;
-		try {
-			current = scanner.next();
-		} catch (IOException e) {
-			throw new ParseError(e.getMessage());
-		}
+		Token token = current();
+		++index;
+		fill(index);
 		return token;
 	}
 
+	/**
+	 * @param k
+	 *            at most CAPACITY - 1
+	 * @return the token k places ahead of the current one (the EOF token if
+	 *         past the end)
+	 * @throws ParseError
+	 */
+	public Token peek(int k) throws ParseError {
+		if (k >= CAPACITY) {
+			throw new IllegalArgumentException("Cannot look " + k + " tokens ahead");
+		}
+		fill(index + k);
+		return ring[(index + k) & MASK];
+	}
+
+	/**
+	 * @return a mark for the current token, to be passed to reset
+	 */
+	public int mark() {
+		return index;
+	}
+
+	/**
+	 * Back up (or skip forward) to a token previously returned by mark(). The
+	 * token must still be in the buffer.
+	 *
+	 * @param mark
+	 */
+	public void reset(int mark) {
+		if (mark < end - CAPACITY || mark >= end) {
+			throw new IllegalStateException("Token " + mark + " is no longer buffered");
+		}
+		index = mark;
+	}
+
+	/**
+	 * @return the number of tokens before the current one
+	 */
+	public int index() {
+		return index;
+	}
+
 	public void close() throws IOException {
 		scanner.close();
 	}
 
+	/**
+	 * Read tokens until token target is in the buffer.
+	 */
+	private void fill(int target) throws ParseError {
+		try {
+			while (end <= target) {
+				ring[end & MASK] = scanner.next();
+				++end;
+			}
+		} catch (IOException e) {
+			throw new ParseError(e.getMessage());
+		}
+	}
+
+	private static final int MASK = CAPACITY - 1;
+
 	private Scanner scanner;
-	private Token current;
-}
\ No newline at end of file
+	private Token[] ring; // token i is in ring[i & MASK], for end - CAPACITY <= i < end
+	private int index; // the current token
+	private int end; // the number of tokens read
+}
@@ -0,0 +1,102 @@
+package csc426;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A Source that reads a file through a memory mapping instead of a Reader. The
+ * file is taken to be UTF-8; since the lexical grammar of YASL is ASCII, runs
+ * of ASCII bytes are copied straight into the character buffer, and only the
+ * bytes of other characters (which may appear in comments and strings) go
+ * through a CharsetDecoder.
+ */
+public class MappedSource extends Source {
+	/**
+	 * Construct a Source mapping the given file, ready with the first
+	 * character as for Source(Reader).
+	 * 
+	 * @param path
+	 * @throws IOException
+	 */
+	public MappedSource(Path path) throws IOException {
+		this(path, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Construct a Source mapping the given file, decoding it in blocks of
+	 * bufferSize characters.
+	 * 
+	 * @param path
+	 * @param bufferSize
+	 * @throws IOException
+	 */
+	public MappedSource(Path path, int bufferSize) throws IOException {
+		super(Math.max(bufferSize, 2)); // room for a surrogate pair
+
+		// The mapping remains valid after the channel is closed
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("File too large to map: " + path);
+			}
+			this.bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+		this.decoder = StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		advance();
+	}
+
+	@Override
+	protected int read(char[] buffer, int offset, int length) {
+		int position = bytes.position();
+		int limit = bytes.limit();
+		if (position == limit) {
+			return -1;
+		}
+
+		// Fast path: copy ASCII bytes directly
+		int end = Math.min(limit, position + length);
+		int n = 0;
+		while (position < end) {
+			byte b = bytes.get(position);
+			if (b < 0) {
+				break;
+			}
+			buffer[offset + n++] = (char) b;
+			++position;
+		}
+		bytes.position(position);
+		if (n > 0 || position == limit) {
+			return n;
+		}
+
+		// Slow path: decode the run of non-ASCII bytes starting here. A UTF-8
+		// sequence never contains an ASCII byte, so the run is complete.
+		int run = position;
+		while (run < limit && bytes.get(run) < 0) {
+			++run;
+		}
+		ByteBuffer in = bytes.duplicate();
+		in.limit(run);
+		CharBuffer out = CharBuffer.wrap(buffer, offset, length);
+		decoder.reset();
+		decoder.decode(in, out, true);
+		decoder.flush(out);
+		bytes.position(in.position());
+		return out.position() - offset;
+	}
+
+	private MappedByteBuffer bytes;
+	private CharsetDecoder decoder;
+}
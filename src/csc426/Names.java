@@ -0,0 +1,166 @@
+package csc426;
+
+/**
+ * A pool of identifier names. Each distinct name is stored once, as a single
+ * String instance, and given a small integer id in order of first appearance.
+ * Names can be added straight from a character buffer, so a String is only
+ * built the first time a name is seen.
+ */
+public class Names {
+	public Names() {
+		this.slots = new int[64];
+		this.names = new String[32];
+		this.hashes = new int[32];
+		this.size = 0;
+	}
+
+	/**
+	 * Find or add the name spelled by the given characters.
+	 * 
+	 * @param chars
+	 * @param offset
+	 * @param length
+	 * @return the id of the name
+	 */
+	public int add(char[] chars, int offset, int length) {
+		int hash = 0;
+		for (int i = 0; i < length; ++i) {
+			hash = 31 * hash + chars[offset + i];
+		}
+
+		int mask = slots.length - 1;
+		for (int i = hash & mask;; i = (i + 1) & mask) {
+			int id = slots[i] - 1;
+			if (id < 0) {
+				return insert(i, hash, new String(chars, offset, length));
+			}
+			if (hashes[id] == hash && matches(names[id], chars, offset, length)) {
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * Find or add the given name.
+	 * 
+	 * @param name
+	 * @return the id of the name
+	 */
+	public int add(String name) {
+		int hash = name.hashCode();
+		int mask = slots.length - 1;
+		for (int i = hash & mask;; i = (i + 1) & mask) {
+			int id = slots[i] - 1;
+			if (id < 0) {
+				return insert(i, hash, name);
+			}
+			if (hashes[id] == hash && names[id].equals(name)) {
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * Find the given name without adding it, so that threads may share a
+	 * pool that is no longer being added to.
+	 * 
+	 * @param name
+	 * @return the id of the name, or -1 if it has not been added
+	 */
+	public int find(String name) {
+		int hash = name.hashCode();
+		int mask = slots.length - 1;
+		for (int i = hash & mask;; i = (i + 1) & mask) {
+			int id = slots[i] - 1;
+			if (id < 0) {
+				return -1;
+			}
+			if (hashes[id] == hash && names[id].equals(name)) {
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * @param id
+	 * @return the name with the given id
+	 */
+	public String get(int id) {
+		return names[id];
+	}
+
+	/**
+	 * @param chars
+	 * @param offset
+	 * @param length
+	 * @return the shared String for the name spelled by the given characters
+	 */
+	public String intern(char[] chars, int offset, int length) {
+		return get(add(chars, offset, length));
+	}
+
+	/**
+	 * @param name
+	 * @return the shared String equal to name
+	 */
+	public String intern(String name) {
+		return get(add(name));
+	}
+
+	/**
+	 * @return the number of distinct names
+	 */
+	public int size() {
+		return size;
+	}
+
+	private int insert(int slot, int hash, String name) {
+		if (size == names.length) {
+			String[] moreNames = new String[size * 2];
+			int[] moreHashes = new int[size * 2];
+			System.arraycopy(names, 0, moreNames, 0, size);
+			System.arraycopy(hashes, 0, moreHashes, 0, size);
+			names = moreNames;
+			hashes = moreHashes;
+		}
+		int id = size++;
+		names[id] = name;
+		hashes[id] = hash;
+		slots[slot] = id + 1;
+
+		// keep the table at most half full
+		if (2 * size > slots.length) {
+			rehash(slots.length * 2);
+		}
+		return id;
+	}
+
+	private void rehash(int capacity) {
+		slots = new int[capacity];
+		int mask = capacity - 1;
+		for (int id = 0; id < size; ++id) {
+			int i = hashes[id] & mask;
+			while (slots[i] != 0) {
+				i = (i + 1) & mask;
+			}
+			slots[i] = id + 1;
+		}
+	}
+
+	private static boolean matches(String name, char[] chars, int offset, int length) {
+		if (name.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; ++i) {
+			if (name.charAt(i) != chars[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int[] slots; // open-addressed table of id + 1, or 0 if empty
+	private String[] names;
+	private int[] hashes;
+	private int size;
+}
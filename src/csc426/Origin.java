@@ -0,0 +1,141 @@
+package csc426;
+
+/**
+ * Where a subtree kept by IncrementalParser from one parse to the next has
+ * moved since it was parsed. The nodes of the subtree keep the positions
+ * they were parsed with and refer to the Origin of the innermost such
+ * subtree they belong to (see AST.start), so moving the subtree only updates
+ * its Origin, however many nodes it has. A subtree nested in another is also
+ * moved with the one it is in.
+ *
+ * An edit before a subtree moves it down by some lines, and across by some
+ * columns only on the line where it starts: the other lines of the subtree
+ * start after a newline inside it, which the edit did not touch.
+ *
+ * A run of consecutive sibling subtrees, or of consecutive runs, also has an
+ * Origin, with no node: the siblings move with it, and a run the edit did
+ * not touch is kept in one step.
+ */
+final class Origin {
+	/**
+	 * @param node
+	 *            the root of the subtree
+	 * @param start
+	 *            the index of its first token
+	 * @param length
+	 *            the number of its tokens
+	 * @param first
+	 *            the packed position of its first token
+	 */
+	Origin(AST node, int start, int length, long first) {
+		this.node = node;
+		this.nodes = null;
+		this.level = 0;
+		this.start = start;
+		this.length = length;
+		this.first = first;
+	}
+
+	/**
+	 * Make a run, and make the subtrees or runs in it move with it.
+	 *
+	 * @param children
+	 *            the subtrees or runs in the run, in order, each of them of
+	 *            the level below, with no tokens between them
+	 * @param level
+	 *            1 for a run of subtrees, 2 for a run of those, and so on
+	 * @param start
+	 *            the index of its first token
+	 * @param length
+	 *            the number of its tokens
+	 * @param first
+	 *            the packed position of its first token
+	 */
+	Origin(Origin[] children, int level, int start, int length, long first) {
+		this.node = null;
+		this.level = level;
+		this.start = start;
+		this.length = length;
+		this.first = first;
+		int count = 0;
+		for (Origin child : children) {
+			count += (child.node != null) ? 1 : child.nodes.length;
+		}
+		this.nodes = new AST[count];
+		count = 0;
+		for (Origin child : children) {
+			if (child.node != null) {
+				nodes[count++] = child.node;
+			} else {
+				System.arraycopy(child.nodes, 0, nodes, count, child.nodes.length);
+				count += child.nodes.length;
+			}
+			child.attach(this, start);
+		}
+	}
+
+	/**
+	 * @param position
+	 *            a position a node of the subtree was parsed with
+	 * @return where that node is now
+	 */
+	long move(long position) {
+		for (Origin origin = this; origin != null; origin = origin.parent) {
+			if (Position.line(position) == Position.line(origin.first)) {
+				position += origin.columns;
+			}
+			position += (long) origin.lines << 32;
+		}
+		return position;
+	}
+
+	/**
+	 * Move the subtree on its own, so that its first token is now at the
+	 * given position.
+	 *
+	 * @param position
+	 */
+	void moveTo(long position) {
+		parent = null;
+		lines = Position.line(position) - Position.line(first);
+		columns = Position.column(position) - Position.column(first);
+	}
+
+	/**
+	 * Make the subtree move with the one it has been parsed into, which
+	 * starts at the given token.
+	 *
+	 * @param outer
+	 * @param start
+	 *            the index of the first token of outer
+	 */
+	void attach(Origin outer, int start) {
+		parent = outer;
+		offset = this.start - start;
+	}
+
+	final AST node; // null for a run
+	final AST[] nodes; // the roots of the subtrees of a run, in order
+	final int level;
+	final int length;
+	private final long first;
+	private int lines, columns;
+
+	/**
+	 * The index of the first token when the subtree was last parsed or kept
+	 */
+	int start;
+
+	/**
+	 * The subtree this one is nested in, if any, and how many tokens after its
+	 * start this one starts
+	 */
+	Origin parent;
+	int offset;
+
+	/**
+	 * Whether an edit has touched the run, which then cannot be kept whole
+	 * (a subtree is forgotten by dropping it from its token instead)
+	 */
+	boolean forgotten;
+}
@@ -0,0 +1,187 @@
+package csc426;
+
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Scans a large source into a TokenBuffer by splitting it into chunks that
+ * are lexed concurrently. A chunk may only end just after a newline that the
+ * scanner would consume while between tokens (not inside a string literal or
+ * a {} comment, for example); such newlines are found by a pre-pass that runs
+ * the ScanTable state machine without building any tokens. Each chunk is then
+ * scanned as if it were a file of its own, and the results are stitched
+ * together with their line numbers and offsets corrected, giving exactly the
+ * tokens (and errors) of a sequential scan.
+ */
+public class ParallelLexer {
+	/**
+	 * Chunks smaller than this are not worth a task of their own.
+	 */
+	public static final int MIN_CHUNK_SIZE = 256 * 1024;
+
+	/**
+	 * Read and scan a UTF-8 file on the common fork-join pool.
+	 * 
+	 * @param path
+	 * @return the token buffer
+	 * @throws IOException
+	 */
+	public static TokenBuffer scan(Path path) throws IOException {
+		char[] text = new String(Files.readAllBytes(path), StandardCharsets.UTF_8).toCharArray();
+		return scan(text, text.length, ForkJoinPool.commonPool(), MIN_CHUNK_SIZE);
+	}
+
+	/**
+	 * Scan the first length characters of text, split into chunks of at least
+	 * chunkSize characters, on the given pool.
+	 * 
+	 * @param text
+	 * @param length
+	 * @param pool
+	 * @param chunkSize
+	 * @return the token buffer
+	 */
+	public static TokenBuffer scan(char[] text, int length, ForkJoinPool pool, int chunkSize) {
+		return scan(text, length, pool, chunkSize, Diagnostics.STDERR);
+	}
+
+	/**
+	 * Scan the first length characters of text, split into chunks of at least
+	 * chunkSize characters, on the given pool. Each chunk records its errors in
+	 * a DiagnosticBuffer of its own, and these are passed on to diagnostics in
+	 * source order once all of the chunks are done. A chunk records as many
+	 * errors as diagnostics could still take: all of them, unless it is a
+	 * DiagnosticBuffer, in which case those beyond its capacity are counted
+	 * and carried over as dropped.
+	 * 
+	 * @param text
+	 * @param length
+	 * @param pool
+	 * @param chunkSize
+	 * @param diagnostics
+	 * @return the token buffer
+	 */
+	public static TokenBuffer scan(char[] text, int length, ForkJoinPool pool, int chunkSize,
+			Diagnostics diagnostics) {
+		chunkSize = Math.max(chunkSize, length / (4 * pool.getParallelism()));
+		if (pool.getParallelism() < 2 || length < 2 * chunkSize) {
+			return scan(text, 0, length, diagnostics);
+		}
+		int capacity = Integer.MAX_VALUE;
+		if (diagnostics instanceof DiagnosticBuffer) {
+			DiagnosticBuffer buffer = (DiagnosticBuffer) diagnostics;
+			capacity = buffer.capacity() - buffer.size();
+		}
+		List<Chunk> chunks = split(text, length, chunkSize, capacity);
+
+		List<Chunk> tasks = chunks.subList(1, chunks.size());
+		for (Chunk chunk : tasks) {
+			pool.execute(chunk);
+		}
+		chunks.get(0).invoke();
+
+		Names names = new Names();
+		TokenBuffer result = new TokenBuffer(names);
+		for (int i = 0; i < chunks.size(); ++i) {
+			Chunk chunk = chunks.get(i);
+			boolean last = (i == chunks.size() - 1);
+			append(result, chunk.join(), chunk.line, chunk.start, last);
+			chunk.errors.replay(diagnostics, chunk.line);
+		}
+		return result;
+	}
+
+	/**
+	 * Split the text just after newlines seen between tokens, at roughly every
+	 * chunkSize characters, each chunk to record up to capacity errors. This
+	 * mirrors ScanTable.scan, but only tracks the state.
+	 */
+	private static List<Chunk> split(char[] text, int length, int chunkSize, int capacity) {
+		List<Chunk> result = new ArrayList<>();
+		int start = 0;
+		int startLine = 0; // newlines before start
+		int lines = 0;
+		int state = ScanTable.S_START;
+
+		for (int i = 0; i < length; ++i) {
+			char c = text[i];
+			int cls = ScanTable.classify(c);
+			int entry = ScanTable.TRANSITIONS[state * ScanTable.CLASSES + cls];
+			if ((entry >>> 8) == ScanTable.A_EMIT) {
+				// The token ends before c, which is then seen from the start state
+				entry = ScanTable.TRANSITIONS[ScanTable.S_START * ScanTable.CLASSES + cls];
+			}
+			state = entry & 0xFF;
+
+			if (c == '\n') {
+				++lines;
+				if (state == ScanTable.S_START && i + 1 - start >= chunkSize && i + 1 < length) {
+					result.add(new Chunk(text, start, i + 1 - start, startLine, capacity));
+					start = i + 1;
+					startLine = lines;
+				}
+			}
+		}
+		result.add(new Chunk(text, start, length - start, startLine, capacity));
+		return result;
+	}
+
+	/**
+	 * Append the tokens of one chunk, moving them down by the given number of
+	 * lines and along by the given number of characters. The EOF token is only
+	 * kept from the last chunk.
+	 */
+	private static void append(TokenBuffer result, TokenBuffer chunk, int lines, int offset, boolean last) {
+		Names names = chunk.lexemes();
+		int[] ids = new int[names.size()];
+		for (int id = 0; id < ids.length; ++id) {
+			ids[id] = result.lexemes().add(names.get(id));
+		}
+
+		result.append(chunk, last ? chunk.size() : chunk.size() - 1, ids, lines, offset);
+	}
+
+	/**
+	 * Scan part of the text as if it were a whole file.
+	 */
+	private static TokenBuffer scan(char[] text, int start, int length, Diagnostics diagnostics) {
+		try {
+			return TokenBuffer.scan(new Source(new CharArrayReader(text, start, length),
+					Source.DEFAULT_BUFFER_SIZE), diagnostics);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * The task of scanning one chunk.
+	 */
+	@SuppressWarnings("serial")
+	private static class Chunk extends RecursiveTask<TokenBuffer> {
+		Chunk(char[] text, int start, int length, int line, int capacity) {
+			this.text = text;
+			this.start = start;
+			this.length = length;
+			this.line = line;
+			this.errors = new DiagnosticBuffer(capacity);
+		}
+
+		@Override
+		protected TokenBuffer compute() {
+			return scan(text, start, length, errors);
+		}
+
+		final char[] text;
+		final int start, length, line;
+		final DiagnosticBuffer errors;
+	}
+}
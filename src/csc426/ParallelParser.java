@@ -0,0 +1,180 @@
+package csc426;
+
+import static csc426.TokenType.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import csc426.AST.ProcDecl;
+import csc426.AST.Program;
+
+/**
+ * Parses a TokenBuffer with the top-level procedure declarations parsed
+ * concurrently. A pre-pass over the token types finds where each top-level
+ * proc ... ; ends, by counting the begin/end pairs that close the blocks of
+ * it and of the procedures nested in it. Each declaration is then parsed by a
+ * Parser of its own on a fork-join pool, while the program itself is parsed
+ * on the calling thread, which takes each declaration's result when it gets
+ * there.
+ *
+ * A result is only taken if its declaration parsed without errors and ended
+ * exactly where the pre-pass said; otherwise (and for any declaration the
+ * pre-pass could not delimit) the calling thread parses the declaration
+ * itself. So the program, and the errors, are exactly those of a sequential
+ * Parser.
+ */
+public class ParallelParser {
+	/**
+	 * Programs with fewer top-level procedures than this are parsed
+	 * sequentially.
+	 */
+	public static final int MIN_PROCS = 8;
+
+	/**
+	 * Parse the tokens on the common fork-join pool, throwing a ParseError at
+	 * the first syntax error.
+	 *
+	 * @param tokens
+	 * @return the program
+	 * @throws ParseError
+	 */
+	public static Program parse(TokenBuffer tokens) throws ParseError {
+		return parse(tokens, ForkJoinPool.commonPool(), null);
+	}
+
+	/**
+	 * Parse the tokens on the given pool. If errors is null, throw a
+	 * ParseError at the first syntax error; otherwise recover, adding each
+	 * error to the list as Parser(Lookahead, List) does.
+	 *
+	 * @param tokens
+	 * @param pool
+	 * @param errors
+	 * @return the program
+	 * @throws ParseError
+	 */
+	public static Program parse(TokenBuffer tokens, ForkJoinPool pool, List<ParseError> errors) throws ParseError {
+		List<Declaration> declarations = split(tokens);
+		TokenBufferLookahead lookahead = new TokenBufferLookahead(tokens);
+		if (pool.getParallelism() < 2 || declarations.size() < MIN_PROCS) {
+			return parser(lookahead, errors).parseProgram();
+		}
+
+		for (Declaration declaration : declarations) {
+			pool.execute(declaration);
+		}
+		return new Assembler(lookahead, errors, declarations).parseProgram();
+	}
+
+	/**
+	 * Find the top-level procedure declarations, in order. The list stops at
+	 * the first one whose end cannot be found.
+	 */
+	private static List<Declaration> split(TokenBuffer tokens) {
+		List<Declaration> result = new ArrayList<>();
+		int size = tokens.size();
+		int i = 0;
+		while (i < size && tokens.type(i) != PROC && tokens.type(i) != BEGIN) {
+			++i;
+		}
+
+		while (i < size && tokens.type(i) == PROC) {
+			int start = i;
+			int blocks = 1; // blocks opened by proc and not yet closed
+			int depth = 0; // begins not yet matched by an end
+			for (++i; i < size && blocks > 0; ++i) {
+				TokenType type = tokens.type(i);
+				if (type == PROC && depth == 0) {
+					++blocks;
+				} else if (type == BEGIN) {
+					++depth;
+				} else if (type == END && --depth == 0) {
+					--blocks;
+				} else if (type == PERIOD || type == EOF) {
+					return result;
+				}
+			}
+			if (blocks > 0 || i == size || tokens.type(i) != SEMI) {
+				return result;
+			}
+			++i;
+			result.add(new Declaration(tokens, start, i));
+		}
+		return result;
+	}
+
+	private static Parser parser(Lookahead lookahead, List<ParseError> errors) {
+		return (errors == null) ? new Parser(lookahead) : new Parser(lookahead, errors);
+	}
+
+	/**
+	 * The task of parsing one top-level procedure declaration. Its result is
+	 * null if the declaration had errors or did not end at the expected token.
+	 */
+	@SuppressWarnings("serial")
+	private static class Declaration extends RecursiveTask<ProcDecl> {
+		Declaration(TokenBuffer tokens, int start, int end) {
+			this.tokens = tokens;
+			this.start = start;
+			this.end = end;
+			this.share = AST.sharing() != null;
+		}
+
+		@Override
+		protected ProcDecl compute() {
+			TokenBufferLookahead lookahead = new TokenBufferLookahead(tokens);
+			lookahead.reset(start);
+			// Share expressions on this thread if the caller's thread does
+			HashCons previous = AST.share(share ? new HashCons() : null);
+			try {
+				ProcDecl result = new Parser(lookahead).parseProcDecl();
+				return (lookahead.index() == end) ? result : null;
+			} catch (ParseError e) {
+				return null;
+			} finally {
+				AST.share(previous);
+			}
+		}
+
+		final TokenBuffer tokens;
+		final int start, end;
+		final boolean share;
+	}
+
+	/**
+	 * A Parser that takes the top-level procedure declarations from the
+	 * tasks that parsed them. (With a null list of errors, it throws at the
+	 * first error, like Parser(Lookahead).)
+	 */
+	private static class Assembler extends Parser {
+		Assembler(TokenBufferLookahead lookahead, List<ParseError> errors, List<Declaration> declarations) {
+			super(lookahead, errors);
+			this.la = lookahead;
+			this.declarations = declarations;
+			this.next = 0;
+		}
+
+		@Override
+		public ProcDecl parseProcDecl() throws ParseError {
+			int start = la.index();
+			while (next < declarations.size() && declarations.get(next).start < start) {
+				++next;
+			}
+			if (next < declarations.size() && declarations.get(next).start == start) {
+				Declaration declaration = declarations.get(next++);
+				ProcDecl result = declaration.join();
+				if (result != null) {
+					la.reset(declaration.end);
+					return result;
+				}
+			}
+			return super.parseProcDecl();
+		}
+
+		private final TokenBufferLookahead la;
+		private final List<Declaration> declarations;
+		private int next;
+	}
+}
@@ -5,48 +5,85 @@ import static csc426.AST.*;
 import static csc426.TokenType.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 
 public class Parser {
 	private Lookahead la;
+	private List<ParseError> errors;
+	private long lastErrorPosition;
+	private int recoveries;
 
+	/**
+	 * Construct a parser that throws a ParseError at the first syntax error.
+	 * 
+	 * @param lookahead
+	 */
 	public Parser(Lookahead lookahead) {
 		this.la = lookahead;
+		this.errors = null;
+	}
+
+	/**
+	 * Construct a parser that recovers from syntax errors, adding each one to
+	 * the given list, and returns as much of the program as it could parse.
+	 * After an error in a declaration or statement it skips ahead to a
+	 * semicolon (which it consumes), to end, to a period or to a keyword
+	 * that starts a declaration, and carries on from there. Only one error is
+	 * reported at any one token.
+	 * 
+	 * @param lookahead
+	 * @param errors
+	 */
+	public Parser(Lookahead lookahead, List<ParseError> errors) {
+		this.la = lookahead;
+		this.errors = errors;
 	}
 
 	public Program parseProgram() throws ParseError {
-		Position position = la.current().position;
-		la.match(PROGRAM);
-		String name = la.match(ID).lexeme;
-		la.match(SEMI);
+		long position = la.current().pos;
+		expect(PROGRAM);
+		Token name = expect(ID);
+		expect(SEMI);
 		Block block = parseBlock();
-		la.match(PERIOD);
-		la.match(EOF);
+		expect(PERIOD);
+		expect(EOF);
 
-		return program(name, block, position);
+		return program(name == null ? "" : name.lexeme, block, position);
 	}
 
 	public Block parseBlock() throws ParseError {
-		Position position = la.current().position;
+		long position = la.current().pos;
 		List<ConstDecl> consts = parseConstDecls();
 		List<VarDecl> vars = parseVarDecls();
 		List<ProcDecl> procs = parseProcDecls();
-		la.match(BEGIN);
+		expect(BEGIN);
+		// Expressions are only shared within the statements of one block (see
+		// AST.share), so that a shared node never refers to two declarations
+		HashCons shared = sharing();
+		if (shared != null) {
+			shared.clear();
+		}
 		List<Stmt> stmts = parseStmts();
-		la.match(END);
+		expect(END);
 		return block(consts, vars, procs, stmts, position);
 	}
 
 	public List<ConstDecl> parseConstDecls() throws ParseError {
 		List<ConstDecl> result = new ArrayList<>();
 		while (la.check(CONST)) {
-			result.add(parseConstDecl());
+			try {
+				result.add(parseConstDecl());
+			} catch (ParseError e) {
+				recover(e, DECL_SYNC);
+			}
 		}
 		return result;
 	}
 
 	public ConstDecl parseConstDecl() throws ParseError {
-		Position position = la.current().position;
+		long position = la.current().pos;
 		la.match(CONST);
 		String id = la.match(ID).lexeme;
 		la.match(ASSIGN);
@@ -64,13 +101,17 @@ public class Parser {
 	public List<VarDecl> parseVarDecls() throws ParseError {
 		List<VarDecl> result = new ArrayList<>();
 		while (la.check(VAR)) {
-			result.add(parseVarDecl());
+			try {
+				result.add(parseVarDecl());
+			} catch (ParseError e) {
+				recover(e, DECL_SYNC);
+			}
 		}
 		return result;
 	}
 
 	public VarDecl parseVarDecl() throws ParseError {
-		Position position = la.current().position;
+		long position = la.current().pos;
 		la.match(VAR);
 		String id = la.match(ID).lexeme;
 		la.match(COLON);
@@ -80,13 +121,14 @@ public class Parser {
 	}
 
 	public Type parseType() throws ParseError {
-		if (la.check(INT)) {
+		switch (la.current().type) {
+		case INT:
 			la.skip();
 			return Type.Int;
-		} else if (la.check(BOOL)) {
+		case BOOL:
 			la.skip();
 			return Type.Bool;
-		} else {
+		default:
 			throw new ParseError("Error: expected a type, found " + la.current());
 		}
 	}
@@ -94,19 +136,32 @@ public class Parser {
 	public List<ProcDecl> parseProcDecls() throws ParseError {
 		List<ProcDecl> result = new ArrayList<>();
 		while (la.check(PROC)) {
-			result.add(parseProcDecl());
+			if (parsed(result, ProcDecl.class)) {
+				continue;
+			}
+			try {
+				result.add(parseProcDecl());
+			} catch (ParseError e) {
+				recover(e, DECL_SYNC);
+			}
 		}
 		return result;
 	}
 
 	public ProcDecl parseProcDecl() throws ParseError {
-		Position position = la.current().position;
+		long position = la.current().pos;
 		la.match(PROC);
 		String id = la.match(ID).lexeme;
-		List<Param> params = parseParamList();
-		la.match(SEMI);
+		List<Param> params;
+		try {
+			params = parseParamList();
+			la.match(SEMI);
+		} catch (ParseError e) {
+			recover(e, DECL_SYNC);
+			params = new ArrayList<>();
+		}
 		Block block = parseBlock();
-		la.match(SEMI);
+		expect(SEMI);
 		return procDecl(id, params, block, position);
 	}
 
@@ -132,7 +187,7 @@ public class Parser {
 	}
 
 	public Param parseParam() throws ParseError {
-		Position position = la.current().position;
+		long position = la.current().pos;
 		if (la.check(VAR)) {
 			la.skip();
 			String id = la.match(ID).lexeme;
@@ -150,50 +205,146 @@ public class Parser {
 	public List<Stmt> parseStmts() throws ParseError {
 		List<Stmt> result = new ArrayList<>();
 		while (!la.check(END)) {
-			result.add(parseStmt());
+			if (parsed(result, Stmt.class)) {
+				continue;
+			}
+			Stmt stmt = parseStmt();
+			if (stmt == null) {
+				break;
+			}
+			result.add(stmt);
 		}
 		return result;
 	}
 
+	/**
+	 * Parse a statement. Compound statements are parsed with an explicit stack
+	 * of the begin, if and while statements still open, so that nesting depth
+	 * does not use the Java stack.
+	 * 
+	 * When recovering from errors, the statements that cannot be completed are
+	 * dropped; the result is null if nothing is left of the statement and
+	 * parsing stopped at a token that ends the enclosing statement list.
+	 * 
+	 * @return the statement
+	 * @throws ParseError
+	 */
 	public Stmt parseStmt() throws ParseError {
-		Position position = la.current().position;
-		if (la.check(ID)) {
-			String id = la.match(ID).lexeme;
-			if (la.check(ASSIGN)) {
-				la.skip();
-				Expr expr = parseExpr();
-				la.match(SEMI);
-				return assignStmt(id, expr, position);
-			} else {
-				List<Expr> args = parseArgList();
-				la.match(SEMI);
-				return callStmt(id, args, position);
+		List<OpenStmt> open = new ArrayList<>();
+		while (true) {
+			Stmt result;
+			try {
+				result = startStmt(open);
+			} catch (ParseError e) {
+				boolean resumed = recover(e, STMT_SYNC);
+				if (la.check(END)) {
+					while (!open.isEmpty() && open.get(open.size() - 1).body == null) {
+						open.remove(open.size() - 1);
+					}
+					if (open.isEmpty()) {
+						return null;
+					}
+				} else if (!resumed) {
+					return null;
+				}
+				continue;
+			}
+			if (result == null) {
+				continue;
+			}
+
+			// Complete the open statements that end with this one
+			while (!open.isEmpty()) {
+				OpenStmt top = open.get(open.size() - 1);
+				if (top.body != null) {
+					top.body.add(result);
+					break;
+				} else if (top.type == IF && la.check(ELSE)) {
+					la.skip();
+					top.type = ELSE;
+					top.trueClause = result;
+					break;
+				}
+				open.remove(open.size() - 1);
+				if (top.type == IF) {
+					result = ifThenStmt(top.test, result, top.position);
+				} else if (top.type == ELSE) {
+					result = ifThenElseStmt(top.test, top.trueClause, result, top.position);
+				} else {
+					result = whileStmt(top.test, result, top.position);
+				}
+			}
+			if (open.isEmpty()) {
+				return result;
+			}
+		}
+	}
+
+	/**
+	 * Start a statement: open a compound statement, or parse a simple one, or
+	 * close the innermost open begin if it is ending.
+	 * 
+	 * @return the statement completed, or null if one was opened
+	 * @throws ParseError
+	 */
+	private Stmt startStmt(List<OpenStmt> open) throws ParseError {
+		OpenStmt top = open.isEmpty() ? null : open.get(open.size() - 1);
+		long position = la.current().pos;
+		switch (la.current().type) {
+		case END:
+			if (top == null || top.body == null) {
+				return parseSimpleStmt();
 			}
-		} else if (la.check(BEGIN)) {
 			la.skip();
-			List<Stmt> body = parseStmts();
-			la.match(END);
+			open.remove(open.size() - 1);
 			la.match(SEMI);
-			return sequenceStmt(body, position);
-		} else if (la.check(IF)) {
+			return sequenceStmt(top.body, top.position);
+		case BEGIN:
+			la.skip();
+			open.add(new OpenStmt(BEGIN, null, position));
+			return null;
+		case IF: {
 			la.skip();
 			Expr test = parseExpr();
 			la.match(THEN);
-			Stmt trueClause = parseStmt();
-			if (la.check(ELSE)) {
-				la.skip();
-				Stmt falseClause = parseStmt();
-				return ifThenElseStmt(test, trueClause, falseClause, position);
-			} else {
-				return ifThenStmt(test, trueClause, position);
-			}
-		} else if (la.check(WHILE)) {
+			open.add(new OpenStmt(IF, test, position));
+			return null;
+		}
+		case WHILE: {
 			la.skip();
 			Expr test = parseExpr();
 			la.match(DO);
-			Stmt body = parseStmt();
-			return whileStmt(test, body, position);
-		} else if (la.check(PROMPT)) {
+			open.add(new OpenStmt(WHILE, test, position));
+			return null;
+		}
+		default:
+			return parseSimpleStmt();
+		}
+	}
+
+	/**
+	 * Parse a statement that contains no other statements.
+	 * 
+	 * @return the statement
+	 * @throws ParseError
+	 */
+	public Stmt parseSimpleStmt() throws ParseError {
+		long position = la.current().pos;
+		switch (la.current().type) {
+		case ID:
+			if (la.check(1, ASSIGN)) {
+				String id = la.skip().lexeme;
+				la.skip();
+				Expr expr = parseExpr();
+				la.match(SEMI);
+				return assignStmt(id, expr, position);
+			} else {
+				String id = la.skip().lexeme;
+				List<Expr> args = parseArgList();
+				la.match(SEMI);
+				return callStmt(id, args, position);
+			}
+		case PROMPT: {
 			la.skip();
 			String message = la.match(STRING).lexeme;
 			if (la.check(COMMA)) {
@@ -205,16 +356,127 @@ public class Parser {
 				la.match(SEMI);
 				return promptStmt(message, position);
 			}
-		} else if (la.check(PRINT)) {
+		}
+		case PRINT: {
 			la.skip();
 			List<Item> items = parseItems();
 			la.match(SEMI);
 			return printStmt(items, position);
-		} else {
+		}
+		default:
 			throw new ParseError("Error: expected a statement, found " + la.current());
 		}
 	}
 
+	/**
+	 * @return the syntax errors recovered from so far, or null if this parser
+	 *         does not recover
+	 */
+	public List<ParseError> errors() {
+		return errors;
+	}
+
+	/**
+	 * Match a token that is required at this point. When recovering, a missing
+	 * token is reported and parsing carries on as if it had been there.
+	 * 
+	 * @param type
+	 * @return the token, or null if it was missing
+	 * @throws ParseError
+	 */
+	private Token expect(TokenType type) throws ParseError {
+		if (errors == null || la.check(type)) {
+			return la.match(type);
+		}
+		report(new ParseError("Error: Expected " + type + ", found " + la.current()));
+		return null;
+	}
+
+	/**
+	 * Recover from a syntax error by skipping to one of the given tokens,
+	 * consuming it if it is a semicolon; rethrow the error if this parser does
+	 * not recover.
+	 * 
+	 * @param e
+	 * @param sync
+	 * @return true if parsing resumes after a semicolon
+	 * @throws ParseError
+	 */
+	private boolean recover(ParseError e, EnumSet<TokenType> sync) throws ParseError {
+		if (errors == null) {
+			throw e;
+		}
+		report(e);
+		while (!sync.contains(la.current().type) && !la.check(EOF)) {
+			la.skip();
+		}
+		if (la.check(SEMI)) {
+			la.skip();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Add to a list of declarations or statements some that are already
+	 * parsed, instead of parsing the next one, and skip their tokens. This
+	 * parser has none; IncrementalParser keeps them from one parse to the
+	 * next.
+	 * 
+	 * @param list
+	 * @param kind
+	 *            the class of the elements of list
+	 * @return true if any were added
+	 */
+	<T extends AST> boolean parsed(List<T> list, Class<T> kind) {
+		return false;
+	}
+
+	/**
+	 * @return the number of syntax errors recovered from so far, including
+	 *         those left out of errors() for being at the same token as the
+	 *         one before
+	 */
+	int recoveries() {
+		return recoveries;
+	}
+
+	private void report(ParseError e) {
+		++recoveries;
+		long position = la.current().pos;
+		if (errors.isEmpty() || position != lastErrorPosition) {
+			errors.add(e);
+		}
+		lastErrorPosition = position;
+	}
+
+	/**
+	 * Tokens to skip to after an error in a statement, or in a declaration
+	 * (including the heading of a procedure).
+	 */
+	private static final EnumSet<TokenType> STMT_SYNC = EnumSet.of(SEMI, END, PERIOD, CONST, VAR, PROC);
+	private static final EnumSet<TokenType> DECL_SYNC = EnumSet.of(SEMI, END, PERIOD, CONST, VAR, PROC, BEGIN);
+
+	/**
+	 * A compound statement whose parts are still being parsed: a begin
+	 * collecting its body, an if waiting for its true clause (or, as ELSE, for
+	 * its false clause), or a while waiting for its body.
+	 */
+	private static class OpenStmt {
+		TokenType type;
+		final Expr test;
+		final long position;
+		final List<Stmt> body;
+		Stmt trueClause;
+
+		OpenStmt(TokenType type, Expr test, long position) {
+			this.type = type;
+			this.test = test;
+			this.position = position;
+			this.body = (type == BEGIN) ? new ArrayList<>() : null;
+		}
+	}
+
 	public List<Expr> parseArgList() throws ParseError {
 		if (la.check(LPAREN)) {
 			la.skip();
@@ -247,7 +509,7 @@ public class Parser {
 	}
 
 	public Item parseItem() throws ParseError {
-		Position position = la.current().position;
+		long position = la.current().pos;
 		if (la.check(STRING)) {
 			String message = la.skip().lexeme;
 			return stringItem(message, position);
@@ -257,127 +519,210 @@ public class Parser {
 		}
 	}
 
+	/**
+	 * Parse an expression by precedence climbing, in a single loop over the
+	 * tokens with explicit stacks of operands and pending operators, so that
+	 * neither long operator chains nor deep parentheses use the Java stack.
+	 * Binary operators are found through the PRECEDENCE and BINARY tables;
+	 * operators of equal precedence associate to the left, and a relational
+	 * operator may occur at most once per level of parentheses. Prefix
+	 * operators apply to the following factor only.
+	 * 
+	 * @return the expression
+	 * @throws ParseError
+	 */
 	public Expr parseExpr() throws ParseError {
-		Expr e1 = parseSimpleExpr();
-		if (la.check(EQUAL) || la.check(NOTEQUAL) || la.check(LESSEQUAL)
-				|| la.check(GREATEREQUAL) || la.check(LESS) || la.check(GREATER)) {
-			Position position = la.current().position;
-			Op2 op = parseRelOp();
-			Expr e2 = parseSimpleExpr();
-			return binOpExpr(e1, op, e2, position);
-		}
-		return e1;
-	}
-	
-	public Op2 parseRelOp() throws ParseError {
-		if (la.check(EQUAL)) {
-			la.skip();
-			return Op2.EQ;
-		} else if (la.check(NOTEQUAL)) {
-			la.skip();
-			return Op2.NE;
-		} else if (la.check(LESSEQUAL)) {
-			la.skip();
-			return Op2.LE;
-		} else if (la.check(GREATEREQUAL)) {
-			la.skip();
-			return Op2.GE;
-		} else if (la.check(LESS)) {
-			la.skip();
-			return Op2.LT;
-		} else if (la.check(GREATER)) {
+		operandCount = 0;
+		operatorCount = 0;
+		int depth = 0;
+		boolean relational = false;
+		while (true) {
+			Token token = la.current();
+			switch (token.type) {
+			case NUM:
+				int value = number(token);
+				la.skip();
+				pushOperand(numExpr(value, token.pos));
+				break;
+			case ID:
+				la.skip();
+				pushOperand(idExpr(token.lexeme, token.pos));
+				break;
+			case TRUE:
+				la.skip();
+				pushOperand(trueExpr(token.pos));
+				break;
+			case FALSE:
+				la.skip();
+				pushOperand(falseExpr(token.pos));
+				break;
+			case MINUS:
+				la.skip();
+				pushOperator(NEG, token.pos);
+				continue;
+			case NOT:
+				la.skip();
+				pushOperator(NOT_OP, token.pos);
+				continue;
+			case LPAREN:
+				la.skip();
+				pushOperator(relational ? PAREN_AFTER_RELATIONAL : PAREN, token.pos);
+				++depth;
+				relational = false;
+				continue;
+			default:
+				throw new ParseError("Error: expected an expression, found " + token);
+			}
+
+			// A factor is complete: apply its prefix operators, and close
+			// any parentheses that end with it
+			while (true) {
+				while (operatorCount > 0 && (operators[operatorCount - 1] == NEG || operators[operatorCount - 1] == NOT_OP)) {
+					--operatorCount;
+					Op1 op = operators[operatorCount] == NEG ? Op1.Neg : Op1.Not;
+					Expr operand = operands[operandCount - 1];
+					long position = operatorPositions[operatorCount];
+					operands[operandCount - 1] = unOpExpr(op, operand, position);
+				}
+				if (depth == 0 || !la.check(RPAREN)) {
+					break;
+				}
+				la.skip();
+				reduce(RELATIONAL);
+				--operatorCount;
+				relational = operators[operatorCount] == PAREN_AFTER_RELATIONAL;
+				--depth;
+			}
+
+			Token op = la.current();
+			int precedence = PRECEDENCE[op.type.ordinal()];
+			if (precedence == 0 || (precedence == RELATIONAL && relational)) {
+				if (depth > 0) {
+					la.match(RPAREN);
+				}
+				reduce(RELATIONAL);
+				return operands[0];
+			}
 			la.skip();
-			return Op2.GT;
-		} else {
-			throw new ParseError("Error: expected a relational operator, found " + la.current());
+			reduce(precedence);
+			pushOperator(BINARY[op.type.ordinal()].ordinal(), op.pos);
+			relational |= precedence == RELATIONAL;
 		}
 	}
 
-	public Expr parseSimpleExpr() throws ParseError {
-		Expr result = parseTerm();
-		while (la.check(PLUS) || la.check(MINUS) || la.check(OR)) {
-			Position position = la.current().position;
-			Op2 op = parseAddOp();
-			Expr t = parseTerm();
-			result = binOpExpr(result, op, t, position);
+	/**
+	 * The value of a NUM token. One too large for an int is a syntax error;
+	 * when recovering, it is reported and the literal is taken to be 0.
+	 * 
+	 * @param token
+	 * @return the value
+	 * @throws ParseError
+	 */
+	private int number(Token token) throws ParseError {
+		try {
+			return Integer.parseInt(token.lexeme);
+		} catch (NumberFormatException e) {
+			ParseError error = new ParseError("Error: number out of range, found " + token);
+			if (errors == null) {
+				throw error;
+			}
+			report(error);
+			return 0;
 		}
-		return result;
 	}
-	
-	public Op2 parseAddOp() throws ParseError {
-		if (la.check(PLUS)) {
-			la.skip();
-			return Op2.Plus;
-		} else if (la.check(MINUS)) {
-			la.skip();
-			return Op2.Minus;
-		} else if (la.check(OR)) {
-			la.skip();
-			return Op2.Or;
-		} else {
-			throw new ParseError("Error: expected an additive operator, found " + la.current());
+
+	/**
+	 * Combine the operands of pending binary operators with at least the given
+	 * precedence, stopping at an open parenthesis.
+	 */
+	private void reduce(int precedence) {
+		while (operatorCount > 0 && operators[operatorCount - 1] < NEG) {
+			Op2 op = OP2S[operators[operatorCount - 1]];
+			if (PRECEDENCE_OF[op.ordinal()] < precedence) {
+				return;
+			}
+			--operatorCount;
+			--operandCount;
+			Expr left = operands[operandCount - 1], right = operands[operandCount];
+			long position = operatorPositions[operatorCount];
+			operands[operandCount - 1] = binOpExpr(left, op, right, position);
 		}
 	}
-	
-	public Expr parseTerm() throws ParseError {
-		Expr result = parseFactor();
-		while (la.check(STAR) || la.check(DIV) || la.check(MOD) || la.check(AND)) {
-			Position position = la.current().position;
-			Op2 op = parseMulOp();
-			Expr t = parseFactor();
-			result = binOpExpr(result, op, t, position);
+
+	private void pushOperand(Expr expr) {
+		if (operandCount == operands.length) {
+			operands = Arrays.copyOf(operands, 2 * operandCount);
 		}
-		return result;
+		operands[operandCount++] = expr;
 	}
-	
-	public Op2 parseMulOp() throws ParseError {
-		if (la.check(STAR)) {
-			la.skip();
-			return Op2.Times;
-		} else if (la.check(DIV)) {
-			la.skip();
-			return Op2.Div;
-		} else if (la.check(MOD)) {
-			la.skip();
-			return Op2.Mod;
-		} else if (la.check(AND)) {
-			la.skip();
-			return Op2.And;
-		} else {
-			throw new ParseError("Error: expected a multiplicative operator, found " + la.current());
-		}
-	}
-	
-	public Expr parseFactor() throws ParseError {
-		Position position = la.current().position;
-		if (la.check(NUM)) {
-			String num = la.skip().lexeme;
-			int value = Integer.parseInt(num);
-			return numExpr(value, position);
-		} else if (la.check(ID)) {
-			String id = la.skip().lexeme;
-			return idExpr(id, position);
-		} else if (la.check(TRUE)) {
-			la.skip();
-			return trueExpr(position);
-		} else if (la.check(FALSE)) {
-			la.skip();
-			return falseExpr(position);
-		} else if (la.check(MINUS)) {
-			la.skip();
-			Expr expr = parseFactor();
-			return unOpExpr(Op1.Neg, expr, position);
-		} else if (la.check(NOT)) {
-			la.skip();
-			Expr expr = parseFactor();
-			return unOpExpr(Op1.Not, expr, position);
-		} else if (la.check(LPAREN)) {
-			la.skip();
-			Expr expr = parseExpr();
-			la.match(RPAREN);
-			return expr;
-		} else {
-			throw new ParseError("Error: expected an expression, found " + la.current());
+
+	private void pushOperator(int op, long position) {
+		if (operatorCount == operators.length) {
+			operators = Arrays.copyOf(operators, 2 * operatorCount);
+			operatorPositions = Arrays.copyOf(operatorPositions, 2 * operatorCount);
 		}
+		operators[operatorCount] = op;
+		operatorPositions[operatorCount] = position;
+		++operatorCount;
+	}
+
+	private static void binary(TokenType type, Op2 op, int precedence) {
+		PRECEDENCE[type.ordinal()] = precedence;
+		BINARY[type.ordinal()] = op;
+		PRECEDENCE_OF[op.ordinal()] = precedence;
+	}
+
+	private static final int RELATIONAL = 1;
+	private static final int ADDITIVE = 2;
+	private static final int MULTIPLICATIVE = 3;
+
+	/**
+	 * Precedence of each binary operator token, indexed by TokenType ordinal;
+	 * 0 for any other token.
+	 */
+	private static final int[] PRECEDENCE = new int[TokenType.values().length];
+
+	/**
+	 * The operator of each binary operator token, indexed by TokenType ordinal.
+	 */
+	private static final Op2[] BINARY = new Op2[TokenType.values().length];
+
+	/**
+	 * Precedence of each operator, indexed by Op2 ordinal.
+	 */
+	private static final int[] PRECEDENCE_OF = new int[Op2.values().length];
+
+	private static final Op2[] OP2S = Op2.values();
+
+	static {
+		binary(EQUAL, Op2.EQ, RELATIONAL);
+		binary(NOTEQUAL, Op2.NE, RELATIONAL);
+		binary(LESSEQUAL, Op2.LE, RELATIONAL);
+		binary(GREATEREQUAL, Op2.GE, RELATIONAL);
+		binary(LESS, Op2.LT, RELATIONAL);
+		binary(GREATER, Op2.GT, RELATIONAL);
+		binary(PLUS, Op2.Plus, ADDITIVE);
+		binary(MINUS, Op2.Minus, ADDITIVE);
+		binary(OR, Op2.Or, ADDITIVE);
+		binary(STAR, Op2.Times, MULTIPLICATIVE);
+		binary(DIV, Op2.Div, MULTIPLICATIVE);
+		binary(MOD, Op2.Mod, MULTIPLICATIVE);
+		binary(AND, Op2.And, MULTIPLICATIVE);
 	}
+
+	/**
+	 * Codes on the operator stack, besides the Op2 ordinals of binary
+	 * operators: the prefix operators, and open parentheses, remembering
+	 * whether the enclosing level had already seen a relational operator.
+	 */
+	private static final int NEG = 16;
+	private static final int NOT_OP = 17;
+	private static final int PAREN = 18;
+	private static final int PAREN_AFTER_RELATIONAL = 19;
+
+	private Expr[] operands = new Expr[16];
+	private int operandCount;
+	private int[] operators = new int[16];
+	private long[] operatorPositions = new long[16];
+	private int operatorCount;
 }
\ No newline at end of file
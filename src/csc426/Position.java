@@ -8,6 +8,58 @@ public class Position {
 		this.column = column;
 	}
 
+	/**
+	 * @return this position packed into a single long, as by pack(line, column)
+	 */
+	public long pack() {
+		return pack(line, column);
+	}
+
+	/**
+	 * Pack a line and column into a single long, so that positions can be
+	 * stored without allocating Position objects. The line is in the high 32
+	 * bits, so packed positions compare in source order.
+	 * 
+	 * @param line
+	 * @param column
+	 * @return the packed position
+	 */
+	public static long pack(int line, int column) {
+		return ((long) line << 32) | (column & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @param packed
+	 * @return the line of a packed position
+	 */
+	public static int line(long packed) {
+		return (int) (packed >>> 32);
+	}
+
+	/**
+	 * @param packed
+	 * @return the column of a packed position
+	 */
+	public static int column(long packed) {
+		return (int) packed;
+	}
+
+	/**
+	 * @param packed
+	 * @return a Position object for a packed position
+	 */
+	public static Position unpack(long packed) {
+		return new Position(line(packed), column(packed));
+	}
+
+	/**
+	 * @param packed
+	 * @return the same text as unpack(packed).toString()
+	 */
+	public static String toString(long packed) {
+		return line(packed) + ":" + column(packed);
+	}
+
 	@Override
 	public String toString() {
 		return line + ":" + column;
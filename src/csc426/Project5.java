@@ -1,13 +1,14 @@
 package csc426;
 
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.PrintWriter;
-import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 import csc426.AST.Program;
 
@@ -20,28 +21,59 @@ public class Project5 {
 		File file = null;
 		file = new File(args[0]);
 
-		Reader in = null;
+		Source source = null;
 		try {
-			in = new BufferedReader(new FileReader(file));
-			Lookahead lookahead = new Lookahead(new Scanner(in));
-			
-			Parser parser = new Parser(lookahead);
-			Program program = parser.parseProgram();
-			
-			
-			ASTVisitor<Value> generator = new CodeGenerator(input, output, fileout);
-			program.accept(generator);
+			// A source parsed before without errors is loaded from the cache
+			byte[] bytes = Files.readAllBytes(file.toPath());
+			ASTCache cache = new ASTCache(Paths.get(System.getProperty("yasl.cache", ASTCache.DEFAULT_DIRECTORY)));
+			Program program = cache.load(bytes);
+			if (program == null) {
+				source = new MappedSource(file.toPath());
+				int[] lexicalErrors = new int[1];
+				Diagnostics diagnostics = (code, position, c) -> {
+					++lexicalErrors[0];
+					Diagnostics.STDERR.report(code, position, c);
+				};
+				Lookahead lookahead = new Lookahead(new Scanner(source, Scanner.Mode.TABLE, diagnostics));
+
+				// With -Dyasl.share=true, repeated expressions share one node;
+				// errors in them are then reported at their first occurrence
+				if (Boolean.getBoolean("yasl.share")) {
+					AST.share(new HashCons());
+				}
+				List<ParseError> errors = new ArrayList<>();
+				Parser parser = new Parser(lookahead, errors);
+				program = parser.parseProgram();
+				AST.share(null);
+				if (!errors.isEmpty()) {
+					for (ParseError pe : errors) {
+						System.err.println(pe.getMessage());
+					}
+					System.exit(1);
+				}
+				if (lexicalErrors[0] == 0) {
+					cache.store(bytes, program);
+				}
+			}
+
+			// The generator relies on the types the checker records in the tree
+			new TypeChecker().check(program);
+			new CodeGenerator(input, output, fileout).generate(program);
 		} catch (ParseError pe) {
 			System.err.println(pe.getMessage());
 			System.exit(1);
+		} catch (TypeCheckError te) {
+			System.err.println(te.getMessage());
+			System.exit(1);
 		} catch (InterpreterError ie) {
 			System.err.println(ie.getMessage());
 			System.exit(1);
 		} finally {
-			if (in != null) {
-				in.close();
+			if (source != null) {
+				source.close();
 			}
 			input.close();
+			fileout.close();
 			output.println("Execution Complete");
 			output.println("Success!!!"); //check line
 		}
@@ -0,0 +1,12 @@
+package csc426;
+
+@SuppressWarnings("serial")
+public class ResolveError extends RuntimeException {
+	public ResolveError(String message, AST ast) {
+		super(message + ": " + ast);
+	}
+
+	public ResolveError(String message, FlatAST ast, int node) {
+		super(message + ": " + ast.toString(node));
+	}
+}
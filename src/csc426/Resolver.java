@@ -0,0 +1,235 @@
+package csc426;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import csc426.AST.*;
+import csc426.AST.Expr.*;
+import csc426.AST.Item.*;
+import csc426.AST.Param.*;
+import csc426.AST.Stmt.*;
+
+/**
+ * Binds each use of a name (in an Id, Assign, Call or Prompt2) to its
+ * declaration, by static scoping, and records it in the node as a depth and
+ * a slot: the number of static links to follow from the frame of the
+ * procedure (or program) containing the use, and the slot of the name in that
+ * frame. Later passes then find a name by indexing, without looking it up.
+ *
+ * The slots of a frame are numbered in order: the constants, variables and
+ * procedures declared in the block, then the parameters. Names in a block may
+ * be used anywhere in it, including in the bodies of procedures declared
+ * before them. Duplicate and unknown names are reported as ResolveErrors.
+ */
+public class Resolver implements ASTVisitor<Void> {
+	private List<Map<String, Integer>> scopes;
+	private int slot; // of the name last resolved
+	private Traversal traversal;
+
+	public Resolver() {
+		this.scopes = new ArrayList<>();
+		this.traversal = new Traversal(this);
+	}
+
+	/**
+	 * Resolve the names in a program of any depth (see Traversal).
+	 *
+	 * @param program
+	 */
+	public static void resolve(Program program) {
+		new Resolver().traversal.run(program);
+	}
+
+	/**
+	 * @param block
+	 * @return the number of slots for the declarations of block, which are
+	 *         followed by any parameters
+	 */
+	public static int declarations(Block block) {
+		return block.consts.size() + block.vars.size() + block.procs.size();
+	}
+
+	private void declare(String id, int slot, AST decl) {
+		Map<String, Integer> scope = scopes.get(scopes.size() - 1);
+		if (scope.containsKey(id)) {
+			throw new ResolveError("Duplicate definition of " + id, decl);
+		}
+		scope.put(id, slot);
+	}
+
+	/**
+	 * @return the depth of the scope declaring id; its slot is left in the
+	 *         slot field
+	 */
+	private int resolve(String id, AST use) {
+		for (int i = scopes.size() - 1; i >= 0; --i) {
+			Integer found = scopes.get(i).get(id);
+			if (found != null) {
+				slot = found;
+				return scopes.size() - 1 - i;
+			}
+		}
+		throw new ResolveError("Unknown identifier " + id, use);
+	}
+
+	public Void visit(Program program) {
+		if (traversal.state() == 0) {
+			scopes.add(new HashMap<>());
+			traversal.visit(program.block);
+			traversal.resume(1);
+		} else {
+			scopes.remove(scopes.size() - 1);
+		}
+		return null;
+	}
+
+	public Void visit(Block block) {
+		int next = 0;
+		for (ConstDecl decl : block.consts) {
+			declare(decl.id, next++, decl);
+		}
+		for (VarDecl decl : block.vars) {
+			declare(decl.id, next++, decl);
+		}
+		for (ProcDecl decl : block.procs) {
+			declare(decl.id, next++, decl);
+		}
+		for (ProcDecl decl : block.procs) {
+			traversal.visit(decl);
+		}
+		for (Stmt stmt : block.stmts) {
+			traversal.visit(stmt);
+		}
+		return null;
+	}
+
+	public Void visit(ConstDecl decl) {
+		return null;
+	}
+
+	public Void visit(VarDecl decl) {
+		return null;
+	}
+
+	public Void visit(ProcDecl decl) {
+		if (traversal.state() == 0) {
+			scopes.add(new HashMap<>());
+			int next = declarations(decl.block);
+			for (Param param : decl.params) {
+				declare(param.id, next++, param);
+			}
+			traversal.visit(decl.block);
+			traversal.resume(1);
+		} else {
+			scopes.remove(scopes.size() - 1);
+		}
+		return null;
+	}
+
+	public Void visit(Val param) {
+		return null;
+	}
+
+	public Void visit(Var param) {
+		return null;
+	}
+
+	public Void visit(Assign stmt) {
+		stmt.depth = resolve(stmt.id, stmt);
+		stmt.slot = slot;
+		traversal.visit(stmt.expr);
+		return null;
+	}
+
+	public Void visit(Call stmt) {
+		stmt.depth = resolve(stmt.id, stmt);
+		stmt.slot = slot;
+		for (Expr arg : stmt.args) {
+			traversal.visit(arg);
+		}
+		return null;
+	}
+
+	public Void visit(Sequence stmt) {
+		for (Stmt s : stmt.body) {
+			traversal.visit(s);
+		}
+		return null;
+	}
+
+	public Void visit(IfThen stmt) {
+		traversal.visit(stmt.test);
+		traversal.visit(stmt.trueClause);
+		return null;
+	}
+
+	public Void visit(IfThenElse stmt) {
+		traversal.visit(stmt.test);
+		traversal.visit(stmt.trueClause);
+		traversal.visit(stmt.falseClause);
+		return null;
+	}
+
+	public Void visit(While stmt) {
+		traversal.visit(stmt.test);
+		traversal.visit(stmt.body);
+		return null;
+	}
+
+	public Void visit(Prompt stmt) {
+		return null;
+	}
+
+	public Void visit(Prompt2 stmt) {
+		stmt.depth = resolve(stmt.id, stmt);
+		stmt.slot = slot;
+		return null;
+	}
+
+	public Void visit(Print stmt) {
+		for (Item item : stmt.items) {
+			traversal.visit(item);
+		}
+		return null;
+	}
+
+	public Void visit(ExprItem item) {
+		traversal.visit(item.expr);
+		return null;
+	}
+
+	public Void visit(StringItem item) {
+		return null;
+	}
+
+	public Void visit(BinOp expr) {
+		traversal.visit(expr.left);
+		traversal.visit(expr.right);
+		return null;
+	}
+
+	public Void visit(UnOp expr) {
+		traversal.visit(expr.expr);
+		return null;
+	}
+
+	public Void visit(Num expr) {
+		return null;
+	}
+
+	public Void visit(Id expr) {
+		expr.depth = resolve(expr.id, expr);
+		expr.slot = slot;
+		return null;
+	}
+
+	public Void visit(True expr) {
+		return null;
+	}
+
+	public Void visit(False expr) {
+		return null;
+	}
+}
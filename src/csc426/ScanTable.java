@@ -0,0 +1,402 @@
+package csc426;
+
+
+import java.io.IOException;
+
+/**
+ * A table-driven version of the token recognizer in State.java. The same
+ * states are numbered instead of being objects, and the input characters are
+ * grouped into classes, so that each step is a single lookup in a precomputed
+ * transition table. The lexeme buffer is reused from token to token, so no
+ * objects are created except for the emitted Token itself.
+ */
+public class ScanTable {
+	/**
+	 * Construct a recognizer with an empty lexeme buffer, printing errors to
+	 * System.err. Identifier lexemes are shared through the given pool of names.
+	 * 
+	 * @param names
+	 */
+	public ScanTable(Names names) {
+		this(names, Diagnostics.STDERR);
+	}
+
+	/**
+	 * Construct a recognizer with an empty lexeme buffer, reporting errors to
+	 * the given Diagnostics.
+	 * 
+	 * @param names
+	 * @param diagnostics
+	 */
+	public ScanTable(Names names, Diagnostics diagnostics) {
+		this.names = names;
+		this.diagnostics = diagnostics;
+		this.buffer = new char[64];
+		this.length = 0;
+	}
+
+	/**
+	 * Extract the next available token from the source. When the input is
+	 * exhausted, it will return an EOF token on all future calls.
+	 *
+	 * @param source
+	 * @return the next Token object
+	 * @throws IOException
+	 */
+	public Token next(Source source) throws IOException {
+		TokenType type = scan(source);
+		return new Token(Position.pack(line, column), type, lexeme());
+	}
+
+	/**
+	 * Recognize the next token from the source, leaving its lexeme and starting
+	 * position available through lexeme(), line(), column() and offset().
+	 *
+	 * @param source
+	 * @return the TokenType of the recognized token
+	 * @throws IOException
+	 */
+	public TokenType scan(Source source) throws IOException {
+		int state = S_START;
+
+		for (;;) {
+			int entry = TRANSITIONS[state * CLASSES + classify(source)];
+			int next = entry & 0xFF;
+
+			switch (entry >>> 8) {
+			case A_SKIP:
+				break;
+			case A_MARK:
+				mark(source);
+				append(source.current());
+				break;
+			case A_OPEN:
+				mark(source);
+				break;
+			case A_APPEND:
+				append(source.current());
+				break;
+			case A_EMIT:
+				return accept(state);
+			case A_EOF:
+				mark(source);
+				lexeme = "<EOF>";
+				return TokenType.EOF;
+			case A_UNEXPECTED:
+				diagnostics.report(Diagnostics.UNEXPECTED_CHARACTER, source.packedPosition(), source.current());
+				break;
+			case A_MALFORMED:
+				diagnostics.report(Diagnostics.MALFORMED_COMMENT, Position.pack(line, column), source.current());
+				break;
+			case A_UNCLOSED_COMMENT:
+				diagnostics.report(Diagnostics.UNCLOSED_COMMENT, Position.pack(line, column), source.current());
+				break;
+			case A_UNCLOSED_STRING:
+				diagnostics.report(Diagnostics.UNCLOSED_STRING, Position.pack(line, column), source.current());
+				break;
+			}
+
+			state = next;
+			source.advance();
+		}
+	}
+
+	/**
+	 * @return the source offset where the last recognized token started
+	 */
+	public int offset() {
+		return offset;
+	}
+
+	/**
+	 * @return the lexeme of the last recognized token
+	 */
+	public String lexeme() {
+		if (lexeme == null) {
+			lexeme = new String(buffer, 0, length);
+		}
+		return lexeme;
+	}
+
+	/**
+	 * Find or add the lexeme of the last recognized token in a pool, without
+	 * building a String for it if it is already there.
+	 * 
+	 * @param names
+	 * @return the id of the lexeme in names
+	 */
+	public int lexemeId(Names names) {
+		if (lexeme == null) {
+			return names.add(buffer, 0, length);
+		}
+		return names.add(lexeme);
+	}
+
+	/**
+	 * @return the line where the last recognized token started
+	 */
+	public int line() {
+		return line;
+	}
+
+	/**
+	 * @return the column where the last recognized token started
+	 */
+	public int column() {
+		return column;
+	}
+
+	/**
+	 * @param c
+	 * @return the character class of c
+	 */
+	static int classify(char c) {
+		if (c < ASCII.length) {
+			return ASCII[c];
+		} else if (Character.isLetter(c)) {
+			return C_LETTER;
+		} else if (Character.isDigit(c)) {
+			return C_DIGIT;
+		} else if (Character.isWhitespace(c)) {
+			return C_SPACE;
+		} else {
+			return C_OTHER;
+		}
+	}
+
+	private static int classify(Source source) {
+		return source.atEOF() ? C_EOF : classify(source.current());
+	}
+
+	private void mark(Source source) {
+		line = source.line();
+		column = source.column();
+		offset = source.offset();
+		length = 0;
+	}
+
+	private void append(char c) {
+		if (length == buffer.length) {
+			char[] larger = new char[buffer.length * 2];
+			System.arraycopy(buffer, 0, larger, 0, length);
+			buffer = larger;
+		}
+		buffer[length++] = c;
+	}
+
+	private TokenType accept(int state) {
+		switch (state) {
+		case S_IDENT: {
+			TokenType type = Keywords.lookup(buffer, 0, length);
+			if (type != null) {
+				lexeme = Keywords.lexeme(type);
+				return type;
+			}
+			lexeme = names.intern(buffer, 0, length);
+			return TokenType.ID;
+		}
+		case S_NUM:
+		case S_QUOTE2:
+			lexeme = null; // built on demand from the buffer
+			return ACCEPT[state];
+		case S_OP:
+			lexeme = OP_LEXEMES[buffer[0]];
+			return OP_TYPES[buffer[0]];
+		default:
+			lexeme = LEXEMES[state];
+			return ACCEPT[state];
+		}
+	}
+
+	private Names names;
+	private Diagnostics diagnostics;
+	private char[] buffer;
+	private int length;
+	private String lexeme;
+	private int line, column, offset;
+
+	// Character classes
+	static final int C_LETTER = 0;
+	static final int C_ZERO = 1;
+	static final int C_DIGIT = 2;
+	static final int C_OP = 3;
+	static final int C_EQUAL = 4;
+	static final int C_LESS = 5;
+	static final int C_GREATER = 6;
+	static final int C_SPACE = 7;
+	static final int C_NEWLINE = 8;
+	static final int C_SLASH = 9;
+	static final int C_LBRACE = 10;
+	static final int C_RBRACE = 11;
+	static final int C_QUOTE = 12;
+	static final int C_OTHER = 13;
+	static final int C_EOF = 14;
+	static final int CLASSES = 15;
+
+	// States, one for each of the State subclasses that recognize part of a token
+	static final int S_START = 0; // InitialState
+	static final int S_IDENT = 1; // IdentState
+	static final int S_NUM = 2; // NumState
+	static final int S_ZERO = 3; // ZeroState
+	static final int S_OP = 4; // OpState
+	static final int S_EQUAL = 5; // EqualState
+	static final int S_EQUAL2 = 6; // EqualEqualState
+	static final int S_LESS = 7; // LessState
+	static final int S_LESSEQUAL = 8; // LessEqualState
+	static final int S_NOTEQUAL = 9; // LessGreaterState
+	static final int S_GREATER = 10; // GreaterState
+	static final int S_GREATEREQUAL = 11; // GreaterEqualState
+	static final int S_SLASH = 12; // SlashState
+	static final int S_COMMENT = 13; // Slash2State
+	static final int S_BRACE = 14; // BraceState
+	static final int S_QUOTE = 15; // QuoteState
+	static final int S_QUOTE2 = 16; // Quote2State
+	static final int STATES = 17;
+
+	// Actions, stored above the next state in each transition table entry
+	static final int A_SKIP = 0; // advance without recording the character
+	static final int A_MARK = 1; // start a new lexeme with the current character
+	static final int A_OPEN = 2; // start a new, empty, lexeme
+	static final int A_APPEND = 3; // add the current character to the lexeme
+	static final int A_EMIT = 4; // the token is complete; do not advance
+	static final int A_EOF = 5; // input exhausted; emit an EOF token
+	static final int A_UNEXPECTED = 6;
+	static final int A_MALFORMED = 7;
+	static final int A_UNCLOSED_COMMENT = 8;
+	static final int A_UNCLOSED_STRING = 9;
+
+	/**
+	 * The character class of each ASCII character, computed with the same
+	 * Character predicates used by InitialState.
+	 */
+	static final byte[] ASCII = new byte[128];
+
+	/**
+	 * The transition table, indexed by state * CLASSES + class. Each entry
+	 * holds (action << 8) | next state.
+	 */
+	static final int[] TRANSITIONS = new int[STATES * CLASSES];
+
+	private static final TokenType[] ACCEPT = new TokenType[STATES];
+	private static final String[] LEXEMES = new String[STATES];
+	private static final TokenType[] OP_TYPES = new TokenType[128];
+	private static final String[] OP_LEXEMES = new String[128];
+
+	static {
+		for (char c = 0; c < ASCII.length; ++c) {
+			byte cls;
+			if (Character.isLetter(c)) {
+				cls = C_LETTER;
+			} else if (c == '0') {
+				cls = C_ZERO;
+			} else if (Character.isDigit(c)) {
+				cls = C_DIGIT;
+			} else if (State.OPCHARS.indexOf(c) >= 0) {
+				cls = C_OP;
+			} else if (c == '=') {
+				cls = C_EQUAL;
+			} else if (c == '<') {
+				cls = C_LESS;
+			} else if (c == '>') {
+				cls = C_GREATER;
+			} else if (c == '\n') {
+				cls = C_NEWLINE;
+			} else if (Character.isWhitespace(c)) {
+				cls = C_SPACE;
+			} else if (c == '/') {
+				cls = C_SLASH;
+			} else if (c == '{') {
+				cls = C_LBRACE;
+			} else if (c == '}') {
+				cls = C_RBRACE;
+			} else if (c == '"') {
+				cls = C_QUOTE;
+			} else {
+				cls = C_OTHER;
+			}
+			ASCII[c] = cls;
+		}
+
+		for (char c : State.OPCHARS.toCharArray()) {
+			OP_LEXEMES[c] = String.valueOf(c);
+			OP_TYPES[c] = State.tokenMap.get(OP_LEXEMES[c]);
+		}
+
+		// Every state that is in the middle of a token emits it by default
+		for (int s = 0; s < STATES; ++s) {
+			for (int c = 0; c < CLASSES; ++c) {
+				set(s, c, A_EMIT, s);
+			}
+		}
+
+		set(S_START, C_LETTER, A_MARK, S_IDENT);
+		set(S_START, C_ZERO, A_MARK, S_ZERO);
+		set(S_START, C_DIGIT, A_MARK, S_NUM);
+		set(S_START, C_OP, A_MARK, S_OP);
+		set(S_START, C_EQUAL, A_MARK, S_EQUAL);
+		set(S_START, C_LESS, A_MARK, S_LESS);
+		set(S_START, C_GREATER, A_MARK, S_GREATER);
+		set(S_START, C_SPACE, A_SKIP, S_START);
+		set(S_START, C_NEWLINE, A_SKIP, S_START);
+		set(S_START, C_SLASH, A_OPEN, S_SLASH);
+		set(S_START, C_LBRACE, A_OPEN, S_BRACE);
+		set(S_START, C_QUOTE, A_OPEN, S_QUOTE);
+		set(S_START, C_RBRACE, A_UNEXPECTED, S_START);
+		set(S_START, C_OTHER, A_UNEXPECTED, S_START);
+		set(S_START, C_EOF, A_EOF, S_START);
+
+		set(S_IDENT, C_LETTER, A_APPEND, S_IDENT);
+		set(S_IDENT, C_ZERO, A_APPEND, S_IDENT);
+		set(S_IDENT, C_DIGIT, A_APPEND, S_IDENT);
+
+		set(S_NUM, C_ZERO, A_APPEND, S_NUM);
+		set(S_NUM, C_DIGIT, A_APPEND, S_NUM);
+
+		set(S_EQUAL, C_EQUAL, A_SKIP, S_EQUAL2);
+		set(S_LESS, C_EQUAL, A_SKIP, S_LESSEQUAL);
+		set(S_LESS, C_GREATER, A_SKIP, S_NOTEQUAL);
+		set(S_GREATER, C_EQUAL, A_SKIP, S_GREATEREQUAL);
+
+		// SlashState does not check for EOF, where the current character is
+		// still the slash itself, so that case is treated as a second slash
+		for (int c = 0; c < CLASSES; ++c) {
+			set(S_SLASH, c, A_MALFORMED, S_START);
+			set(S_COMMENT, c, A_SKIP, S_COMMENT);
+			set(S_BRACE, c, A_SKIP, S_BRACE);
+			set(S_QUOTE, c, A_APPEND, S_QUOTE);
+		}
+		set(S_SLASH, C_SLASH, A_SKIP, S_COMMENT);
+		set(S_SLASH, C_EOF, A_SKIP, S_COMMENT);
+		set(S_COMMENT, C_NEWLINE, A_SKIP, S_START);
+		set(S_COMMENT, C_EOF, A_SKIP, S_START);
+		set(S_BRACE, C_RBRACE, A_SKIP, S_START);
+		set(S_BRACE, C_EOF, A_UNCLOSED_COMMENT, S_START);
+		set(S_QUOTE, C_QUOTE, A_SKIP, S_QUOTE2);
+		set(S_QUOTE, C_EOF, A_UNCLOSED_STRING, S_START);
+		set(S_QUOTE2, C_QUOTE, A_APPEND, S_QUOTE);
+
+		ACCEPT[S_NUM] = TokenType.NUM;
+		ACCEPT[S_ZERO] = TokenType.NUM;
+		ACCEPT[S_EQUAL] = TokenType.ASSIGN;
+		ACCEPT[S_EQUAL2] = TokenType.EQUAL;
+		ACCEPT[S_LESS] = TokenType.LESS;
+		ACCEPT[S_LESSEQUAL] = TokenType.LESSEQUAL;
+		ACCEPT[S_NOTEQUAL] = TokenType.NOTEQUAL;
+		ACCEPT[S_GREATER] = TokenType.GREATER;
+		ACCEPT[S_GREATEREQUAL] = TokenType.GREATEREQUAL;
+		ACCEPT[S_QUOTE2] = TokenType.STRING;
+
+		LEXEMES[S_ZERO] = "0";
+		LEXEMES[S_EQUAL] = "=";
+		LEXEMES[S_EQUAL2] = "==";
+		LEXEMES[S_LESS] = "<";
+		LEXEMES[S_LESSEQUAL] = "<=";
+		LEXEMES[S_NOTEQUAL] = "<>";
+		LEXEMES[S_GREATER] = ">";
+		LEXEMES[S_GREATEREQUAL] = ">=";
+	}
+
+	private static void set(int state, int cls, int action, int next) {
+		TRANSITIONS[state * CLASSES + cls] = (action << 8) | next;
+	}
+}
@@ -3,6 +3,14 @@ import java.io.IOException;
 import java.io.Reader;
 
 public class Scanner {
+	/**
+	 * The available token recognizers: the chain of State objects, or the
+	 * equivalent precomputed transition table in ScanTable.
+	 */
+	public enum Mode {
+		STATES, TABLE
+	}
+
 	/**
 	 * Construct the Scanner ready to read tokens from the given Reader.
 	 * 
@@ -10,7 +18,48 @@ public class Scanner {
 	 * @throws IOException 
 	 */
 	public Scanner(Reader in) throws IOException {
-		source = new Source(in);
+		this(in, Mode.STATES);
+	}
+
+	/**
+	 * Construct the Scanner ready to read tokens from the given Reader, using
+	 * the given recognizer. Both modes produce the same stream of tokens.
+	 * 
+	 * @param in
+	 * @param mode
+	 * @throws IOException 
+	 */
+	public Scanner(Reader in, Mode mode) throws IOException {
+		this(new Source(in), mode);
+	}
+
+	/**
+	 * Construct the Scanner ready to read tokens from the given Source, using
+	 * the given recognizer.
+	 * 
+	 * @param source
+	 * @param mode
+	 */
+	public Scanner(Source source, Mode mode) {
+		this(source, mode, Diagnostics.STDERR);
+	}
+
+	/**
+	 * Construct the Scanner ready to read tokens from the given Source, using
+	 * the given recognizer and reporting lexical errors to the given
+	 * Diagnostics instead of printing them.
+	 * 
+	 * @param source
+	 * @param mode
+	 * @param diagnostics
+	 */
+	public Scanner(Source source, Mode mode, Diagnostics diagnostics) {
+		this.source = source;
+		this.names = new Names();
+		this.diagnostics = diagnostics;
+		if (mode == Mode.TABLE) {
+			table = new ScanTable(names, diagnostics);
+		}
 	}
 
 	/**
@@ -21,10 +70,14 @@ public class Scanner {
 	 * @throws IOException 
 	 */
 	public Token next() throws IOException {
+		if (table != null) {
+			return table.next(source);
+		}
+
 		State state = State.INITIAL_STATE;
 
 		for (;;) {
-			state = state.step(source);
+			state = state.step(source, diagnostics);
 			if (state.done()) {
 				break;
 			}
@@ -33,7 +86,18 @@ public class Scanner {
 			source.advance();
 		}
 
-		return state.token();
+		Token token = state.token();
+		if (token.type == TokenType.ID) {
+			token = new Token(token.pos, token.type, names.intern(token.lexeme));
+		}
+		return token;
+	}
+
+	/**
+	 * @return the pool holding the lexemes of all identifiers scanned so far
+	 */
+	public Names names() {
+		return names;
 	}
 
 	/**
@@ -46,4 +110,7 @@ public class Scanner {
 	}
 
 	private Source source;
+	private Names names;
+	private Diagnostics diagnostics;
+	private ScanTable table;
 }
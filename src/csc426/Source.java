@@ -5,6 +5,11 @@ import java.io.IOException;
 import java.io.Reader;
 
 public class Source {
+	/**
+	 * A reasonable block size for the buffered mode.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
 	/**
 	 * Construct a Source wrapping the given Reader. Once constructed, the first
 	 * character of the source (at line 1, column 1) will be available via
@@ -17,12 +22,50 @@ public class Source {
 		this.in = in;
 		this.line = 0;
 		this.column = 0;
+		this.offset = -1;
 		this.current = '\n';
 		this.atEOF = false;
 
 		advance();
 	}
 
+	/**
+	 * Construct a Source wrapping the given Reader, which will be read in blocks
+	 * of bufferSize characters instead of one character at a time. Otherwise
+	 * the same as Source(Reader).
+	 * 
+	 * @param in
+	 * @param bufferSize
+	 * @throws IOException
+	 */
+	public Source(Reader in, int bufferSize) throws IOException {
+		this(bufferSize);
+		this.in = in;
+
+		advance();
+	}
+
+	/**
+	 * Construct a buffered Source for a subclass that supplies its characters
+	 * by overriding read(char[], int, int). The subclass constructor must call
+	 * advance() once it is ready, to make the first character available.
+	 * 
+	 * @param bufferSize
+	 */
+	protected Source(int bufferSize) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+		}
+		this.buffer = new char[bufferSize];
+		this.index = 0;
+		this.limit = 0;
+		this.line = 0;
+		this.column = 0;
+		this.offset = -1;
+		this.current = '\n';
+		this.atEOF = false;
+	}
+
 	/**
 	 * @return the current character, unless atEOF() true
 	 */
@@ -37,6 +80,34 @@ public class Source {
 		return new Position(line, column);
 	}
 
+	/**
+	 * @return the current position packed as by Position.pack
+	 */
+	public long packedPosition() {
+		return Position.pack(line, column);
+	}
+
+	/**
+	 * @return the line of the current character
+	 */
+	public int line() {
+		return line;
+	}
+
+	/**
+	 * @return the column of the current character
+	 */
+	public int column() {
+		return column;
+	}
+
+	/**
+	 * @return the number of characters before the current character
+	 */
+	public int offset() {
+		return offset;
+	}
+
 	/**
 	 * @return true if input has been exhausted
 	 */
@@ -58,6 +129,16 @@ public class Source {
 		} else {
 			++column;
 		}
+		++offset;
+
+		if (buffer != null) {
+			if (index < limit || fill()) {
+				current = buffer[index++];
+			} else {
+				atEOF = true;
+			}
+			return;
+		}
 
 		int next = in.read();
 		if (next == -1) {
@@ -68,16 +149,54 @@ public class Source {
 	}
 
 	/**
-	 * Close the underlying Reader.
+	 * Close the underlying Reader, if any.
 	 * 
 	 * @throws IOException
 	 */
 	public void close() throws IOException {
-		in.close();
+		if (in != null) {
+			in.close();
+		}
+	}
+
+	/**
+	 * Read the next block of characters in buffered mode. The default reads
+	 * from the underlying Reader.
+	 * 
+	 * @param buffer
+	 * @param offset
+	 * @param length
+	 * @return the number of characters read, or -1 at the end of input
+	 * @throws IOException
+	 */
+	protected int read(char[] buffer, int offset, int length) throws IOException {
+		return in.read(buffer, offset, length);
+	}
+
+	/**
+	 * Refill the buffer with the next block of characters.
+	 * 
+	 * @return false if the input is exhausted
+	 * @throws IOException
+	 */
+	private boolean fill() throws IOException {
+		int n;
+		do {
+			n = read(buffer, 0, buffer.length);
+		} while (n == 0);
+
+		if (n < 0) {
+			return false;
+		}
+		index = 0;
+		limit = n;
+		return true;
 	}
 
 	private Reader in;
-	private int line, column;
+	private char[] buffer;
+	private int index, limit;
+	private int line, column, offset;
 	private char current;
 	private boolean atEOF;
-}
\ No newline at end of file
+}
@@ -11,9 +11,10 @@ public abstract class State {
 	 * character of the source.
 	 * 
 	 * @param source
+	 * @param diagnostics where to report errors
 	 * @return the next State
 	 */
-	public abstract State step(Source source);
+	public abstract State step(Source source, Diagnostics diagnostics);
 
 	/**
 	 * @return true if a token is ready to be emitted.
@@ -97,9 +98,9 @@ public abstract class State {
  * exhausted.
  */
 class InitialState extends State {
-	public State step(Source source) {
+	public State step(Source source, Diagnostics diagnostics) {
 		if (source.atEOF()) {
-			return new FinalState(source.position(), "<EOF>", TokenType.EOF);
+			return new FinalState(source.packedPosition(), "<EOF>", TokenType.EOF);
 		} else if (Character.isLetter(source.current())) {
 			return new IdentState(source);
 		} else if (source.current() == '0') {
@@ -123,8 +124,7 @@ class InitialState extends State {
 		} else if (source.current() == '"') {
 			return new QuoteState(source);
 		} else {
-			System.err.print("Error: Unexpected character (" + source.current() + ") ");
-			System.err.println("at " + source.position());
+			diagnostics.report(Diagnostics.UNEXPECTED_CHARACTER, source.packedPosition(), source.current());
 			return INITIAL_STATE;
 		}
 	}
@@ -137,12 +137,12 @@ class InitialState extends State {
  * token.
  */
 class FinalState extends State {
-	public FinalState(Position position, String lexeme, TokenType type) {
+	public FinalState(long position, String lexeme, TokenType type) {
 		this.token = new Token(position, type, lexeme);
 	}
 
 	//No reason for this to be called
-	public State step(Source source) {
+	public State step(Source source, Diagnostics diagnostics) {
 		return null;
 	}
 
@@ -166,13 +166,13 @@ class FinalState extends State {
  */
 abstract class MarkState extends State {
 	public MarkState(Source source) {
-		this.position = source.position();
+		this.position = source.packedPosition();
 		this.buffer = new StringBuilder();
 
 		buffer.append(source.current());
 	}
 
-	protected Position position;
+	protected long position;
 	protected StringBuilder buffer;
 }
 
@@ -186,20 +186,17 @@ class IdentState extends MarkState {
 		super(source);
 	}
 
-	public State step(Source source) {
+	public State step(Source source, Diagnostics diagnostics) {
 		if (!source.atEOF() && Character.isLetterOrDigit(source.current())) {
 			buffer.append(source.current());
 			return this;
 		} else {
-			String lexeme = buffer.toString();
-			TokenType type;
-
-			if (tokenMap.containsKey(lexeme)) {
-				type = tokenMap.get(lexeme);
+			TokenType type = Keywords.lookup(buffer);
+			if (type != null) {
+				return new FinalState(position, Keywords.lexeme(type), type);
 			} else {
-				type = TokenType.ID;
+				return new FinalState(position, buffer.toString(), TokenType.ID);
 			}
-			return new FinalState(position, lexeme, type);
 		}
 	}
 }
@@ -214,7 +211,7 @@ class NumState extends MarkState {
 		super(source);
 	}
 
-	public State step(Source source) {
+	public State step(Source source, Diagnostics diagnostics) {
 		if (!source.atEOF() && Character.isDigit(source.current())) {
 			buffer.append(source.current());
 			return this;
@@ -233,7 +230,7 @@ class ZeroState extends MarkState {
 		super(source);
 	}
 
-	public State step(Source source) {
+	public State step(Source source, Diagnostics diagnostics) {
 		return new FinalState(position, buffer.toString(), TokenType.NUM);
 	}
 }
@@ -246,7 +243,7 @@ class OpState extends MarkState {
 		super(source);
 	}
 
-	public State step(Source source) {
+	public State step(Source source, Diagnostics diagnostics) {
 		String lexeme = buffer.toString();
 		TokenType type = tokenMap.get(lexeme);
 
@@ -262,7 +259,7 @@ class EqualState extends MarkState {
 		super(source);
 	}
 
-	public State step(Source source) {
+	public State step(Source source, Diagnostics diagnostics) {
 		if (!source.atEOF() && source.current() == '=') {
 			return new EqualEqualState(position);
 		} else {
@@ -275,15 +272,15 @@ class EqualState extends MarkState {
  * The state while recognizing the == operator.
  */
 class EqualEqualState extends State {
-	public EqualEqualState(Position position) {
+	public EqualEqualState(long position) {
 		this.position = position;
 	}
 
-	public State step(Source source) {
+	public State step(Source source, Diagnostics diagnostics) {
 		return new FinalState(position, "==", TokenType.EQUAL);
 	}
 
-	private Position position;
+	private long position;
 }
 
 /**
@@ -294,7 +291,7 @@ class LessState extends MarkState {
 		super(source);
 	}
 
-	public State step(Source source) {
+	public State step(Source source, Diagnostics diagnostics) {
 		if (!source.atEOF() && source.current() == '=') {
 			return new LessEqualState(position);
 		} else if (!source.atEOF() && source.current() == '>') {
@@ -309,30 +306,30 @@ class LessState extends MarkState {
  * The state while recognizing the <= operator.
  */
 class LessEqualState extends State {
-	public LessEqualState(Position position) {
+	public LessEqualState(long position) {
 		this.position = position;
 	}
 
-	public State step(Source source) {
+	public State step(Source source, Diagnostics diagnostics) {
 		return new FinalState(position, "<=", TokenType.LESSEQUAL);
 	}
 
-	private Position position;
+	private long position;
 }
 
 /**
  * The state while recognizing the <> operator.
  */
 class LessGreaterState extends State {
-	public LessGreaterState(Position position) {
+	public LessGreaterState(long position) {
 		this.position = position;
 	}
 
-	public State step(Source source) {
+	public State step(Source source, Diagnostics diagnostics) {
 		return new FinalState(position, "<>", TokenType.NOTEQUAL);
 	}
 
-	private Position position;
+	private long position;
 }
 
 /**
@@ -343,7 +340,7 @@ class GreaterState extends MarkState {
 		super(source);
 	}
 
-	public State step(Source source) {
+	public State step(Source source, Diagnostics diagnostics) {
 		if (!source.atEOF() && source.current() == '=') {
 			return new GreaterEqualState(position);
 		} else {
@@ -356,15 +353,15 @@ class GreaterState extends MarkState {
  * The state while recognizing the >= operator.
  */
 class GreaterEqualState extends State {
-	public GreaterEqualState(Position position) {
+	public GreaterEqualState(long position) {
 		this.position = position;
 	}
 
-	public State step(Source source) {
+	public State step(Source source, Diagnostics diagnostics) {
 		return new FinalState(position, ">=", TokenType.GREATEREQUAL);
 	}
 
-	private Position position;
+	private long position;
 }
 
 /**
@@ -373,15 +370,14 @@ class GreaterEqualState extends State {
  */
 class SlashState extends State {
 	public SlashState(Source source) {
-		this.position = source.position();
+		this.position = source.packedPosition();
 	}
 
-	public State step(Source source) {
+	public State step(Source source, Diagnostics diagnostics) {
 		if (source.current() == '/') {
 			return new Slash2State();
 		} else {
-			System.err.print("Error: Malformed comment ");
-			System.err.println("at " + position);
+			diagnostics.report(Diagnostics.MALFORMED_COMMENT, position, source.current());
 			return INITIAL_STATE;
 		}
 	}
@@ -390,7 +386,7 @@ class SlashState extends State {
 		return false;
 	}
 
-	private Position position;
+	private long position;
 }
 
 /**
@@ -398,7 +394,7 @@ class SlashState extends State {
  * two forward slashes and continuing to the next newline.
  */
 class Slash2State extends State {
-	public State step(Source source) {
+	public State step(Source source, Diagnostics diagnostics) {
 		if (source.atEOF() || source.current() == '\n') {
 			return INITIAL_STATE;
 		} else {
@@ -418,13 +414,12 @@ class Slash2State extends State {
  */
 class BraceState extends State {
 	public BraceState(Source source) {
-		this.position = source.position();
+		this.position = source.packedPosition();
 	}
 
-	public State step(Source source) {
+	public State step(Source source, Diagnostics diagnostics) {
 		if (source.atEOF()) {
-			System.err.print("Error: Unclosed comment ");
-			System.err.println("at " + position);
+			diagnostics.report(Diagnostics.UNCLOSED_COMMENT, position, source.current());
 			return INITIAL_STATE;
 		} else if (source.current() == '}') {
 			return INITIAL_STATE;
@@ -437,7 +432,7 @@ class BraceState extends State {
 		return false;
 	}
 
-	private Position position;
+	private long position;
 }
 
 /**
@@ -452,10 +447,9 @@ class QuoteState extends MarkState {
 		super(source);
 	}
 
-	public State step(Source source) {
+	public State step(Source source, Diagnostics diagnostics) {
 		if (source.atEOF()) {
-			System.err.print("Error: Unclosed string literal ");
-			System.err.println("at " + position);
+			diagnostics.report(Diagnostics.UNCLOSED_STRING, position, source.current());
 			return INITIAL_STATE;
 		} else if (source.current() == '"') {
 			return new Quote2State(this);
@@ -476,7 +470,7 @@ class Quote2State extends State {
 		this.parent = parent;
 	}
 
-	public State step(Source source) {
+	public State step(Source source, Diagnostics diagnostics) {
 		if (source.atEOF() || source.current() != '"') {
 			String lexeme = parent.buffer.substring(1);
 			return new FinalState(parent.position, lexeme, TokenType.STRING);
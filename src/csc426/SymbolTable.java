@@ -1,70 +1,131 @@
 package csc426;
 
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Stack;
+import java.util.Arrays;
 
+/**
+ * Nested scopes of bindings, in one flat table. Each name is numbered by a
+ * Names pool, and heads[n] is the most recent binding of name n still in
+ * scope. The bindings form a log in the order added; each records the binding
+ * of the same name it shadows, and each scope is marked by where it starts in
+ * the log. Leaving a scope undoes its bindings back to its mark, so entering
+ * and exiting a scope allocates nothing once the arrays have grown.
+ *
+ * A table may also sit inside an outer table, which is searched when a name
+ * is not found in the table itself. Looking a name up changes nothing, so
+ * several tables (on other threads) can share the same outer table, without
+ * copying it, for as long as it is not changed.
+ */
 public class SymbolTable<T> {
-	private Stack<Map<String, T>> scopes;
-	private Stack<Integer> offsets;
-	private Stack<Integer> paramOffsets;
+	private Names names;
+	private int[] heads; // by name number: the entry in scope, or -1
+	private int[] entryNames;
+	private Object[] entryBindings;
+	private int[] entryShadows; // the entry for the same name hidden by this one, or -1
+	private int entries;
+	private int[] marks; // by level: the first entry of the scope
+	private int[] offsets;
+	private int[] paramOffsets;
 	private int level;
+	private SymbolTable<T> outer;
 
 	public SymbolTable() {
-		this.scopes = new Stack<>();
-		this.offsets = new Stack<>();
-		this.paramOffsets = new Stack<>();
+		this(null);
+	}
+
+	/**
+	 * @param outer
+	 *            the table of the enclosing scopes, or null; it must not be
+	 *            changed while this table is in use
+	 */
+	public SymbolTable(SymbolTable<T> outer) {
+		this.outer = outer;
+		this.names = new Names();
+		this.heads = new int[32];
+		Arrays.fill(heads, -1);
+		this.entryNames = new int[32];
+		this.entryBindings = new Object[32];
+		this.entryShadows = new int[32];
+		this.entries = 0;
+		this.marks = new int[8];
+		this.offsets = new int[8];
+		this.paramOffsets = new int[8];
 		level = 0;
 	}
 
 	public void enter(String name) {
-		scopes.push(new HashMap<String, T>());
-		offsets.push(-1);
-		paramOffsets.push(2);
+		if (level == marks.length) {
+			marks = Arrays.copyOf(marks, 2 * level);
+			offsets = Arrays.copyOf(offsets, 2 * level);
+			paramOffsets = Arrays.copyOf(paramOffsets, 2 * level);
+		}
+		marks[level] = entries;
+		offsets[level] = -1;
+		paramOffsets[level] = 2;
 		level++;
 	}
 
 	public void exit() {
-		scopes.pop();
-		offsets.pop();
-		paramOffsets.pop();
 		level--;
+		int mark = marks[level];
+		while (entries > mark) {
+			--entries;
+			heads[entryNames[entries]] = entryShadows[entries];
+			entryBindings[entries] = null;
+		}
 	}
 
 	public void add(String id, T binding) throws TableError {
-		Map<String, T> local = scopes.peek();
-		if (local.containsKey(id)) {
+		int name = names.add(id);
+		if (name >= heads.length) {
+			int old = heads.length;
+			heads = Arrays.copyOf(heads, 2 * name);
+			Arrays.fill(heads, old, heads.length, -1);
+		}
+		int head = heads[name];
+		if (head >= marks[level - 1]) {
 			throw new TableError("Duplicate definition of " + id);
 		}
-		local.put(id, binding);
+
+		if (entries == entryNames.length) {
+			entryNames = Arrays.copyOf(entryNames, 2 * entries);
+			entryBindings = Arrays.copyOf(entryBindings, 2 * entries);
+			entryShadows = Arrays.copyOf(entryShadows, 2 * entries);
+		}
+		entryNames[entries] = name;
+		entryBindings[entries] = binding;
+		entryShadows[entries] = head;
+		heads[name] = entries++;
 	}
 
 	public T lookup(String id) throws TableError {
-		for (int i = scopes.size() - 1; i >= 0; --i) {
-			Map<String, T> scope = scopes.get(i);
-			if (scope.containsKey(id)) {
-				return scope.get(id);
+		for (SymbolTable<T> table = this; table != null; table = table.outer) {
+			int name = table.names.find(id);
+			if (name >= 0 && name < table.heads.length && table.heads[name] >= 0) {
+				return table.entryBinding(table.heads[name]);
 			}
 		}
 		throw new TableError("Unknown identifier " + id);
 	}
-	
+
+	@SuppressWarnings("unchecked")
+	private T entryBinding(int entry) {
+		return (T) entryBindings[entry];
+	}
+
 	public int getOffset(){
-		return offsets.peek();
+		return offsets[level - 1];
 	}
 	public int getParamOffset(){
-		return paramOffsets.peek();
+		return paramOffsets[level - 1];
 	}
 	public void setOffset(int i){
-		offsets.pop();
-		offsets.push(i);
+		offsets[level - 1] = i;
 	}
 	public void setParamOffset(int i){
-		paramOffsets.pop();
-		paramOffsets.push(i);
+		paramOffsets[level - 1] = i;
 	}
 	public int level(){
 		return level;
 	}
-}
\ No newline at end of file
+}
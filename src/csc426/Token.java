@@ -4,17 +4,34 @@ public class Token {
 	/**
 	 * Construct a Token object given its components.
 	 * 
-	 * @param line the line number (starting from 1) where the token was found
-	 * @param column the column number (starting from 1) where the token started
+	 * @param position the line and column (starting from 1) where the token started
 	 * @param type the TokenType of the token
 	 * @param lexeme the string value of the token
 	 */
 	public Token(Position position, TokenType type, String lexeme) {
-		this.position = position;
+		this(position.pack(), type, lexeme);
+	}
+
+	/**
+	 * Construct a Token object with a packed position, as from Position.pack.
+	 * 
+	 * @param pos the packed line and column where the token started
+	 * @param type the TokenType of the token
+	 * @param lexeme the string value of the token
+	 */
+	public Token(long pos, TokenType type, String lexeme) {
+		this.pos = pos;
 		this.type = type;
 		this.lexeme = lexeme;
 	}
 
+	/**
+	 * @return a Position object for where the token started
+	 */
+	public Position position() {
+		return Position.unpack(pos);
+	}
+
 	// Override the default toString() for use in development and debugging.
 	public String toString() {
 		StringBuilder result = new StringBuilder(type.toString());
@@ -23,11 +40,11 @@ public class Token {
 				|| type == TokenType.STRING) {
 			result.append(" ").append(lexeme);
 		}
-		result.append(" ").append(position);
+		result.append(" ").append(Position.toString(pos));
 		return result.toString();
 	}
 
-	public final Position position;
+	public final long pos;
 	public final TokenType type;
 	public final String lexeme;
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+package csc426;
+
+
+import java.io.IOException;
+
+/**
+ * The complete token stream of a source, stored column by column in parallel
+ * arrays instead of as Token objects: the TokenType ordinal, the source offset,
+ * the packed position, and the id of the lexeme in a table of interned
+ * lexemes. The last token is always EOF.
+ */
+public class TokenBuffer {
+	/**
+	 * Construct an empty buffer whose lexemes are interned in the given table.
+	 * 
+	 * @param lexemes
+	 */
+	public TokenBuffer(Names lexemes) {
+		this.lexemeTable = lexemes;
+		this.types = new byte[256];
+		this.offsets = new int[256];
+		this.lexemes = new int[256];
+		this.positions = new long[256];
+		this.size = 0;
+	}
+
+	/**
+	 * Scan the whole source into a new buffer, using the table-driven scanner.
+	 * 
+	 * @param source
+	 * @return the buffer, ending with an EOF token
+	 * @throws IOException
+	 */
+	public static TokenBuffer scan(Source source) throws IOException {
+		return scan(source, Diagnostics.STDERR);
+	}
+
+	/**
+	 * Scan the whole source into a new buffer, reporting errors to the given
+	 * Diagnostics.
+	 * 
+	 * @param source
+	 * @param diagnostics
+	 * @return the buffer, ending with an EOF token
+	 * @throws IOException
+	 */
+	public static TokenBuffer scan(Source source, Diagnostics diagnostics) throws IOException {
+		Names names = new Names();
+		TokenBuffer result = new TokenBuffer(names);
+		ScanTable table = new ScanTable(names, diagnostics);
+		TokenType type;
+		do {
+			type = table.scan(source);
+			result.add(type, table.lexemeId(names), Position.pack(table.line(), table.column()),
+					table.offset());
+		} while (type != TokenType.EOF);
+		return result;
+	}
+
+	/**
+	 * Append a token.
+	 * 
+	 * @param type
+	 * @param lexeme the id of the lexeme in lexemes()
+	 * @param position the packed position
+	 * @param offset the source offset of the first character
+	 */
+	public void add(TokenType type, int lexeme, long position, int offset) {
+		if (size == types.length) {
+			grow(size * 2);
+		}
+		types[size] = (byte) type.ordinal();
+		lexemes[size] = lexeme;
+		positions[size] = position;
+		offsets[size] = offset;
+		++size;
+	}
+
+	/**
+	 * Append the first count tokens of another buffer, moving them down by the
+	 * given number of lines and along by the given number of characters.
+	 * 
+	 * @param other
+	 * @param count
+	 * @param ids the id in this buffer's lexemes of each of other's lexemes
+	 * @param lines
+	 * @param offset
+	 */
+	public void append(TokenBuffer other, int count, int[] ids, int lines, int offset) {
+		if (size + count > types.length) {
+			grow(Math.max(size + count, size * 2));
+		}
+		System.arraycopy(other.types, 0, types, size, count);
+		long shift = Position.pack(lines, 0);
+		for (int i = 0; i < count; ++i) {
+			lexemes[size + i] = ids[other.lexemes[i]];
+			positions[size + i] = other.positions[i] + shift;
+			offsets[size + i] = other.offsets[i] + offset;
+		}
+		size += count;
+	}
+
+	/**
+	 * @return the number of tokens, including the final EOF
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param i
+	 * @return the TokenType of token i
+	 */
+	public TokenType type(int i) {
+		return TYPES[types[i]];
+	}
+
+	/**
+	 * @param i
+	 * @return the lexeme of token i
+	 */
+	public String lexeme(int i) {
+		return lexemeTable.get(lexemes[i]);
+	}
+
+	/**
+	 * @param i
+	 * @return the id of the lexeme of token i in lexemes()
+	 */
+	public int lexemeId(int i) {
+		return lexemes[i];
+	}
+
+	/**
+	 * @param i
+	 * @return the packed position of token i
+	 */
+	public long position(int i) {
+		return positions[i];
+	}
+
+	/**
+	 * @param i
+	 * @return the source offset of the first character of token i
+	 */
+	public int offset(int i) {
+		return offsets[i];
+	}
+
+	/**
+	 * @param i
+	 * @return a Token object for token i
+	 */
+	public Token token(int i) {
+		return new Token(positions[i], TYPES[types[i]], lexemeTable.get(lexemes[i]));
+	}
+
+	/**
+	 * @return the table of interned lexemes
+	 */
+	public Names lexemes() {
+		return lexemeTable;
+	}
+
+	private void grow(int capacity) {
+		byte[] moreTypes = new byte[capacity];
+		int[] moreOffsets = new int[capacity];
+		int[] moreLexemes = new int[capacity];
+		long[] morePositions = new long[capacity];
+		System.arraycopy(types, 0, moreTypes, 0, size);
+		System.arraycopy(offsets, 0, moreOffsets, 0, size);
+		System.arraycopy(lexemes, 0, moreLexemes, 0, size);
+		System.arraycopy(positions, 0, morePositions, 0, size);
+		types = moreTypes;
+		offsets = moreOffsets;
+		lexemes = moreLexemes;
+		positions = morePositions;
+	}
+
+	private static final TokenType[] TYPES = TokenType.values();
+
+	private Names lexemeTable;
+	private byte[] types;
+	private int[] offsets;
+	private int[] lexemes;
+	private long[] positions;
+	private int size;
+}
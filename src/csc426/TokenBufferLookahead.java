@@ -0,0 +1,102 @@
+package csc426;
+
+/**
+ * A Lookahead that walks a TokenBuffer by index instead of asking a Scanner
+ * for each token. Since the whole stream is available, it can look any number
+ * of tokens ahead, and back up to any marked token.
+ */
+public class TokenBufferLookahead extends Lookahead {
+	public TokenBufferLookahead(TokenBuffer tokens) {
+		this.tokens = tokens;
+		this.index = 0;
+		this.last = tokens.size() - 1;
+		this.cachedIndex = -1;
+	}
+
+	@Override
+	public Token current() {
+		if (cachedIndex != index) {
+			cached = tokens.token(index);
+			cachedIndex = index;
+		}
+		return cached;
+	}
+
+	@Override
+	public boolean check(TokenType type) {
+		return tokens.type(index) == type;
+	}
+
+	/**
+	 * @param k
+	 * @param type
+	 * @return true if the token k places ahead of the current one has the given type
+	 */
+	@Override
+	public boolean check(int k, TokenType type) {
+		return tokens.type(Math.min(index + k, last)) == type;
+	}
+
+	@Override
+	public Token match(TokenType type) throws ParseError {
+		if (tokens.type(index) == type) {
+			return skip();
+		} else {
+			throw new ParseError("Error: Expected " + type + ", found " + current());
+		}
+	}
+
+	@Override
+	public Token skip() {
+		Token token = current();
+		if (index < last) {
+			++index;
+		}
+		return token;
+	}
+
+	/**
+	 * @param k
+	 * @return the token k places ahead of the current one (the EOF token if past
+	 *         the end)
+	 */
+	@Override
+	public Token peek(int k) {
+		return tokens.token(Math.min(index + k, last));
+	}
+
+	/**
+	 * @return a mark for the current token, to be passed to reset
+	 */
+	@Override
+	public int mark() {
+		return index;
+	}
+
+	/**
+	 * Back up (or skip forward) to a token previously returned by mark().
+	 * 
+	 * @param mark
+	 */
+	@Override
+	public void reset(int mark) {
+		index = mark;
+	}
+
+	/**
+	 * @return the index of the current token in the buffer
+	 */
+	@Override
+	public int index() {
+		return index;
+	}
+
+	@Override
+	public void close() {
+	}
+
+	private TokenBuffer tokens;
+	private int index, last;
+	private Token cached;
+	private int cachedIndex;
+}
@@ -0,0 +1,302 @@
+package csc426;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import csc426.AST.*;
+import csc426.AST.Expr.*;
+import csc426.AST.Item.*;
+import csc426.AST.Param.*;
+import csc426.AST.Stmt.*;
+
+/**
+ * Drives a visitor over a tree of any depth with a stack of steps of its own,
+ * instead of the Java stack. A step is the visit of a node in some state (0
+ * at first), or a Runnable. Visitors driven this way do not call accept on
+ * children: a visit schedules the children with visit, and what is left to do
+ * after them either as a later state of the same node (resume) or as a
+ * Runnable (then). The steps scheduled by one step run in the order they were
+ * scheduled, and before any step scheduled earlier, so the nodes are visited
+ * in the same order as by a recursive visitor. Results are passed from
+ * children to parents on stacks kept by the visitor.
+ *
+ * The same node may be on the stack more than once (the interpreter revisits
+ * loop bodies and procedures), each time with its own state.
+ */
+public class Traversal {
+	/**
+	 * @param visitor
+	 *            the visitor whose methods are called for the nodes visited
+	 */
+	public Traversal(ASTVisitor<?> visitor) {
+		this.visitor = visitor;
+		this.steps = new Object[64];
+		this.states = new int[64];
+		this.size = 0;
+		this.scheduled = 0;
+	}
+
+	/**
+	 * Visit root, and then every step scheduled from it, before returning.
+	 * This may be called from a step; it then runs only the steps scheduled
+	 * inside it. If a step throws, the steps left are dropped.
+	 *
+	 * @param root
+	 */
+	public void run(AST root) {
+		int base = size;
+		Object outerStep = step;
+		int outerState = state;
+		int outerScheduled = scheduled;
+		scheduled = size;
+		visit(root);
+		try {
+			while (size > base) {
+				--size;
+				step = steps[size];
+				state = states[size];
+				steps[size] = null;
+				scheduled = size;
+				if (step instanceof AST) {
+					((AST) step).accept(visitor);
+				} else {
+					((Runnable) step).run();
+				}
+
+				// Run the new steps in the order they were scheduled
+				for (int i = scheduled, j = size - 1; i < j; ++i, --j) {
+					Object swap = steps[i];
+					steps[i] = steps[j];
+					steps[j] = swap;
+					int swapState = states[i];
+					states[i] = states[j];
+					states[j] = swapState;
+				}
+			}
+		} finally {
+			while (size > base) {
+				steps[--size] = null;
+			}
+			step = outerStep;
+			state = outerState;
+			scheduled = outerScheduled;
+		}
+	}
+
+	/**
+	 * Schedule a visit of node, in state 0.
+	 *
+	 * @param node
+	 */
+	public void visit(AST node) {
+		push(node, 0);
+	}
+
+	/**
+	 * Schedule a visit of node in the given state.
+	 *
+	 * @param node
+	 * @param state
+	 */
+	public void visit(AST node, int state) {
+		push(node, state);
+	}
+
+	/**
+	 * Schedule the node being visited to be visited again, in the given
+	 * state.
+	 *
+	 * @param state
+	 */
+	public void resume(int state) {
+		push(step, state);
+	}
+
+	/**
+	 * Schedule a step that is not the visit of a node.
+	 *
+	 * @param step
+	 */
+	public void then(Runnable step) {
+		push(step, 0);
+	}
+
+	/**
+	 * @return the state in which the node being visited was scheduled
+	 */
+	public int state() {
+		return state;
+	}
+
+	private void push(Object step, int state) {
+		if (size == steps.length) {
+			steps = Arrays.copyOf(steps, 2 * size);
+			states = Arrays.copyOf(states, 2 * size);
+		}
+		steps[size] = step;
+		states[size] = state;
+		++size;
+	}
+
+	/**
+	 * @param root
+	 * @return the number of nodes on the longest path from root to a leaf
+	 */
+	public static int depth(AST root) {
+		List<AST> nodes = new ArrayList<>();
+		List<Integer> depths = new ArrayList<>();
+		Children children = new Children(nodes);
+		nodes.add(root);
+		depths.add(1);
+		int result = 0;
+		while (!nodes.isEmpty()) {
+			AST node = nodes.remove(nodes.size() - 1);
+			int depth = depths.remove(depths.size() - 1);
+			result = Math.max(result, depth);
+			int before = nodes.size();
+			node.accept(children);
+			for (int i = before; i < nodes.size(); ++i) {
+				depths.add(depth + 1);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Adds the children of each node visited to a list, without visiting them.
+	 */
+	static class Children implements ASTVisitor<Void> {
+		private final List<AST> nodes;
+
+		Children(List<AST> nodes) {
+			this.nodes = nodes;
+		}
+
+		public Void visit(Program program) {
+			nodes.add(program.block);
+			return null;
+		}
+
+		public Void visit(Block block) {
+			nodes.addAll(block.consts);
+			nodes.addAll(block.vars);
+			nodes.addAll(block.procs);
+			nodes.addAll(block.stmts);
+			return null;
+		}
+
+		public Void visit(ConstDecl decl) {
+			return null;
+		}
+
+		public Void visit(VarDecl decl) {
+			return null;
+		}
+
+		public Void visit(ProcDecl decl) {
+			nodes.addAll(decl.params);
+			nodes.add(decl.block);
+			return null;
+		}
+
+		public Void visit(Val param) {
+			return null;
+		}
+
+		public Void visit(Var param) {
+			return null;
+		}
+
+		public Void visit(Assign stmt) {
+			nodes.add(stmt.expr);
+			return null;
+		}
+
+		public Void visit(Call stmt) {
+			nodes.addAll(stmt.args);
+			return null;
+		}
+
+		public Void visit(Sequence stmt) {
+			nodes.addAll(stmt.body);
+			return null;
+		}
+
+		public Void visit(IfThen stmt) {
+			nodes.add(stmt.test);
+			nodes.add(stmt.trueClause);
+			return null;
+		}
+
+		public Void visit(IfThenElse stmt) {
+			nodes.add(stmt.test);
+			nodes.add(stmt.trueClause);
+			nodes.add(stmt.falseClause);
+			return null;
+		}
+
+		public Void visit(While stmt) {
+			nodes.add(stmt.test);
+			nodes.add(stmt.body);
+			return null;
+		}
+
+		public Void visit(Prompt stmt) {
+			return null;
+		}
+
+		public Void visit(Prompt2 stmt) {
+			return null;
+		}
+
+		public Void visit(Print stmt) {
+			nodes.addAll(stmt.items);
+			return null;
+		}
+
+		public Void visit(ExprItem item) {
+			nodes.add(item.expr);
+			return null;
+		}
+
+		public Void visit(StringItem item) {
+			return null;
+		}
+
+		public Void visit(BinOp expr) {
+			nodes.add(expr.left);
+			nodes.add(expr.right);
+			return null;
+		}
+
+		public Void visit(UnOp expr) {
+			nodes.add(expr.expr);
+			return null;
+		}
+
+		public Void visit(Num expr) {
+			return null;
+		}
+
+		public Void visit(Id expr) {
+			return null;
+		}
+
+		public Void visit(True expr) {
+			return null;
+		}
+
+		public Void visit(False expr) {
+			return null;
+		}
+	}
+
+	private final ASTVisitor<?> visitor;
+	private Object[] steps; // AST nodes to visit, and Runnables
+	private int[] states;
+	private int size;
+	private Object step; // the step running
+	private int state;
+	private int scheduled; // where the steps scheduled by the step running start
+}
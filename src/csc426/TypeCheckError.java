@@ -5,4 +5,8 @@ public class TypeCheckError extends RuntimeException {
 	public TypeCheckError(String message, AST ast) {
 		super(message + ": " + ast);
 	}
+
+	public TypeCheckError(String message, FlatAST ast, int node) {
+		super(message + ": " + ast.toString(node));
+	}
 }
@@ -1,42 +1,163 @@
 package csc426;
 
 
-import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import csc426.AST.*;
 import csc426.AST.Expr.*;
 import csc426.AST.Item.*;
 import csc426.AST.Param.*;
 import csc426.AST.Stmt.*;
-import csc426.Value.BoolCell;
-import csc426.Value.BoolValue;
-import csc426.Value.IntCell;
-import csc426.Value.IntValue;
-import csc426.Value.ProcValue;
 
-public class TypeChecker implements ASTVisitor<Value> {
-	private PrintStream output;
-	private SymbolTable<Value> table;
-	
-	public TypeChecker(Scanner input, PrintStream output) {
-		this.output = output;
-		this.table = new SymbolTable<>();
+/**
+ * Checks the types of a program, statically, in one pass: each expression is
+ * given its Type once, each procedure body is checked once against its
+ * parameters, and every branch and loop body is checked once, so the time
+ * taken is linear in the size of the tree. It is driven by a Traversal, so
+ * trees of any depth are checked without recursion: the type of each
+ * expression is left on a stack for its parent, and also recorded in the node
+ * (Expr.type) for later passes.
+ *
+ * Given a fork-join pool, it checks the bodies of the procedures declared in
+ * a block concurrently, when there are at least MIN_PROCS of them: each is
+ * checked by a TypeChecker of its own, whose table sits inside the table of
+ * the enclosing scopes. That table is shared by all of them, not copied, and
+ * is left alone until they are done. The errors are taken in declaration
+ * order, so the first error thrown is the one a sequential check would throw.
+ */
+public class TypeChecker implements ASTVisitor<Void> {
+	/**
+	 * Blocks declaring fewer procedures than this are checked sequentially.
+	 */
+	public static final int MIN_PROCS = 8;
+
+	private SymbolTable<Symbol> table;
+	private ForkJoinPool pool;
+	private Traversal traversal;
+	private Type[] types; // of the expressions checked and not yet used
+	private int typeCount;
+
+	public TypeChecker() {
+		this(null);
+	}
+
+	/**
+	 * @param pool
+	 *            the pool for checking procedures concurrently, or null to
+	 *            check sequentially
+	 */
+	public TypeChecker(ForkJoinPool pool) {
+		this(pool, new SymbolTable<>());
+	}
+
+	private TypeChecker(ForkJoinPool pool, SymbolTable<Symbol> table) {
+		this.pool = pool;
+		this.table = table;
+		this.traversal = new Traversal(this);
+		this.types = new Type[16];
+		this.typeCount = 0;
+	}
+
+	/**
+	 * Check a program, or a declaration in the scopes already entered.
+	 *
+	 * @param root
+	 * @throws TypeCheckError
+	 *             at the first error found
+	 */
+	public void check(AST root) {
+		traversal.run(root);
+	}
+
+	/**
+	 * What is known about a name: the type of a constant or variable, or the
+	 * parameters of a procedure.
+	 */
+	private static final class Symbol {
+		final Type type; // null for a procedure
+		final boolean variable;
+		final List<Param> params; // null unless a procedure
+
+		Symbol(Type type, boolean variable, List<Param> params) {
+			this.type = type;
+			this.variable = variable;
+			this.params = params;
+		}
+	}
+
+	private void declare(String id, Symbol symbol, AST decl) {
+		try {
+			table.add(id, symbol);
+		} catch (TableError e) {
+			throw new TypeCheckError(e.getMessage(), decl);
+		}
+	}
+
+	private Symbol lookup(String id, AST use) {
+		try {
+			return table.lookup(id);
+		} catch (TableError e) {
+			throw new TypeCheckError(e.getMessage(), use);
+		}
+	}
+
+	/**
+	 * @return the symbol for id, which must be a variable
+	 */
+	private Symbol variable(String id, AST use) {
+		Symbol symbol = lookup(id, use);
+		if (!symbol.variable) {
+			throw new TypeCheckError("Variable Required", use);
+		}
+		return symbol;
+	}
+
+	/**
+	 * Record the type of expr, and leave it for its parent.
+	 */
+	private Void annotate(Expr expr, Type type) {
+		expr.type = type;
+		if (typeCount == types.length) {
+			types = Arrays.copyOf(types, 2 * typeCount);
+		}
+		types[typeCount++] = type;
+		return null;
+	}
+
+	/**
+	 * @return the type of the expression checked last and not yet used
+	 */
+	private Type pop() {
+		return types[--typeCount];
+	}
+
+	/**
+	 * Check that the expression checked last has the expected type.
+	 */
+	private void expect(Type expected, String message, AST context) {
+		if (pop() != expected) {
+			throw new TypeCheckError(message, context);
+		}
 	}
 
 	@Override
-	public Value visit(Program program) {
-		table.enter(program.name);
-		program.block.accept(this);
-		table.exit();
+	public Void visit(Program program) {
+		if (traversal.state() == 0) {
+			table.enter(program.name);
+			traversal.visit(program.block);
+			traversal.resume(1);
+		} else {
+			table.exit();
+		}
 		return null;
 	}
 
 	@Override
-	public Value visit(Block block) {
+	public Void visit(Block block) {
 		for (ConstDecl decl : block.consts) {
 			decl.accept(this);
 		}
@@ -44,224 +165,248 @@ public class TypeChecker implements ASTVisitor<Value> {
 			decl.accept(this);
 		}
 		for (ProcDecl decl : block.procs) {
-			try{
-				table.add(decl.id, new ProcValue(decl.params, decl.block));
-				
-			} catch (TableError e){
-				throw new TypeCheckError(e.getMessage(), decl);
-			}
+			declare(decl.id, new Symbol(null, false, decl.params), decl);
 		}
-		for (ProcDecl decl : block.procs) {
-			decl.accept(this);
+		if (pool != null && pool.getParallelism() >= 2 && block.procs.size() >= MIN_PROCS) {
+			checkConcurrently(block.procs);
+		} else {
+			for (ProcDecl decl : block.procs) {
+				traversal.visit(decl);
+			}
 		}
 		for (Stmt stmt : block.stmts) {
-			stmt.accept(this);
+			traversal.visit(stmt);
 		}
 		return null;
 	}
 
-	@Override
-	public Value visit(ConstDecl decl) {
-		try {
-			table.add(decl.id, new IntValue(0));
-		} catch (TableError e) {
-			throw new TypeCheckError(e.getMessage(), decl);
+	private void checkConcurrently(List<ProcDecl> procs) {
+		List<Declaration> tasks = new ArrayList<>();
+		for (ProcDecl decl : procs) {
+			Declaration task = new Declaration(decl, new TypeChecker(pool, new SymbolTable<>(table)));
+			pool.execute(task);
+			tasks.add(task);
 		}
+		for (int i = 0; i < tasks.size(); ++i) {
+			RuntimeException error = tasks.get(i).join();
+			if (error != null) {
+				for (Declaration task : tasks.subList(i + 1, tasks.size())) {
+					task.cancel(false);
+				}
+				throw error;
+			}
+		}
+	}
+
+	/**
+	 * The task of checking one procedure declaration. Its result is the error
+	 * found, or null.
+	 */
+	@SuppressWarnings("serial")
+	private static class Declaration extends RecursiveTask<RuntimeException> {
+		Declaration(ProcDecl decl, TypeChecker checker) {
+			this.decl = decl;
+			this.checker = checker;
+		}
+
+		@Override
+		protected RuntimeException compute() {
+			try {
+				checker.check(decl);
+				return null;
+			} catch (RuntimeException e) {
+				return e;
+			}
+		}
+
+		final ProcDecl decl;
+		final TypeChecker checker;
+	}
+
+	@Override
+	public Void visit(ConstDecl decl) {
+		declare(decl.id, new Symbol(Type.Int, false, null), decl);
 		return null;
 	}
 
 	@Override
-	public Value visit(VarDecl decl) {
-		Value value = null;
-		switch (decl.type) {
-		case Bool:
-			value = new BoolValue(false);
-			break;
-		case Int:
-			value = new IntValue(0);
-			break;
-		}
-		try {
-			table.add(decl.id, value);
-		} catch (TableError e) { throw new TypeCheckError(e.getMessage(), decl); }
+	public Void visit(VarDecl decl) {
+		declare(decl.id, new Symbol(decl.type, true, null), decl);
 		return null;
 	}
 
 	@Override
-	public Value visit(ProcDecl decl) {
-		table.enter(decl.id);
-		for(Param param : decl.params){
-			if(param.type == Type.Int){
-				try{
-					table.add(param.id, new IntValue(0));
-				} catch (TableError e) { throw new TypeCheckError(e.getMessage(), decl); }
-			} else {
-				try{
-					table.add(param.id, new BoolValue(false));
-				} catch (TableError e) { throw new TypeCheckError(e.getMessage(), decl); }
+	public Void visit(ProcDecl decl) {
+		if (traversal.state() == 0) {
+			table.enter(decl.id);
+			for (Param param : decl.params) {
+				param.accept(this);
 			}
+			traversal.visit(decl.block);
+			traversal.resume(1);
+		} else {
+			table.exit();
 		}
-		decl.block.accept(this);
-		table.exit();
 		return null;
 	}
 
-	//These are token methods
 	@Override
-	public Value visit(Val param) {
+	public Void visit(Val param) {
+		declare(param.id, new Symbol(param.type, true, null), param);
 		return null;
 	}
 
 	@Override
-	public Value visit(Var param) {
+	public Void visit(Var param) {
+		declare(param.id, new Symbol(param.type, true, null), param);
 		return null;
 	}
 
-	//Pretty sure this is causing my problems with the typechecking.. not sure how to fix
 	@Override
-	public Value visit(Assign stmt) {
-		try {
-			Value lhs = table.lookup(stmt.id);
-			Value rhs = stmt.expr.accept(this);
-			if(lhs.getClass() == rhs.getClass()){
-				return null;
-			} else {
-				throw new TypeCheckError("Not the same type.", stmt);
-			}
-		} catch (TableError e) {
-			throw new TypeCheckError(e.getMessage(), stmt);
+	public Void visit(Assign stmt) {
+		Symbol lhs = variable(stmt.id, stmt);
+		if (traversal.state() == 0) {
+			traversal.visit(stmt.expr);
+			traversal.resume(1);
+		} else {
+			expect(lhs.type, "Not the same type.", stmt);
 		}
+		return null;
 	}
 
+	/**
+	 * In state i, the arguments before the i-th have been checked, and the
+	 * type of the last of them is waiting to be compared with its parameter.
+	 */
 	@Override
-	public Value visit(Call stmt) {
-		List<Value> args = new ArrayList<>();
-		try {
-			Value proc = table.lookup(stmt.id);
-			
-			for (Expr arg : stmt.args) {
-				args.add(arg.accept(this));
+	public Void visit(Call stmt) {
+		Symbol proc = lookup(stmt.id, stmt);
+		int i = traversal.state();
+		if (i == 0) {
+			if (proc.params == null) {
+				throw new TypeCheckError("Procedure Required", stmt);
 			}
-			
-			proc.match(args, this, table);
-			
-		} catch (TableError e) {
-			throw new TypeCheckError(e.getMessage(), stmt);
-		} catch (ValueError e) {
-			throw new TypeCheckError(e.getMessage(), stmt);
+			if (stmt.args.size() != proc.params.size()) {
+				throw new TypeCheckError("Wrong number of arguments", stmt);
+			}
+		} else {
+			Param param = proc.params.get(i - 1);
+			expect(param.type, "Type mismatch in proc call, " + param.id, stmt);
+		}
+
+		if (i < stmt.args.size()) {
+			Param param = proc.params.get(i);
+			Expr arg = stmt.args.get(i);
+			if (param instanceof Var) {
+				if (!(arg instanceof Id)) {
+					throw new TypeCheckError("Variable Required for var parameter " + param.id, stmt);
+				}
+				variable(((Id) arg).id, arg);
+			}
+			traversal.visit(arg);
+			traversal.resume(i + 1);
 		}
-		
 		return null;
 	}
 
-	
 	@Override
-	public Value visit(Sequence stmt) {
+	public Void visit(Sequence stmt) {
 		for (Stmt s : stmt.body) {
-			s.accept(this);
+			traversal.visit(s);
 		}
 		return null;
 	}
 
 	@Override
-	public Value visit(IfThen stmt) {
-		Value test = stmt.test.accept(this);
-		try {
-			if (test.boolValue()) {
-				stmt.trueClause.accept(this);
-			}
-		} catch (ValueError e) {
-			throw new TypeCheckError(e.getMessage(), stmt);
+	public Void visit(IfThen stmt) {
+		if (traversal.state() == 0) {
+			traversal.visit(stmt.test);
+			traversal.resume(1);
+		} else {
+			expect(Type.Bool, "Boolean Value Required", stmt);
+			traversal.visit(stmt.trueClause);
 		}
 		return null;
 	}
 
 	@Override
-	public Value visit(IfThenElse stmt) {
-		Value test = stmt.test.accept(this);
-		try {
-			if (test.boolValue()) {
-				stmt.trueClause.accept(this);
-				stmt.falseClause.accept(this);
-			} 
-		} catch (ValueError e) {
-			throw new TypeCheckError(e.getMessage(), stmt);
+	public Void visit(IfThenElse stmt) {
+		if (traversal.state() == 0) {
+			traversal.visit(stmt.test);
+			traversal.resume(1);
+		} else {
+			expect(Type.Bool, "Boolean Value Required", stmt);
+			traversal.visit(stmt.trueClause);
+			traversal.visit(stmt.falseClause);
 		}
 		return null;
 	}
 
 	@Override
-	public Value visit(While stmt) {
-		Value test = stmt.test.accept(this);
-		try {
-			while (test.boolValue()) {
-				stmt.body.accept(this);
-				test = stmt.test.accept(this);
-			}
-		} catch (ValueError e) {
-			throw new TypeCheckError(e.getMessage(), stmt);
+	public Void visit(While stmt) {
+		if (traversal.state() == 0) {
+			traversal.visit(stmt.test);
+			traversal.resume(1);
+		} else {
+			expect(Type.Bool, "Boolean Value Required", stmt);
+			traversal.visit(stmt.body);
 		}
 		return null;
 	}
 
 	@Override
-	public Value visit(Prompt stmt) {
+	public Void visit(Prompt stmt) {
 		return null;
 	}
 
 	@Override
-	public Value visit(Prompt2 stmt) {
-		try {
-			Value lhs = table.lookup(stmt.id);
-			if(lhs instanceof IntValue){
-				
-			} else {
-				throw new TypeCheckError("Prompt Statements need Int IDs", stmt);
-			}
-		} catch (NumberFormatException e) {
-			throw new TypeCheckError(e.getMessage(), stmt);
-		} catch (TableError e) {
-			throw new TypeCheckError(e.getMessage(), stmt);
+	public Void visit(Prompt2 stmt) {
+		if (variable(stmt.id, stmt).type != Type.Int) {
+			throw new TypeCheckError("Prompt Statements need Int IDs", stmt);
 		}
 		return null;
 	}
 
 	@Override
-	public Value visit(Print stmt) {
+	public Void visit(Print stmt) {
 		for (Item item : stmt.items) {
-			if(item instanceof StringItem)
-			{
-				
-			} 
-			else if (item instanceof ExprItem){
-				Value i = item.accept(this);
-				if(i instanceof IntValue){
-					throw new TypeCheckError("Not an Int.", stmt);
-				}
-			}
+			traversal.visit(item);
 		}
 		return null;
 	}
 
 	@Override
-	public Value visit(ExprItem item) {
+	public Void visit(ExprItem item) {
+		if (traversal.state() == 0) {
+			traversal.visit(item.expr);
+			traversal.resume(1);
+		} else {
+			expect(Type.Int, "Not an Int.", item);
+		}
 		return null;
 	}
 
 	@Override
-	public Value visit(StringItem item) {
+	public Void visit(StringItem item) {
 		return null;
 	}
 
 	@Override
-	public Value visit(BinOp expr) {
-		Value lhs = expr.left.accept(this);
-		Value rhs = expr.right.accept(this);
+	public Void visit(BinOp expr) {
+		if (traversal.state() == 0) {
+			traversal.visit(expr.left);
+			traversal.visit(expr.right);
+			traversal.resume(1);
+			return null;
+		}
+
+		Type rhs = pop();
+		Type lhs = pop();
 		switch (expr.op) {
 		case And:
 		case Or:
-			if(lhs instanceof BoolValue && rhs instanceof BoolValue){
-				return new BoolValue(false);
+			if (lhs == Type.Bool && rhs == Type.Bool) {
+				return annotate(expr, Type.Bool);
 			} else {
 				throw new TypeCheckError("Op Error", expr);
 			}
@@ -272,8 +417,8 @@ public class TypeChecker implements ASTVisitor<Value> {
 		case LE:
 		case LT:
 		case NE:
-			if(lhs instanceof IntValue && rhs instanceof IntValue){
-				return new BoolValue(false);
+			if (lhs == Type.Int && rhs == Type.Int) {
+				return annotate(expr, Type.Bool);
 			} else {
 				throw new TypeCheckError("Op Error", expr);
 			}
@@ -283,8 +428,8 @@ public class TypeChecker implements ASTVisitor<Value> {
 		case Plus:
 		case Times:
 		case Div:
-			if(lhs instanceof IntValue && rhs instanceof IntValue){
-				return new IntValue(0);
+			if (lhs == Type.Int && rhs == Type.Int) {
+				return annotate(expr, Type.Int);
 			} else {
 				throw new TypeCheckError("Op Error", expr);
 			}
@@ -296,18 +441,24 @@ public class TypeChecker implements ASTVisitor<Value> {
 	}
 
 	@Override
-	public Value visit(UnOp expr) {
-		Value value = expr.expr.accept(this);
+	public Void visit(UnOp expr) {
+		if (traversal.state() == 0) {
+			traversal.visit(expr.expr);
+			traversal.resume(1);
+			return null;
+		}
+
+		Type type = pop();
 		switch (expr.op) {
 		case Neg:
-			if(value instanceof IntValue){
-				return new IntValue(0);
+			if (type == Type.Int) {
+				return annotate(expr, Type.Int);
 			} else {
 				throw new TypeCheckError("Op Error", expr);
 			}
 		case Not:
-			if(value instanceof IntValue){
-				return new IntValue(0);
+			if (type == Type.Bool) {
+				return annotate(expr, Type.Bool);
 			} else {
 				throw new TypeCheckError("Op Error", expr);
 			}
@@ -318,26 +469,26 @@ public class TypeChecker implements ASTVisitor<Value> {
 	}
 
 	@Override
-	public Value visit(Num expr) {
-		return new IntValue(0);
+	public Void visit(Num expr) {
+		return annotate(expr, Type.Int);
 	}
 
 	@Override
-	public Value visit(Id expr) {
-		try {
-			return table.lookup(expr.id);
-		} catch (TableError e) {
-			throw new TypeCheckError(e.getMessage(), expr);
+	public Void visit(Id expr) {
+		Symbol symbol = lookup(expr.id, expr);
+		if (symbol.type == null) {
+			throw new TypeCheckError("Procedure used as a value", expr);
 		}
+		return annotate(expr, symbol.type);
 	}
 
 	@Override
-	public Value visit(True expr) {
-		return new BoolValue(true);
+	public Void visit(True expr) {
+		return annotate(expr, Type.Bool);
 	}
 
 	@Override
-	public Value visit(False expr) {
-		return new BoolValue(false);
+	public Void visit(False expr) {
+		return annotate(expr, Type.Bool);
 	}
-}
\ No newline at end of file
+}
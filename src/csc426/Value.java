@@ -21,10 +21,7 @@ public abstract class Value {
 		throw new ValueError("Variable Required");
 	}
 
-	public void call(List<Value> args, InterpreterVisitor visitor, SymbolTable<Value> table) throws ValueError {
-		throw new ValueError("Procedure Required");
-	}
-	public void match(List<Value> args, TypeChecker checker, SymbolTable<Value> table) throws ValueError {
+	public void call(List<Value> args, InterpreterVisitor visitor) throws ValueError {
 		throw new ValueError("Procedure Required");
 	}
 
@@ -101,80 +98,53 @@ public abstract class Value {
 	public static class ProcValue extends Value {
 		private List<Param> params;
 		private Block block;
-
-		public ProcValue(List<Param> params, Block block) {
+		private Frame scope;
+
+		/**
+		 * @param params
+		 * @param block
+		 * @param scope
+		 *            the frame in which the procedure was declared, which will
+		 *            be the static link of the frame of each call
+		 */
+		public ProcValue(List<Param> params, Block block, Frame scope) {
 			this.params = params;
 			this.block = block;
+			this.scope = scope;
 		}
 
 		@Override
-		public void call(List<Value> args, InterpreterVisitor visitor, SymbolTable<Value> table) throws ValueError {
+		public void call(List<Value> args, InterpreterVisitor visitor) throws ValueError {
 			if (args.size() != params.size()) {
 				throw new ValueError("Wrong number of arguments");
 			}
 
-			try {
-				Iterator<Value> it = args.iterator();
-				for (Param param : params) {
-					Value arg = it.next();
-					if (param instanceof Var) {
-						table.add(param.id, arg);
-					} else {
-						switch (param.type) {
-						case Int: {
-							Value value = new IntCell();
-							value.set(new IntValue(arg.intValue()));
-							table.add(param.id, value);
-							break;
-						}
-						case Bool: {
-							Value value = new BoolCell();
-							value.set(new BoolValue(arg.boolValue()));
-							table.add(param.id, value);
-							break;
-						}
-						}
-					}
-				}
-			} catch (TableError e) {
-				throw new ValueError(e.getMessage());
-			}
-
-			block.accept(visitor);
-		}
-		
-
-		@Override
-		public void match(List<Value> args, TypeChecker checker, SymbolTable<Value> table) throws ValueError {
-			if (args.size() != params.size()) {
-				throw new ValueError("Wrong number of arguments");
-			}
+			int slot = Resolver.declarations(block);
+			Frame frame = new Frame(scope, slot + params.size());
 			Iterator<Value> it = args.iterator();
 			for (Param param : params) {
 				Value arg = it.next();
-				switch(param.type){
-				case Bool:
-					if(arg instanceof BoolValue){
-					} else if(arg instanceof BoolCell) {
-					} else {
-						throw new ValueError("Type mismatch in proc call, " + param.id);
+				if (param instanceof Var) {
+					frame.slots[slot++] = arg;
+				} else {
+					switch (param.type) {
+					case Int: {
+						Value value = new IntCell();
+						value.set(new IntValue(arg.intValue()));
+						frame.slots[slot++] = value;
+						break;
+					}
+					case Bool: {
+						Value value = new BoolCell();
+						value.set(new BoolValue(arg.boolValue()));
+						frame.slots[slot++] = value;
+						break;
 					}
-					break;
-				case Int:
-					if(arg instanceof IntValue){
-					} else if(arg instanceof IntCell) {
-					} else {
-						throw new ValueError("Type mismatch in proc call, " + param.id);
 					}
-					break;
-				default:
-					throw new ValueError("Match Broke on " + param.id);
-
 				}
 			}
 
-
-			block.accept(checker);
+			visitor.execute(block, frame);
 		}
 	}
 }
\ No newline at end of file